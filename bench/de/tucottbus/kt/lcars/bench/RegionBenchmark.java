@@ -0,0 +1,137 @@
+package de.tucottbus.kt.lcars.bench;
+
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.tucottbus.kt.lcars.geometry.rendering.DirtyRegion;
+import de.tucottbus.kt.lcars.geometry.rendering.Region;
+
+/**
+ * Compares the dirty region computation based on {@link Area} with
+ * {@link Region} and {@link DirtyRegion}. Each simulated frame adds the old
+ * and the new bounds of a number of changed elements, clips the result to the
+ * panel and copies it once (as the screen does for painting). Run with
+ * <code>-prof gc</code> to compare the allocations per frame.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RegionBenchmark
+{
+  private static final int PANEL_W = 1920;
+  private static final int PANEL_H = 1080;
+  private static final int FRAMES = 1024;
+
+  /**
+   * Number of changed elements per frame.
+   */
+  @Param({ "1", "4", "16", "64" })
+  public int changes;
+
+  private final Rectangle panel = new Rectangle(PANEL_W, PANEL_H);
+  private final Region region = new Region();
+  private final Region copy = new Region();
+  private Rectangle[][] frames;
+  private int frame;
+
+  @Setup(Level.Trial)
+  public void setUp()
+  {
+    frames = createFrames(FRAMES, changes);
+  }
+
+  @Benchmark
+  public int area()
+  {
+    Area area = new Area();
+    for (Rectangle r : next())
+      area.add(new Area(r));
+    area.intersect(new Area(panel));
+    Area copy = new Area(area);
+    return copy.getBounds().width;
+  }
+
+  @Benchmark
+  public int region()
+  {
+    region.clear();
+    for (Rectangle r : next())
+      region.add(r);
+    region.intersect(panel);
+    copy.set(region);
+    return copy.getRectCount();
+  }
+
+  @Benchmark
+  public int regionBatch()
+  {
+    Rectangle[] rects = next();
+    region.clear();
+    region.add(rects, 0, rects.length);
+    region.intersect(panel);
+    copy.set(region);
+    return copy.getRectCount();
+  }
+
+  @Benchmark
+  public int dirtyRegion()
+  {
+    DirtyRegion dirty = new DirtyRegion();
+    for (Rectangle r : next())
+      dirty.add(r);
+    dirty.intersect(panel);
+    return dirty.clone().getRects().length;
+  }
+
+  private Rectangle[] next()
+  {
+    frame = (frame + 1) % frames.length;
+    return frames[frame];
+  }
+
+  /**
+   * Creates pairs of old and new bounds of moving elements of typical LCARS
+   * sizes.
+   */
+  private static Rectangle[][] createFrames(int frames, int changes)
+  {
+    Random rnd = new Random(4711);
+    Rectangle[][] result = new Rectangle[frames][];
+    for (int f = 0; f < frames; f++)
+    {
+      Rectangle[] rects = new Rectangle[2 * changes];
+      for (int i = 0; i < changes; i++)
+      {
+        int w = 20 + rnd.nextInt(300);
+        int h = 20 + rnd.nextInt(80);
+        int x = rnd.nextInt(PANEL_W);
+        int y = rnd.nextInt(PANEL_H);
+        rects[2 * i] = new Rectangle(x, y, w, h);
+        rects[2 * i + 1] = new Rectangle(x + rnd.nextInt(9) - 4,
+            y + rnd.nextInt(9) - 4, w, h);
+      }
+      result[f] = rects;
+    }
+    return result;
+  }
+}
+
+// EOF
@@ -0,0 +1,102 @@
+package de.tucottbus.kt.lcars.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.tucottbus.kt.lcars.PanelData;
+import de.tucottbus.kt.lcars.util.ObjectSize;
+
+/**
+ * Benchmarks the Java serialization of {@link PanelData} as used by the RMI
+ * screen and panel adapters, and {@link ObjectSize#getSerializedSize(
+ * java.io.Serializable)} which the panel uses for its transfer statistics.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark
+{
+  /**
+   * Number of elements on the panel.
+   */
+  @Param({ "50", "500", "5000" })
+  public int size;
+
+  /**
+   * <code>true</code> for incremental updates where 10 % of the elements
+   * changed, <code>false</code> for full updates.
+   */
+  @Param({ "false", "true" })
+  public boolean incremental;
+
+  private PanelData data;
+  private byte[] serialized;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException
+  {
+    SyntheticPanel panel = new SyntheticPanel(size, 4711);
+    data = panel.getPanelData(false);
+    if (incremental)
+    {
+      panel.animate(0.1f);
+      data = panel.getPanelData(true);
+    }
+    serialized = serialize(data);
+  }
+
+  @Benchmark
+  public byte[] serializePanelData() throws IOException
+  {
+    return serialize(data);
+  }
+
+  @Benchmark
+  public Object deserializePanelData() throws IOException,
+      ClassNotFoundException
+  {
+    try (ObjectInputStream in = new ObjectInputStream(
+        new ByteArrayInputStream(serialized)))
+    {
+      return in.readObject();
+    }
+  }
+
+  @Benchmark
+  public int objectSizeGetSerializedSize()
+  {
+    return ObjectSize.getSerializedSize(data);
+  }
+
+  private static byte[] serialize(Object obj) throws IOException
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+    {
+      out.writeObject(obj);
+    }
+    return bytes.toByteArray();
+  }
+}
+
+// EOF
@@ -0,0 +1,111 @@
+package de.tucottbus.kt.lcars.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.tucottbus.kt.lcars.PanelData;
+import de.tucottbus.kt.lcars.net.StreamConnection;
+import de.tucottbus.kt.lcars.net.StreamServer;
+
+/**
+ * Sends screen updates over a {@linkplain StreamConnection stream connection}
+ * on the loopback interface. Measures the time from sending an update until
+ * it is decoded on the receiving side, once for a single update and once per
+ * update of a pipelined batch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StreamTransportBenchmark
+{
+  private static final int BATCH = 32;
+
+  /**
+   * Number of elements on the panel.
+   */
+  @Param({ "50", "500" })
+  public int size;
+
+  /**
+   * Capacity of the send queue.
+   */
+  @Param({ "1", "8" })
+  public int queueSize;
+
+  private final AtomicLong received = new AtomicLong();
+  private StreamServer server;
+  private StreamConnection connection;
+  private PanelData data;
+  private long sent;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException
+  {
+    SyntheticPanel panel = new SyntheticPanel(size, 4711);
+    panel.getPanelData(false);
+    panel.animate(0.1f);
+    data = panel.getPanelData(true);
+    server = new StreamServer(0, queueSize, (accepted) ->
+        accepted.start((type, message, bytes) -> received.incrementAndGet()));
+    connection = StreamConnection.connect("localhost", server.getPort(),
+        queueSize);
+    connection.start((type, message, bytes) -> {});
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown()
+  {
+    connection.close();
+    server.close();
+  }
+
+  @Benchmark
+  public void single() throws IOException
+  {
+    send();
+    await();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void pipelined() throws IOException
+  {
+    for (int i = 0; i < BATCH; i++)
+      send();
+    await();
+  }
+
+  private void send() throws IOException
+  {
+    while (!connection.send(StreamConnection.INCREMENTAL_FRAME, data))
+      Thread.yield();
+    sent++;
+  }
+
+  private void await()
+  {
+    while (received.get() < sent)
+      Thread.yield();
+  }
+}
+
+// EOF
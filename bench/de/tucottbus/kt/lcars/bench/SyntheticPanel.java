@@ -0,0 +1,156 @@
+package de.tucottbus.kt.lcars.bench;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.awt.geom.RoundRectangle2D;
+import java.lang.reflect.Proxy;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Random;
+
+import de.tucottbus.kt.lcars.IPanel;
+import de.tucottbus.kt.lcars.LCARS;
+import de.tucottbus.kt.lcars.PanelData;
+import de.tucottbus.kt.lcars.PanelState;
+import de.tucottbus.kt.lcars.elements.EElement;
+import de.tucottbus.kt.lcars.elements.ElementData;
+import de.tucottbus.kt.lcars.geometry.AGeometry;
+import de.tucottbus.kt.lcars.geometry.GArea;
+
+/**
+ * A synthetic LCARS panel for benchmarks: a grid of rounded rectangles on a
+ * 1920 x 1080 panel which does not require a display, a screen or fonts.
+ */
+public class SyntheticPanel
+{
+  /**
+   * Panel width.
+   */
+  public static final int WIDTH = 1920;
+
+  /**
+   * Panel height.
+   */
+  public static final int HEIGHT = 1080;
+
+  /**
+   * A rounded rectangle without label.
+   */
+  public static class Element extends EElement
+  {
+    public Element(int x, int y, int w, int h, int style)
+    {
+      super(null, x, y, w, h, style, null);
+    }
+
+    @Override
+    protected ArrayList<AGeometry> createGeometriesInt()
+    {
+      Rectangle b = getBounds();
+      int arc = Math.min(b.width, b.height);
+      ArrayList<AGeometry> geos = new ArrayList<AGeometry>(1);
+      geos.add(new GArea(new Area(new RoundRectangle2D.Float(b.x, b.y,
+          b.width, b.height, arc, arc)), false));
+      return geos;
+    }
+  }
+
+  /**
+   * The elements.
+   */
+  public final Element[] elements;
+
+  /**
+   * The panel state.
+   */
+  public final PanelState state;
+
+  private final IPanel ipanel;
+  private final Random random;
+
+  /**
+   * Creates a synthetic panel.
+   *
+   * @param size
+   *          The number of elements.
+   * @param seed
+   *          The random seed for {@link #animate(float)}.
+   */
+  public SyntheticPanel(int size, long seed)
+  {
+    random = new Random(seed);
+    state = new PanelState(new Dimension(WIDTH, HEIGHT));
+    elements = new Element[size];
+    int cols = (int) Math.ceil(Math.sqrt(size * 16.0 / 9.0));
+    int rows = (size + cols - 1) / cols;
+    int w = WIDTH / cols;
+    int h = HEIGHT / rows;
+    for (int i = 0; i < size; i++)
+      elements[i] = new Element((i % cols) * w + 1, (i / cols) * h + 1,
+          Math.max(w - 2, 1), Math.max(h - 2, 1),
+          LCARS.EC_PRIMARY | LCARS.ES_RECT_RND);
+    ipanel = (IPanel) Proxy.newProxyInstance(IPanel.class.getClassLoader(),
+        new Class<?>[] { IPanel.class },
+        (proxy, method, args) -> method.getReturnType() == int.class ? 0 : null);
+  }
+
+  /**
+   * Changes a fraction of the elements: half of them are toggled selected,
+   * the other half are moved by one pixel.
+   *
+   * @param fraction
+   *          The fraction of elements to change (0...1).
+   */
+  public void animate(float fraction)
+  {
+    int n = Math.round(elements.length * fraction);
+    for (int i = 0; i < n; i++)
+    {
+      Element el = elements[random.nextInt(elements.length)];
+      if ((i & 1) == 0)
+        el.setSelected(!el.isSelected());
+      else
+      {
+        Rectangle b = el.getBounds();
+        b.x += random.nextBoolean() ? 1 : -1;
+        el.setBounds(b);
+      }
+    }
+  }
+
+  /**
+   * Returns the update data of all elements, like {@link
+   * de.tucottbus.kt.lcars.Panel Panel} does for a screen update.
+   *
+   * @param incremental
+   *          Get data for incremental or full update.
+   */
+  public ElementData[] getUpdateData(boolean incremental)
+  {
+    ElementData[] result = new ElementData[elements.length];
+    for (int i = 0; i < elements.length; i++)
+      result[i] = elements[i].getUpdateData(incremental);
+    return result;
+  }
+
+  /**
+   * Returns the panel data of a screen update.
+   *
+   * @param incremental
+   *          Get data for incremental or full update.
+   */
+  public PanelData getPanelData(boolean incremental)
+  {
+    try
+    {
+      return new PanelData(ipanel, state, getUpdateData(incremental));
+    }
+    catch (RemoteException e)
+    {
+      throw new IllegalStateException(e);
+    }
+  }
+}
+
+// EOF
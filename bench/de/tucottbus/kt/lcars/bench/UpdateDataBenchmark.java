@@ -0,0 +1,125 @@
+package de.tucottbus.kt.lcars.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.tucottbus.kt.lcars.elements.EElement;
+import de.tucottbus.kt.lcars.elements.ElementData;
+
+/**
+ * Benchmarks the panel side of a screen update: {@link
+ * EElement#getUpdateData(boolean)}, {@link ElementData#getUpdate(boolean,
+ * boolean)} and the screen side merge {@link
+ * ElementData#applyUpdate(ElementData)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UpdateDataBenchmark
+{
+  /**
+   * Number of elements on the panel.
+   */
+  @Param({ "50", "500", "5000" })
+  public int size;
+
+  /**
+   * Fraction of elements changed per frame.
+   */
+  @Param({ "0.1" })
+  public float changes;
+
+  private SyntheticPanel panel;
+  private ElementData[] complete;
+
+  @Setup(Level.Trial)
+  public void setUpTrial()
+  {
+    panel = new SyntheticPanel(size, 4711);
+    complete = panel.getUpdateData(false);
+  }
+
+  @Setup(Level.Invocation)
+  public void setUpInvocation()
+  {
+    panel.animate(changes);
+  }
+
+  /**
+   * Full update: all elements send their complete data.
+   */
+  @Benchmark
+  public void getUpdateDataFull(Blackhole bh)
+  {
+    for (EElement el : panel.elements)
+      bh.consume(el.getUpdateData(false));
+  }
+
+  /**
+   * Incremental update after {@link #changes} of the elements have changed.
+   */
+  @Benchmark
+  public void getUpdateDataIncremental(Blackhole bh)
+  {
+    for (EElement el : panel.elements)
+      bh.consume(el.getUpdateData(true));
+  }
+
+  /**
+   * Copying element data without recomputing geometries.
+   */
+  @Benchmark
+  public void elementDataGetUpdate(Blackhole bh)
+  {
+    for (ElementData ed : complete)
+      bh.consume(ed.getUpdate(true, false));
+  }
+
+  /**
+   * Completing incremental element data with the data of the previous frame.
+   */
+  @Benchmark
+  public int elementDataApplyUpdate(ApplyState s)
+  {
+    int changed = 0;
+    for (int i = 0; i < s.update.length; i++)
+      changed |= s.update[i].applyUpdate(s.pred[i]);
+    return changed;
+  }
+
+  /**
+   * Incremental element data and their complete predecessors. The update
+   * completed by one invocation is the predecessor of the next one.
+   */
+  @State(Scope.Thread)
+  public static class ApplyState
+  {
+    ElementData[] pred;
+    ElementData[] update;
+
+    @Setup(Level.Invocation)
+    public void setUp(UpdateDataBenchmark b)
+    {
+      pred = update != null ? update : b.complete;
+      update = b.panel.getUpdateData(true);
+    }
+  }
+}
+
+// EOF
@@ -0,0 +1,113 @@
+package de.tucottbus.kt.lcars.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.tucottbus.kt.lcars.PanelData;
+import de.tucottbus.kt.lcars.net.WireCodec;
+
+/**
+ * Compares the {@linkplain WireCodec compact wire format} of {@link
+ * PanelData} with the default Java serialization. Both variants go through
+ * an {@link ObjectOutputStream} like an RMI call does. The number of bytes
+ * per frame is printed at the start of each trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WireCodecBenchmark
+{
+  /**
+   * Number of elements on the panel.
+   */
+  @Param({ "50", "500", "5000" })
+  public int size;
+
+  /**
+   * <code>true</code> for incremental updates where 10 % of the elements
+   * changed, <code>false</code> for full updates.
+   */
+  @Param({ "false", "true" })
+  public boolean incremental;
+
+  /**
+   * <code>true</code> for the compact wire format, <code>false</code> for
+   * Java serialization.
+   */
+  @Param({ "false", "true" })
+  public boolean compact;
+
+  private PanelData data;
+  private byte[] serialized;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException
+  {
+    WireCodec.setEnabled(compact);
+    SyntheticPanel panel = new SyntheticPanel(size, 4711);
+    data = panel.getPanelData(false);
+    if (incremental)
+    {
+      panel.animate(0.1f);
+      data = panel.getPanelData(true);
+    }
+    serialized = serialize(data);
+    System.out.println("\n" + (compact ? "compact" : "java") + ": "
+        + serialized.length + " bytes per frame");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown()
+  {
+    WireCodec.setEnabled(false);
+  }
+
+  @Benchmark
+  public byte[] encode() throws IOException
+  {
+    return serialize(data);
+  }
+
+  @Benchmark
+  public Object decode() throws IOException, ClassNotFoundException
+  {
+    try (ObjectInputStream in = new ObjectInputStream(
+        new ByteArrayInputStream(serialized)))
+    {
+      return in.readObject();
+    }
+  }
+
+  private static byte[] serialize(Object obj) throws IOException
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+    {
+      out.writeObject(obj);
+    }
+    return bytes.toByteArray();
+  }
+}
+
+// EOF
@@ -0,0 +1,97 @@
+package de.tucottbus.kt.lcars.geometry.rendering;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.tucottbus.kt.lcars.bench.SyntheticPanel;
+
+/**
+ * Benchmarks the screen side of a screen update: {@link
+ * FrameData#apply(FrameData)} for full and selective repaints and {@link
+ * FrameData#collapse(FrameData)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FrameDataBenchmark
+{
+  /**
+   * Number of elements on the panel.
+   */
+  @Param({ "50", "500", "5000" })
+  public int size;
+
+  /**
+   * Fraction of elements changed per frame.
+   */
+  @Param({ "0.1" })
+  public float changes;
+
+  /**
+   * Selective repaint mode.
+   */
+  @Param({ "false", "true" })
+  public boolean selectiveRepaint;
+
+  private SyntheticPanel panel;
+  private FrameData current;
+  private FrameData next;
+
+  @Setup(Level.Trial)
+  public void setUpTrial()
+  {
+    panel = new SyntheticPanel(size, 4711);
+    current = FrameData.create(panel.getPanelData(false), false,
+        selectiveRepaint);
+    current.apply(null);
+  }
+
+  @Setup(Level.Invocation)
+  public void setUpInvocation()
+  {
+    panel.animate(changes);
+    next = FrameData.create(panel.getPanelData(true), true, selectiveRepaint);
+  }
+
+  /**
+   * Applies an incremental frame to the previous one. The applied frame
+   * becomes the previous frame of the next invocation.
+   */
+  @Benchmark
+  public FrameData apply()
+  {
+    next.apply(current);
+    current = next;
+    return current;
+  }
+
+  /**
+   * Applies an incremental frame to the previous one and collapses the
+   * previous frame into it, as if the previous frame had not been painted.
+   */
+  @Benchmark
+  public FrameData collapse()
+  {
+    next.apply(current);
+    next.collapse(current);
+    current = next;
+    return current;
+  }
+}
+
+// EOF
@@ -0,0 +1,235 @@
+package de.tucottbus.kt.lcars;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.tucottbus.kt.lcars.elements.EElement;
+
+/**
+ * A spatial index for hit-testing the {@linkplain EElement elements} of a
+ * {@link Panel}. Elements are entered into a uniform grid of cells by the
+ * bounding box of their area. A hit test only examines the elements of the
+ * cell containing the point, in descending z-order, and performs the exact
+ * containment test only for elements whose boxes contain the point.
+ *
+ * <p>The index is <b>not thread-safe</b>, all methods except
+ * {@link #invalidate(EElement)} must be invoked while holding the lock on the
+ * panel's element list. The z-order follows the order of {@link #add(EElement)
+ * additions}, i.e. the order of the panel's element list.</p>
+ */
+class HitIndex
+{
+  /**
+   * The edge length of a grid cell in panel pixels.
+   */
+  private static final int CELL_SIZE = 64;
+
+  /**
+   * Elements covering more cells than this are kept in a separate list which
+   * is examined on every hit test.
+   */
+  private static final int MAX_CELLS = 256;
+
+  private final ConcurrentHashMap<EElement, Entry> entries = new ConcurrentHashMap<EElement, Entry>();
+  private final HashMap<Long, ArrayList<Entry>> cells = new HashMap<Long, ArrayList<Entry>>();
+  private final ArrayList<Entry> large = new ArrayList<Entry>();
+  private final Set<EElement> invalid = ConcurrentHashMap.newKeySet();
+  private final ArrayList<Entry> candidates = new ArrayList<Entry>();
+  private long zCounter;
+
+  /**
+   * Adds an element on top of all indexed elements. If the element is already
+   * indexed, it is moved to the top. The area of the element is determined on
+   * the next hit test, so adding does not compute geometries.
+   *
+   * @param el
+   *          The element.
+   */
+  void add(EElement el)
+  {
+    remove(el);
+    entries.put(el, new Entry(el, zCounter++));
+    invalid.add(el);
+  }
+
+  /**
+   * Removes an element from the index.
+   *
+   * @param el
+   *          The element.
+   */
+  void remove(EElement el)
+  {
+    Entry entry = entries.remove(el);
+    if (entry != null)
+      delete(entry);
+  }
+
+  /**
+   * Marks the area of an element as changed. The element is re-indexed before
+   * the next hit test. Can be invoked on any thread.
+   *
+   * @param el
+   *          The element.
+   */
+  void invalidate(EElement el)
+  {
+    if (entries.containsKey(el))
+      invalid.add(el);
+  }
+
+  /**
+   * Determines if an element is indexed, i.e. on the panel. Can be invoked on
+   * any thread.
+   *
+   * @param el
+   *          The element.
+   */
+  boolean contains(EElement el)
+  {
+    return entries.containsKey(el);
+  }
+
+  /**
+   * Returns the topmost element containing a point.
+   *
+   * @param pt
+   *          The point in panel coordinates.
+   * @param modal
+   *          If <code>true</code> consider {@link EElement#isModal() modal}
+   *          elements only, otherwise consider non-modal elements only.
+   * @return The element or <code>null</code> if there is no element at this
+   *         position.
+   */
+  EElement elementAt(Point pt, boolean modal)
+  {
+    update();
+    candidates.clear();
+    ArrayList<Entry> cell = cells.get(cellKey(Math.floorDiv(pt.x, CELL_SIZE),
+        Math.floorDiv(pt.y, CELL_SIZE)));
+    if (cell != null)
+      collect(cell, pt, modal);
+    collect(large, pt, modal);
+    candidates.sort((a, b) -> Long.compare(b.z, a.z));
+    try
+    {
+      for (Entry entry : candidates)
+        if (entry.el.contains(pt))
+          return entry.el;
+      return null;
+    }
+    finally
+    {
+      candidates.clear();
+    }
+  }
+
+  // -- Private methods --
+
+  /**
+   * Re-indexes all invalidated elements.
+   */
+  private void update()
+  {
+    for (Iterator<EElement> it = invalid.iterator(); it.hasNext();)
+    {
+      Entry entry = entries.get(it.next());
+      it.remove();
+      if (entry == null)
+        continue;
+      delete(entry);
+      insert(entry);
+    }
+  }
+
+  private void collect(ArrayList<Entry> list, Point pt, boolean modal)
+  {
+    for (Entry entry : list)
+    {
+      if (!entry.bounds.contains(pt))
+        continue;
+      if (entry.el.isModal() != modal || entry.el.isStatic())
+        continue;
+      candidates.add(entry);
+    }
+  }
+
+  private void insert(Entry entry)
+  {
+    entry.bounds = entry.el.getAreaBounds();
+    Rectangle b = entry.bounds;
+    if (b.isEmpty())
+      return;
+    entry.x0 = Math.floorDiv(b.x, CELL_SIZE);
+    entry.y0 = Math.floorDiv(b.y, CELL_SIZE);
+    entry.x1 = Math.floorDiv(b.x + b.width - 1, CELL_SIZE);
+    entry.y1 = Math.floorDiv(b.y + b.height - 1, CELL_SIZE);
+    if ((long)(entry.x1 - entry.x0 + 1) * (entry.y1 - entry.y0 + 1) > MAX_CELLS)
+    {
+      entry.large = true;
+      large.add(entry);
+      return;
+    }
+    for (int cx = entry.x0; cx <= entry.x1; cx++)
+      for (int cy = entry.y0; cy <= entry.y1; cy++)
+        cells.computeIfAbsent(cellKey(cx, cy), k -> new ArrayList<Entry>(8))
+            .add(entry);
+  }
+
+  private void delete(Entry entry)
+  {
+    Rectangle b = entry.bounds;
+    entry.bounds = null;
+    if (b == null || b.isEmpty())
+      return;
+    if (entry.large)
+    {
+      entry.large = false;
+      large.remove(entry);
+      return;
+    }
+    for (int cx = entry.x0; cx <= entry.x1; cx++)
+      for (int cy = entry.y0; cy <= entry.y1; cy++)
+      {
+        Long key = cellKey(cx, cy);
+        ArrayList<Entry> cell = cells.get(key);
+        if (cell == null)
+          continue;
+        cell.remove(entry);
+        if (cell.isEmpty())
+          cells.remove(key);
+      }
+  }
+
+  private static Long cellKey(int cx, int cy)
+  {
+    return ((long)cx << 32) | (cy & 0xFFFFFFFFL);
+  }
+
+  // -- Nested classes --
+
+  /**
+   * An indexed element.
+   */
+  private static final class Entry
+  {
+    final EElement el;
+    final long z;
+    Rectangle bounds;
+    boolean large;
+    int x0, y0, x1, y1;
+
+    Entry(EElement el, long z)
+    {
+      this.el = el;
+      this.z = z;
+    }
+  }
+}
+
+// EOF
@@ -34,13 +34,13 @@ import java.rmi.RemoteException;
 import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
@@ -64,11 +64,14 @@ import de.tucottbus.kt.lcars.logging.Log;
 import de.tucottbus.kt.lcars.net.LcarsServer;
 import de.tucottbus.kt.lcars.net.NetUtils;
 import de.tucottbus.kt.lcars.net.RmiScreenAdapter;
+import de.tucottbus.kt.lcars.net.WireCodec;
 import de.tucottbus.kt.lcars.net.panels.ServerPanel;
 import de.tucottbus.kt.lcars.speech.ISpeechEngine;
 import de.tucottbus.kt.lcars.speech.SpeechEnginePanel;
 import de.tucottbus.kt.lcars.swt.ColorMeta;
 import de.tucottbus.kt.lcars.swt.FontMeta;
+import de.tucottbus.kt.lcars.swt.TextMetrics;
+import de.tucottbus.kt.lcars.util.DispatchExecutor;
 
 /**
  * The LCARS main class. Includes the main method, constants, static service
@@ -204,7 +207,8 @@ public class LCARS
   }
   
   // -- Color manager --
-  private static HashMap<Integer,ColorMeta[]> colorSchemes;
+  private static final Map<Integer,ColorMeta[]> colorSchemes
+    = new ConcurrentHashMap<Integer,ColorMeta[]>();
 
   /**
    * Returns an LCARS color scheme.
@@ -408,7 +412,6 @@ public class LCARS
    */
   public static ColorMeta getColor(int colorScheme, int style)
   {
-    if (colorSchemes==null) colorSchemes=new HashMap<Integer,ColorMeta[]>();
     ColorMeta colors[] = colorSchemes.get(new Integer(colorScheme));
     if (colors==null) 
     {
@@ -665,14 +668,8 @@ public class LCARS
    */
   public static Rectangle getTextBounds(FontMeta meta, String text) 
   {    
-    if (text == null || text == "") return new Rectangle();
-    Font font = meta.getFont();    
-    TextLayout lt = new TextLayout(font.getDevice());
-    lt.setFont(font);
-    lt.setText(text);
-    org.eclipse.swt.graphics.Rectangle result = lt.getBounds();
-    lt.dispose();
-    return new Rectangle(result.x, result.y, result.width, result.height);    
+    if (text == null || text.length() == 0) return new Rectangle();
+    return TextMetrics.getBounds(meta, text);
   }
   
   /**
@@ -731,16 +728,8 @@ public class LCARS
     if (insets==null) insets = new Point(0,0);
     
     
-    // Measure text lines
-    TextLayout tl = new TextLayout(fontMeta.getFont().getDevice());
     String s[] = text.split("\n");
     
-    Font font = fontMeta.getFont();
-    tl.setFont(font);
-    tl.setText(text);
-    
-    org.eclipse.swt.graphics.Rectangle tlBnds = tl.getBounds();
-    
     int align = (style & ES_LABEL) >> 4;
     if(align > ES_LABEL_SE)
       align = ES_LABEL_NW >> 4;
@@ -756,19 +745,21 @@ public class LCARS
         
     //if (tw <= 0 || th <= 0) return geos;
     
+    // Measure text lines (cached)
+    TextMetrics tl;
     switch (align / 3) // horizontal alignment
     {
       case 0: // left
-        tl.setAlignment(SWT.LEFT);
+        tl = TextMetrics.get(fontMeta, text, SWT.LEFT);
         tlx = tx;
         break;
       case 1: // middle
-        tl.setAlignment(SWT.CENTER);
-        tlx = tx + (tw-tlBnds.width)/2;
+        tl = TextMetrics.get(fontMeta, text, SWT.CENTER);
+        tlx = tx + (tw-tl.width)/2;
         break;
       case 2: // right
-        tl.setAlignment(SWT.RIGHT);        
-        tlx = tx + tw-tlBnds.width;
+        tl = TextMetrics.get(fontMeta, text, SWT.RIGHT);
+        tlx = tx + tw-tl.width;
         break;
       default: return geos;
     }
@@ -782,13 +773,13 @@ public class LCARS
     switch (align % 3) // vertical alignment
     {
       case 0: // top
-        tly = ty-tl.getLineMetrics(0).getLeading();
+        tly = ty-tl.leading;
         break;  
       case 1: // middle
-        tly = ty + (th-tlBnds.height-tl.getDescent()+tl.getLineMetrics(0).getLeading())/2;
+        tly = ty + (th-tl.height-tl.descent+tl.leading)/2;
         break;
       case 2: // bottom
-        tly = ty + th-tlBnds.height;
+        tly = ty + th-tl.height;
         break;
       default: return geos;
     }
@@ -797,7 +788,7 @@ public class LCARS
         
     for (int i=0; i<n; i++)
     {
-      org.eclipse.swt.graphics.Rectangle linBnds = tl.getLineBounds(i);
+      Rectangle linBnds = tl.getLineBounds(i);
       //if (linBnds.y > th) break; // line out of vertical bounds
       int x = linBnds.x+tlx;
       int y = linBnds.y+tly;
@@ -823,7 +814,6 @@ public class LCARS
       }
     }
     
-    tl.dispose();
     return geos;
   }
 
@@ -1131,18 +1121,20 @@ public class LCARS
   // -- Static methods --
   
   /**
-   * Runs a <code>runnable</code> after a short period of time.
+   * Runs a <code>runnable</code> on a {@linkplain DispatchExecutor dispatch
+   * thread}.
    * 
    * @param runnable
    *          The runnable.
    */
   public static void invokeLater(Runnable runnable)
   {
-    invokeLater(runnable,1);
+    DispatchExecutor.execute(runnable);
   }
 
   /**
-   * Runs a <code>runnable</code> after a <code>delay</code> milliseconds.
+   * Runs a <code>runnable</code> on a {@linkplain DispatchExecutor dispatch
+   * thread} after a <code>delay</code> milliseconds.
    * 
    * @param runnable
    *          The runnable.
@@ -1151,23 +1143,7 @@ public class LCARS
    */
   public static void invokeLater(Runnable runnable, long delay)
   {
-    String name = "LCARS.invokeLater";
-    try
-    {
-      name += "@"+Thread.currentThread().getStackTrace()[2];
-    } catch(Exception e) 
-    {
-    }
-    Thread thread = new Thread(name){
-      @Override
-      public void run()
-      {
-        try { Thread.sleep(delay); } catch (InterruptedException e) {}
-        runnable.run();
-      }
-    };
-    thread.setDaemon(true);
-    thread.start();
+    DispatchExecutor.execute(runnable,delay);
   }
 
   /**
@@ -1255,18 +1231,24 @@ public class LCARS
    * @param args
    *  Command line options<pre>
    *  --clientof=hostname        - Serve a remote screen [1]
+   *  --compactwire              - Send panel updates in compact binary format
    *  --debug                    - Print debug messages
    *  --device=devicename        - Name of host device, e.g. wetab [2]
+   *  --glyphatlas               - Draw digits from pre-rasterized glyphs
    *  --help, -h, ?              - Print help and exit
+   *  --mirror                   - Share one panel among all screens showing it [3]
    *  --mode=[fullscreen|window] - Screen mode (default: fullscreen)
    *  --nogui                    - Do not display a screen [3]
    *  --nomouse                  - Hide mouse cursor
    *  --nospeech                 - Disable speech I/O
    *  --PADD                     - Running on a PADD
    *  --panel=classname          - LCARS panel to display at start-up 
+   *  --rastercache              - Cache rasterized elements on the screen
    *  --rminame=name             - RMI name (default: &lt;hostname&gt;) [4]
    *  --screen=n                 - Use n-th screen (default: 1) [5]
+   *  --sendqueue=n              - Send queue size of the stream transport (default: 8)
    *  --server                   - Serve remote panels [1]
+   *  --transport=[rmi|stream]   - Transport of remote screen updates (default: rmi) [7]
    *  --wallpaper=filename       - Use wall paper (slower!)
    *  --xpos=n                   - Horizontal position of window [6]
    *  
@@ -1276,6 +1258,7 @@ public class LCARS
    *  [4] useful when multiple NICs are installed in a host
    *  [5] implies --mode=fullscreen
    *  [6] valid with --mode=maximized for displaying panel at secondary screen
+   *  [7] must be set on the screen and on the server host
    *  </pre>
    */
   public static void main(String[] args)
@@ -1296,9 +1279,12 @@ public class LCARS
       System.out.print("\n\n  java -cp \"target/lcarswt-<version>.<profile>-jar-with-dependencies.jar\" de.tucottbus.kt.lcars.LCARS [options]");
       System.out.print("\n\nCommand line options");
       System.out.print("\n  --clientof=hostname        - Serve a remote screen [1]");
+      System.out.print("\n  --compactwire              - Send panel updates in compact binary format");
       System.out.print("\n  --debug                    - Print debug messages");
       System.out.print("\n  --device=devicename        - Name of host device, e.g. wetab [2]");
+      System.out.print("\n  --glyphatlas               - Draw digits from pre-rasterized glyphs");
       System.out.print("\n  --help, -h, ?              - Print help and exit");
+      System.out.print("\n  --mirror                   - Share one panel among all screens showing it [3]");
       System.out.print("\n  --mode=[fullscreen|window] - Screen mode (default: fullscreen)");
       System.out.print("\n  --musiclib=<music-dir>     - Audio library folder");
       System.out.print("\n  --nogui                    - Do not display a screen [3]");
@@ -1306,9 +1292,12 @@ public class LCARS
       System.out.print("\n  --nospeech                 - Disable speech I/O");
       System.out.print("\n  --PADD                     - Running on a PADD");
       System.out.print("\n  --panel=classname          - LCARS panel to display at start-up"); 
+      System.out.print("\n  --rastercache              - Cache rasterized elements on the screen");
       System.out.print("\n  --rminame=name             - RMI name (default: &lt;hostname&gt;) [4]");
       System.out.print("\n  --screen=n                 - Use n-th screen (default: 1) [5]");
+      System.out.print("\n  --sendqueue=n              - Send queue size of the stream transport (default: 8)");
       System.out.print("\n  --server                   - Serve remote panels [1]");
+      System.out.print("\n  --transport=[rmi|stream]   - Transport of remote screen updates (default: rmi) [7]");
       System.out.print("\n  --wallpaper=filename       - Use wall paper (slower!)");
       System.out.print("\n  --xpos=n                   - Horizontal position of window [6]");
       System.out.print("\n  ");
@@ -1318,6 +1307,7 @@ public class LCARS
       System.out.print("\n  [4] useful when multiple NICs are installed in a host");
       System.out.print("\n  [5] implies --mode=fullscreen");
       System.out.print("\n  [6] valid with --mode=maximized for displaying panel at secondary screen");
+      System.out.print("\n  [7] must be set on the screen and on the server host");
       System.out.print("\n----------------------------------------------------------------------------");
       System.out.print("\n\n");
       return;
@@ -1325,6 +1315,7 @@ public class LCARS
     
     Log.DebugMode = getArg("--debug") != null;
     LCARS.SCREEN_DEBUG = getArg("--screenDebug") != null;
+    WireCodec.setEnabled(getArg("--compactwire") != null);
     
     Log.addObserver(new ILogObserver()
     {
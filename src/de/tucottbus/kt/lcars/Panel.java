@@ -12,12 +12,18 @@ import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 import de.tucottbus.kt.lcars.contributors.EMessageBox;
 import de.tucottbus.kt.lcars.contributors.EMessageBoxListener;
@@ -33,6 +39,8 @@ import de.tucottbus.kt.lcars.speech.ISpeechEngine;
 import de.tucottbus.kt.lcars.speech.ISpeechEventListener;
 import de.tucottbus.kt.lcars.speech.events.SpeechEvent;
 import de.tucottbus.kt.lcars.swt.ImageMeta;
+import de.tucottbus.kt.lcars.util.DispatchExecutor;
+import de.tucottbus.kt.lcars.util.FrameClock;
 import de.tucottbus.kt.lcars.util.LoadStatistics;
 import de.tucottbus.kt.lcars.util.Objectt;
 
@@ -52,6 +60,12 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
 
   private static AtomicInteger serialGenCount = new AtomicInteger(0);
 
+  /**
+   * Minimal number of elements with invalid geometries for which the
+   * geometries are recomputed in parallel before a screen update.
+   */
+  private static final int PARALLEL_VALIDATION_THRESHOLD = 32;
+
   /**
    * HACK: should not be necessary!
    */
@@ -85,11 +99,34 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
    */
   private final ArrayList<EElement> elements;
 
+  /**
+   * The hit-test index of the {@linkplain #elements elements}, guarded by the
+   * lock on {@link #elements}.
+   */
+  private final HitIndex hitIndex = new HitIndex();
+
   /**
    * The set of elements known by the screen
    */
   private final HashSet<EElement> addedElements;
 
+  /**
+   * The set of elements invalidated since the last screen update.
+   */
+  private final Set<EElement> dirtyElements = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Serial numbers of the elements removed since the last screen update,
+   * guarded by the lock on {@link #elements}.
+   */
+  private final HashSet<Long> removedSerials = new HashSet<Long>();
+
+  /**
+   * Serial numbers of the elements (re-)added on top since the last screen
+   * update in z-order, guarded by the lock on {@link #elements}.
+   */
+  private final LinkedHashSet<Long> appendedSerials = new LinkedHashSet<Long>();
+
   /**
    * The panel state.
    */
@@ -106,11 +143,22 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
    */
   private long fullUpdateTime;
 
+  /**
+   * Forces a full screen update on the next frame (e.g. for a new screen
+   * which does not know any elements yet).
+   */
+  private volatile boolean fullUpdateRequested = true;
+
   /**
    * The panel load statistics.
    */
   private LoadStatistics loadStat;
 
+  /**
+   * Receives the duration of each screen update, can be <code>null</code>.
+   */
+  private volatile LongConsumer updateProbe;
+
   // --Dragged elements--//
 
   /**
@@ -125,6 +173,20 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
    */
   private final AtomicBoolean screenInvalid;
 
+  /**
+   * Runs the {@linkplain PanelTimerTask panel timer ticks}, i.e. the periodic
+   * callbacks and the {@linkplain #updateScreen() screen updates}, one after
+   * the other off the shared {@linkplain FrameClock frame clock}, so a slow
+   * callback or remote screen only delays this panel.
+   */
+  private final Executor timerQueue = DispatchExecutor.newSerialQueue();
+
+  /**
+   * Flag indicating that a panel timer tick has been submitted and is not yet
+   * finished.
+   */
+  private final AtomicBoolean ticking = new AtomicBoolean();
+
   private EMessageBox eMsgBox;
   private EPanelSelector ePnlSel;
   private ELabel eTitle;
@@ -132,7 +194,7 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
   private EElement eDim;
   private EElement eSilent;
   private EElement eLoadStat;
-  private Timer runt;
+  private FrameClock.Registration runt;
   private int runc;
   private int dimc;
   private float dimInc = 0.05f;
@@ -333,6 +395,17 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
     invalidate();
     if (iscreen != null)
       this.iscreen = iscreen;
+    fullUpdateRequested = true;
+  }
+
+  /**
+   * Requests a full screen update containing all elements on the next frame,
+   * e.g. for a screen which missed previous updates.
+   */
+  public void requestFullUpdate()
+  {
+    fullUpdateRequested = true;
+    invalidate();
   }
 
   /**
@@ -773,6 +846,21 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
     return loadStat;
   }
 
+  /**
+   * Sets a consumer which receives the duration of every
+   * {@linkplain #updateScreen() screen update} in nanoseconds. Intended for
+   * benchmarks which need more detail than the {@linkplain
+   * #getLoadStatistics() load statistics}.
+   * 
+   * @param probe
+   *          The consumer, <code>null</code> to remove it. The consumer is
+   *          invoked on the panel timer queue.
+   */
+  public void setUpdateProbe(LongConsumer probe)
+  {
+    this.updateProbe = probe;
+  }
+
   /**
    * Sets the list of classes to be displayed on the {@linkplain EPanelSelector
    * panel selector dialog}.
@@ -811,6 +899,8 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
     if (!doRemove(el))
       addedElements.add(el);
     elements.add(el);
+    hitIndex.add(el);
+    appendedSerials.add(el.getSerialNo());
   }
 
   /**
@@ -842,7 +932,12 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
   private boolean doRemove(EElement el)
   {
     addedElements.remove(el);
-    return elements.remove(el);
+    hitIndex.remove(el);
+    if (!elements.remove(el))
+      return false;
+    appendedSerials.remove(el.getSerialNo());
+    removedSerials.add(el.getSerialNo());
+    return true;
   }
 
   /**
@@ -929,20 +1024,7 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
    */
   private EElement doElementAt(Point pt, boolean modal)
   {
-    for (int i = elements.size() - 1; i >= 0; i--)
-    {
-      EElement el = elements.get(i);
-      if (el.isModal() != modal)
-        continue;
-      if (el.isStatic())
-        continue;
-
-      Area es = new Area();
-      el.getArea(es);
-      if (es.contains(pt))
-        return el;
-    }
-    return null;
+    return hitIndex.elementAt(pt, modal);
   }
 
   /**
@@ -1023,6 +1105,26 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
     screenInvalid.set(true);
   }
 
+  /**
+   * Notifies the panel that an element needs to be redrawn. Invoked by
+   * {@link EElement#invalidate(boolean)}. Only invalidated elements are sent
+   * to the screen on the next (sparse) update. If the geometry has changed,
+   * the element is also re-indexed for {@linkplain #elementAt(Point)
+   * hit-testing}.
+   * 
+   * @param el
+   *          The element.
+   * @param geometryChanged
+   *          <code>true</code> if the area of the element has changed.
+   */
+  public void invalidate(EElement el, boolean geometryChanged)
+  {
+    dirtyElements.add(el);
+    if (geometryChanged)
+      hitIndex.invalidate(el);
+    invalidate();
+  }
+
   /**
    * Updates the screen with the current panel and GUI elements state.
    */
@@ -1055,36 +1157,35 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
     // Decide on incremental update
     boolean incremental = !(getScreen() instanceof Screen);
     /*incremental = true; // Force incremental */
+    boolean full = false;
     long time = System.nanoTime();
-    if (time - fullUpdateTime > 1E9)
+    if (fullUpdateRequested || time - fullUpdateTime > 1E9)
     {
+      fullUpdateRequested = false;
       fullUpdateTime = time;
       incremental = false;
+      full = true;
     }
 
     try
     {
+      // Recompute invalid geometries in parallel (if there are many)
+      validateGeometries();
+
       // Make update data
-      ElementData[] els;
-      int i = 0;
+      PanelData data;
       synchronized (this.elements)
       {
-        els = new ElementData[this.elements.size()];
-        for (EElement el : this.elements)
-          try
-          {
-            els[i++] 
-              = el.getUpdateData(incremental && !this.addedElements.contains(el));
-          }
-          catch (Exception e)
-          {
-            Log.err("Failed to get update data for element "+el,e);
-          }
+        if (full)
+          data = makeFullUpdate(incremental);
+        else
+          data = makeSparseUpdate(incremental);
         this.addedElements.clear();
+        this.removedSerials.clear();
+        this.appendedSerials.clear();
       }
 
       // Update screen
-      PanelData data = new PanelData(this, state, els);
       iscreen.update(data, incremental);
       noConnectionOnUpdate = false;
     } 
@@ -1094,14 +1195,97 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
         Log.err("Remote screen of "+getClass().getSimpleName()
           +" not updated (no connection).",e);
       noConnectionOnUpdate = true;
+      fullUpdateRequested = true;
     }
     catch (Exception e)
     {
       Log.err("Failed to make screen update data.",e);
+      fullUpdateRequested = true;
     }
 
     time = System.nanoTime() - time;
     loadStat.add((int) (time / 400000));
+    LongConsumer probe = updateProbe;
+    if (probe!=null)
+      probe.accept(time);
+  }
+
+  /**
+   * Makes the data of a full screen update containing all elements.
+   * <em>Must be invoked while holding the lock on {@link #elements}.</em>
+   * 
+   * @param incremental
+   *          Incremental update flag.
+   */
+  private PanelData makeFullUpdate(boolean incremental) throws RemoteException
+  {
+    // Elements invalidated from now on will be in the next sparse update
+    dirtyElements.clear();
+
+    ElementData[] els = new ElementData[this.elements.size()];
+    int i = 0;
+    for (EElement el : this.elements)
+      try
+      {
+        els[i++] 
+          = el.getUpdateData(incremental && !this.addedElements.contains(el));
+      }
+      catch (Exception e)
+      {
+        Log.err("Failed to get update data for element "+el,e);
+      }
+    return new PanelData(this, state, els);
+  }
+
+  /**
+   * Makes the data of a sparse screen update containing only the elements
+   * invalidated or added since the last update plus the changes of the
+   * z-order. <em>Must be invoked while holding the lock on
+   * {@link #elements}.</em>
+   * 
+   * @param incremental
+   *          Incremental update flag.
+   */
+  private PanelData makeSparseUpdate(boolean incremental) throws RemoteException
+  {
+    ArrayList<ElementData> els = new ArrayList<ElementData>(
+        dirtyElements.size() + addedElements.size());
+    for (Iterator<EElement> it = dirtyElements.iterator(); it.hasNext();)
+    {
+      EElement el = it.next();
+      it.remove();
+      if (addedElements.contains(el) || !hitIndex.contains(el))
+        continue;
+      try
+      {
+        els.add(el.getUpdateData(incremental));
+      }
+      catch (Exception e)
+      {
+        Log.err("Failed to get update data for element "+el,e);
+      }
+    }
+    for (EElement el : addedElements)
+      try
+      {
+        els.add(el.getUpdateData(false));
+      }
+      catch (Exception e)
+      {
+        Log.err("Failed to get update data for element "+el,e);
+      }
+
+    long[] removed = new long[removedSerials.size()];
+    int i = 0;
+    for (Long serialNo : removedSerials)
+      removed[i++] = serialNo;
+    long[] appended = new long[appendedSerials.size()];
+    i = 0;
+    for (Long serialNo : appendedSerials)
+      appended[i++] = serialNo;
+
+    return new PanelData(this, state, els.toArray(new ElementData[els.size()]),
+        removed, appended);
   }
   
   // -- Keyboard event  handling --
@@ -1138,13 +1322,104 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
   {
   }
 
+  /**
+   * Recomputes the invalid geometries of the elements on this panel in
+   * parallel if there are at least {@link #PARALLEL_VALIDATION_THRESHOLD} of
+   * them. Fewer invalid geometries are recomputed while making the screen
+   * update data.
+   */
+  private void validateGeometries()
+  {
+    ArrayList<EElement> invalid = new ArrayList<EElement>();
+    synchronized (this.elements)
+    {
+      for (EElement el : this.elements)
+        if (el.isGeometryInvalid())
+          invalid.add(el);
+    }
+    if (invalid.size() < PARALLEL_VALIDATION_THRESHOLD)
+      return;
+    ForkJoinPool.commonPool().invoke(
+        new ValidateGeometryTask(invalid, 0, invalid.size()));
+  }
+
+  /**
+   * Recomputes the geometries of a range of elements, splitting the range for
+   * parallel execution.
+   */
+  static class ValidateGeometryTask extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Number of elements validated by one task without further splitting.
+     */
+    private static final int GRAIN = 8;
+
+    private final ArrayList<EElement> elements;
+    private final int from;
+    private final int to;
+
+    ValidateGeometryTask(ArrayList<EElement> elements, int from, int to)
+    {
+      this.elements = elements;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (to - from > GRAIN)
+      {
+        int mid = (from + to) >>> 1;
+        invokeAll(new ValidateGeometryTask(elements, from, mid),
+            new ValidateGeometryTask(elements, mid, to));
+        return;
+      }
+      for (int i = from; i < to; i++)
+        try
+        {
+          elements.get(i).validateGeometry();
+        }
+        catch (Exception e)
+        {
+          Log.err("Failed to validate geometry of element "+elements.get(i),e);
+        }
+    }
+  }
+
   // -- Periodic and timer actions --
 
-  class PanelTimerTask extends TimerTask
+  /**
+   * The panel timer. The {@linkplain FrameClock frame clock} only keeps the
+   * phase, each tick is run on the panel's {@linkplain #timerQueue timer
+   * queue}. Periodic callbacks, timer listeners and screen updates of one
+   * panel therefore never run concurrently. A tick is skipped while the
+   * previous one is still running.
+   */
+  class PanelTimerTask implements Runnable
   {
 
     @Override
     public void run()
+    {
+      if (!ticking.compareAndSet(false,true))
+        return;
+      timerQueue.execute(()->
+      {
+        try
+        {
+          tick();
+        }
+        finally
+        {
+          ticking.set(false);
+        }
+      });
+    }
+
+    private void tick()
     {
       // Call periodic panel methods
       if (runc % 2 == 0)
@@ -1154,12 +1429,6 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
       }
       if (runc % 5 == 0)
       {
-        if (eLoadStat!=null)
-          try
-          {
-            getScreen().getLoadStatistics();
-          }
-          catch (Exception e) {}
         try { fps10(); } catch (Exception e) { err(e); }
         firePanelTimer((listener)->listener.fps10());
       }
@@ -1232,6 +1501,11 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
    * Called 25 times per second as long as the panel {@linkplain #isRunning() is
    * running}. Derived classes may override this method to perform periodic
    * actions. The base class implementation does nothing.
+   * 
+   * <p>All periodic methods and {@linkplain IPanelTimerListener timer
+   * listeners} of a panel are invoked one after the other on a dispatch
+   * thread, never concurrently with each other or with a screen update. If
+   * they take longer than a tick, ticks are skipped.</p>
    */
   protected void fps25()
   {
@@ -1339,8 +1613,8 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
   {
     if (runt == null)
     {
-      (runt = new Timer(getClass().getSimpleName()+".runt (panel timer)", true))
-          .scheduleAtFixedRate(new PanelTimerTask(), 20, 20);
+      runt = FrameClock.schedule(new PanelTimerTask(), 20,
+          getClass().getSimpleName() + ".runt (panel timer)");
     }
     if (getSpeechEngine() != null)
       getSpeechEngine().addSpeechEventListener(this);
@@ -1355,7 +1629,6 @@ public class Panel implements IPanel, EEventListener, ISpeechEventListener
     if (runt == null)
       return;
     runt.cancel();
-    runt.purge();
     runt = null;
   }
 
@@ -1,10 +1,12 @@
 package de.tucottbus.kt.lcars;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.rmi.RemoteException;
 
 import de.tucottbus.kt.lcars.elements.EElement;
 import de.tucottbus.kt.lcars.elements.ElementData;
+import de.tucottbus.kt.lcars.net.WireCodec;
 
 /**
  * The serializable data of an {@linkplain Panel LCARS panel}. An instance of this class is passed
@@ -30,21 +32,96 @@ public class PanelData implements Serializable
   public final PanelState panelState;
   
   /**
-   * The rendering data of the {@linkplain EElement LCARS GUI elements} on the panel.
+   * The rendering data of the {@linkplain EElement LCARS GUI elements} on the panel. If this is a
+   * {@linkplain #sparse sparse} update, only the elements changed or added since the previous
+   * update are contained.
    */
   public final ElementData[] elementData;
+
+  /**
+   * <code>true</code> if this is a sparse update which only contains the changed elements. A
+   * sparse update can only be applied to the previous update of the same panel.
+   */
+  public final boolean sparse;
+
+  /**
+   * The serial numbers of the elements removed since the previous update (sparse updates only,
+   * <code>null</code> otherwise).
+   */
+  public final long[] removed;
+
+  /**
+   * The serial numbers of the elements added on top of all other elements since the previous
+   * update in z-order (sparse updates only, <code>null</code> otherwise). Elements moved to the
+   * top are contained in {@link #removed} as well.
+   */
+  public final long[] appended;
   
+  /**
+   * Creates the data of a full update.
+   * 
+   * @param panel
+   *          The panel.
+   * @param state
+   *          The panel state.
+   * @param elementData
+   *          The rendering data of all elements in z-order.
+   * @throws RemoteException
+   */
   public PanelData(IPanel panel, PanelState state, ElementData[] elementData)
       throws RemoteException
   {
-    this.panelId = panel.serialNo();
+    this(panel.serialNo(), state, elementData, false, null, null);
+  }
+  
+  /**
+   * Creates the data of a sparse update.
+   * 
+   * @param panel
+   *          The panel.
+   * @param state
+   *          The panel state.
+   * @param elementData
+   *          The rendering data of the changed and added elements.
+   * @param removed
+   *          The serial numbers of the removed elements.
+   * @param appended
+   *          The serial numbers of the elements added on top in z-order.
+   * @throws RemoteException
+   */
+  public PanelData(IPanel panel, PanelState state, ElementData[] elementData,
+      long[] removed, long[] appended) throws RemoteException
+  {
+    this(panel.serialNo(), state, elementData, true, removed, appended);
+  }
+
+  /**
+   * Creates a panel data instance from its fields, used by decoders of the
+   * {@linkplain WireCodec compact wire format}.
+   */
+  public PanelData(long panelId, PanelState state, ElementData[] elementData,
+      boolean sparse, long[] removed, long[] appended)
+  {
+    this.panelId = panelId;
     this.panelState = state;
     this.elementData = elementData;
+    this.sparse = sparse;
+    this.removed = removed;
+    this.appended = appended;
+  }
+  
+  /**
+   * Replaces this instance by a {@linkplain WireCodec compact encoding} when serialized, if enabled.
+   */
+  private Object writeReplace() throws ObjectStreamException
+  {
+    return WireCodec.isEnabled() ? new WireCodec.Packet(this) : this;
   }
   
   @Override
   public String toString() {
     return PanelData.class.getSimpleName()
+        + (sparse ? " (sparse)" : "")
         + " panelState="+panelState
         + " elementData="+elementData;
   }
@@ -17,7 +17,6 @@ import java.rmi.RemoteException;
 import java.util.HashMap;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.awt.SWT_AWT;
@@ -39,6 +38,8 @@ import org.eclipse.swt.widgets.Touch;
 import de.tucottbus.kt.Root;
 import de.tucottbus.kt.lcars.feedback.UserFeedback;
 import de.tucottbus.kt.lcars.feedback.UserFeedbackPlayer;
+import de.tucottbus.kt.lcars.geometry.rendering.FrameScheduler;
+import de.tucottbus.kt.lcars.geometry.rendering.GlyphAtlas;
 import de.tucottbus.kt.lcars.geometry.rendering.LcarsComposite;
 import de.tucottbus.kt.lcars.logging.Log;
 import de.tucottbus.kt.lcars.net.LcarsServer;
@@ -86,9 +87,15 @@ public class Screen implements IScreen, MouseListener, MouseMoveListener,
   private int panelId = -1;
 
   /**
-   * The cache for the 2D rendering transform.
+   * Schedules the redraws of the screen.
    */
-  protected AtomicBoolean invalid = new AtomicBoolean(false);
+  protected final FrameScheduler frameScheduler;
+
+  /**
+   * Delivers touch events to the panel.
+   */
+  protected final TouchEventQueue touchEventQueue
+    = new TouchEventQueue(this::deliverTouchEvents);
 
   /**
    * The screen timer. Blocks the screen saver and keeps the
@@ -183,6 +190,18 @@ public class Screen implements IScreen, MouseListener, MouseMoveListener,
 
     if (LCARS.getArg("--nomouse") != null)
       composite.setCursor(LCARS.createBlankCursor(display));
+    if (LCARS.getArg("--rastercache") != null)
+      composite.setRasterCacheHint(true);
+    if (LCARS.getArg("--glyphatlas") != null)
+      GlyphAtlas.setEnabled(true);
+    frameScheduler = new FrameScheduler(display,() ->
+    {
+      if (!composite.isDisposed())
+      {
+        composite.redraw();
+        composite.update();
+      }
+    },FrameScheduler.DEFAULT_INTERVAL);
     
     // Initialize SWT shell
     if (fullScreen)
@@ -221,7 +240,7 @@ public class Screen implements IScreen, MouseListener, MouseMoveListener,
 
     // Start screen timer
     screenTimer = new Timer("ScreenTimerTask", true);
-    screenTimer.scheduleAtFixedRate(new ScreenTimerTask(), 40, 40);
+    screenTimer.scheduleAtFixedRate(new ScreenTimerTask(), 1000, 1000);
   }
 
   // -- Getters and setters --
@@ -340,20 +359,37 @@ public class Screen implements IScreen, MouseListener, MouseMoveListener,
 
   // -- Operations --
 
+  /**
+   * Returns the frame scheduler of this screen.
+   */
+  public FrameScheduler getFrameScheduler()
+  {
+    return frameScheduler;
+  }
+
+  /**
+   * Returns the queue delivering touch events of this screen to the panel.
+   */
+  public TouchEventQueue getTouchEventQueue()
+  {
+    return touchEventQueue;
+  }
+
   /**
    * Determines if the screen needs to be redrawn.
    */
   protected boolean isScreenInvalid()
   {
-    return invalid.get();
+    return frameScheduler.isPending();
   }
 
   /**
-   * Marks the screen as needing to be redrawn.
+   * Marks the screen as needing to be redrawn. The redraw is scheduled on the
+   * display thread, the method does not block.
    */
-  public synchronized void invalidateScreen()
+  public void invalidateScreen()
   {
-    invalid.set(true);
+    frameScheduler.requestFrame();
   }
 
   /**
@@ -542,10 +578,9 @@ public class Screen implements IScreen, MouseListener, MouseMoveListener,
       return;
 
     // TODO: remove incremental
-    synchronized (composite)
-    {
-      composite.applyUpdate(data, incremental);
-    }
+    // Applies the update on this thread and posts the frame to the renderer,
+    // never waits for the display thread
+    composite.applyUpdate(data, incremental);
     invalidateScreen();
   }
 
@@ -578,6 +613,8 @@ public class Screen implements IScreen, MouseListener, MouseMoveListener,
     {
       Log.err("Failed to stop panel.",e);
     }
+    frameScheduler.dispose();
+    touchEventQueue.dispose();
     try
     {
       screenTimer.cancel();
@@ -601,6 +638,14 @@ public class Screen implements IScreen, MouseListener, MouseMoveListener,
 
   // -- Implementation of the MouseInputListener interface --
   
+  /**
+   * Posts touch events to the {@linkplain #getTouchEventQueue() touch event
+   * queue}. The events are delivered to the panel asynchronously, pending
+   * drag events are coalesced.
+   * 
+   * @param touchEvent
+   *          The touch events.
+   */
   protected void processTouchEvents(TouchEvent[] touchEvent)
   {
     if (touchEvent == null)
@@ -608,6 +653,15 @@ public class Screen implements IScreen, MouseListener, MouseMoveListener,
       Log.warn("Touch event ignored");
       return;
     }
+    touchEventQueue.post(touchEvent);
+  }
+
+  /**
+   * Delivers touch events to the panel. Invoked by the touch event queue.
+   */
+  private void deliverTouchEvents(TouchEvent[] touchEvent)
+  {
+    IPanel panel = this.panel;
     try
     {
       if (panel != null)
@@ -757,38 +811,22 @@ public class Screen implements IScreen, MouseListener, MouseMoveListener,
   // -- Nested classes --
 
   /**
-   * The screen timer task. Blocks the screen saver, does the regular repainting
-   * and keeps the 2D rendering load statistics.
+   * The screen timer task. Runs every second, blocks the screen saver and keeps
+   * the 2D rendering load statistics. Repainting is done by the
+   * {@link FrameScheduler}.
    */
   protected final class ScreenTimerTask extends TimerTask
   {
-    private long ctr = 25;
+    private long ctr = 1;
 
     @Override
     public void run()
     {
-      // Every 40 milliseconds...
-      {
-        if (invalid.getAndSet(false) && !shell.isDisposed())
-          shell.getDisplay().syncExec(() -> 
-          {
-            composite.redraw();
-          });
-      }
-
       // Every second...
-      if (ctr % 25 == 0)
-      {
-        if (!isScreenInvalid() && loadStat.getEventCount()==0 && !shell.isDisposed())
-          shell.getDisplay().syncExec(() -> 
-          {
-            composite.redraw();
-          });
-        loadStat.period();
-      }
+      loadStat.period();
 
       // Every 60 seconds...
-      if (ctr % 1500 == 0)
+      if (ctr % 60 == 0)
         try
         {
           Robot r = new Robot();
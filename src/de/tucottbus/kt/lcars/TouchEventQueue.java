@@ -0,0 +1,186 @@
+package de.tucottbus.kt.lcars;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+import de.tucottbus.kt.lcars.logging.Log;
+
+/**
+ * Asynchronous, coalescing delivery of {@linkplain TouchEvent touch events}
+ * from a {@linkplain Screen screen} to its {@linkplain IPanel panel}. Posted
+ * event arrays are delivered in order on a worker thread, so the display
+ * thread never waits for a (possibly remote) panel.
+ *
+ * <p>While a delivery is in progress, consecutive arrays consisting of
+ * {@linkplain TouchEvent#DRAG drag} events only are merged: a pending drag
+ * array is replaced by a newer one of the same touch points. {@linkplain
+ * TouchEvent#DOWN Down} and {@linkplain TouchEvent#UP up} events are never
+ * merged and drags are never merged across them, so every touch chain is
+ * delivered with its start, its end and the latest position in between.
+ * Arrays are not concatenated, because the panel matches the touch events of
+ * one array to the touched elements by position.</p>
+ */
+public final class TouchEventQueue
+{
+  private final Consumer<TouchEvent[]> sink;
+  private final ArrayDeque<TouchEvent[]> queue = new ArrayDeque<TouchEvent[]>();
+  private Thread worker;
+  private boolean disposed;
+  private long posted;
+  private long delivered;
+  private long coalesced;
+
+  /**
+   * Creates a new touch event queue.
+   *
+   * @param sink
+   *          Delivers an array of touch events to the panel. Invoked on the
+   *          worker thread.
+   */
+  TouchEventQueue(Consumer<TouchEvent[]> sink)
+  {
+    this.sink = sink;
+  }
+
+  /**
+   * Posts an array of touch events for delivery.
+   *
+   * @param events
+   *          The events, must not be modified afterwards.
+   */
+  public void post(TouchEvent[] events)
+  {
+    if (events.length == 0)
+      return;
+    synchronized (queue)
+    {
+      if (disposed)
+        return;
+      posted += events.length;
+      TouchEvent[] tail = queue.peekLast();
+      if (tail != null && isMergeable(tail, events))
+      {
+        queue.pollLast();
+        coalesced += tail.length;
+      }
+      queue.add(events);
+      queue.notify();
+      if (worker == null)
+      {
+        worker = new Thread(this::run, "TouchEventQueue");
+        worker.setDaemon(true);
+        worker.start();
+      }
+    }
+  }
+
+  /**
+   * Stops the worker thread and discards all pending events.
+   */
+  public void dispose()
+  {
+    synchronized (queue)
+    {
+      disposed = true;
+      queue.clear();
+      queue.notify();
+    }
+  }
+
+  // -- Statistics --
+
+  /**
+   * Returns the number of touch events posted.
+   */
+  public long getPostedCount()
+  {
+    synchronized (queue)
+    {
+      return posted;
+    }
+  }
+
+  /**
+   * Returns the number of touch events delivered to the panel.
+   */
+  public long getDeliveredCount()
+  {
+    synchronized (queue)
+    {
+      return delivered;
+    }
+  }
+
+  /**
+   * Returns the number of drag events dropped because a newer drag event of
+   * the same touch point superseded them.
+   */
+  public long getCoalescedCount()
+  {
+    synchronized (queue)
+    {
+      return coalesced;
+    }
+  }
+
+  // -- Implementation --
+
+  private void run()
+  {
+    while (true)
+    {
+      TouchEvent[] events;
+      synchronized (queue)
+      {
+        while (queue.isEmpty() && !disposed)
+          try
+          {
+            queue.wait();
+          }
+          catch (InterruptedException e)
+          {
+            return;
+          }
+        if (disposed)
+          return;
+        events = queue.poll();
+      }
+      try
+      {
+        sink.accept(events);
+      }
+      catch (RuntimeException e)
+      {
+        Log.err("Cannot deliver touch events.", e);
+      }
+      synchronized (queue)
+      {
+        delivered += events.length;
+      }
+    }
+  }
+
+  /**
+   * Determines if a pending event array can be replaced by a newer one. This
+   * is the case if both arrays contain only drag events of the same touch
+   * points, i.e. the events at each index agree in their mouse and primary
+   * flags.
+   */
+  private static boolean isMergeable(TouchEvent[] pending, TouchEvent[] events)
+  {
+    if (pending.length != events.length)
+      return false;
+    for (int i = 0; i < events.length; i++)
+    {
+      if (pending[i].type != TouchEvent.DRAG || events[i].type != TouchEvent.DRAG)
+        return false;
+      if (pending[i].isMouseEvent != events[i].isMouseEvent)
+        return false;
+      if (pending[i].primary != events[i].primary)
+        return false;
+    }
+    return true;
+  }
+}
+
+// EOF
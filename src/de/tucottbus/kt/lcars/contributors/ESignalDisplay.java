@@ -2,8 +2,6 @@ package de.tucottbus.kt.lcars.contributors;
 
 import java.awt.Rectangle;
 import java.util.ArrayList;
-import java.util.Timer;
-import java.util.TimerTask;
 
 import de.tucottbus.kt.lcars.LCARS;
 import de.tucottbus.kt.lcars.Panel;
@@ -13,6 +11,7 @@ import de.tucottbus.kt.lcars.elements.ELabel;
 import de.tucottbus.kt.lcars.elements.ERect;
 import de.tucottbus.kt.lcars.swt.AwtSwt;
 import de.tucottbus.kt.lcars.swt.ColorMeta;
+import de.tucottbus.kt.lcars.util.FrameClock;
 import de.tucottbus.kt.lcars.util.Range;
 
 public class ESignalDisplay extends ElementContributor
@@ -35,7 +34,7 @@ public class ESignalDisplay extends ElementContributor
   private long            period;
   private int             mode;
   private int             height;
-  private Timer           animation;
+  private FrameClock.Registration animation;
   private boolean         locked;
   private ERect           cursor;
   private ELabel          cursorLab;
@@ -244,10 +243,13 @@ public class ESignalDisplay extends ElementContributor
     if (getPanel()==null) return;
     if ((mode&MODE_NOSAMPLES)!=0) return;
 
-    this.animation = new Timer("ESignalDisplay.timer");
     long period = (this.period>0)?this.period:(int)Math.max(sampleTime,1);
-    animation.schedule(new AnimationTask(),period,period);
-    
+    synchronized (this)
+    {
+      if (animation!=null) animation.cancel();
+      AnimationTask task = new AnimationTask();
+      animation = task.registration = FrameClock.schedule(task,period,"ESignalDisplay.timer");
+    }
   }
   
   /**
@@ -310,8 +312,18 @@ public class ESignalDisplay extends ElementContributor
     return getElement(sample);
   }
   
-  class AnimationTask extends TimerTask
+  class AnimationTask implements Runnable
   {
+    private FrameClock.Registration registration;
+
+    void cancel()
+    {
+      synchronized (ESignalDisplay.this)
+      {
+        registration.cancel();
+      }
+    }
+
     public void run()
     {
       if (getPanel()==null                  ) { cancel(); return; }
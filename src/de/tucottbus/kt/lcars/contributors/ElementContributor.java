@@ -654,7 +654,12 @@ public abstract class ElementContributor implements EEventListener
 
   // -- Deprecated API --
 
-  private Timer timer;
+  /**
+   * The timer of the deprecated timer task API, shared by all element
+   * contributors. Periodic actions should use the panel's frame clock ticks
+   * ({@link #fps25()} etc.) instead.
+   */
+  private static Timer timer;
   private final HashMap<String, TimerTask> timerTasks;
 
   /**
@@ -666,12 +671,10 @@ public abstract class ElementContributor implements EEventListener
   {
     synchronized (timerTasks)
     {
-      if (timer==null)
+      synchronized (ElementContributor.class)
       {
-        String s = getClass().getSimpleName();
-        if (panel!=null)
-          s += "@"+panel.getClass().getSimpleName();
-        timer = new Timer(s+".timer",true);
+        if (timer==null)
+          timer = new Timer("ElementContributor.timer",true);
       }
       cancelTimerTask(name);
       if (period>0)
@@ -706,8 +709,11 @@ public abstract class ElementContributor implements EEventListener
         if (tt.equals(task))
           i.remove();
       }
-      if (timer != null)
-        timer.purge();
+      synchronized (ElementContributor.class)
+      {
+        if (timer != null)
+          timer.purge();
+      }
     }
   }
 
@@ -722,12 +728,11 @@ public abstract class ElementContributor implements EEventListener
         tt.cancel();
         i.remove();
       }
-      if (timer!=null)
+      synchronized (ElementContributor.class)
       {
-        timer.cancel();
-        timer.purge();
+        if (timer!=null)
+          timer.purge();
       }
-      timer = null;
     }
   }
 }
@@ -10,6 +10,7 @@ import java.util.ArrayList;
 
 import de.tucottbus.kt.lcars.LCARS;
 import de.tucottbus.kt.lcars.Panel;
+import de.tucottbus.kt.lcars.geometry.AreaCache;
 import de.tucottbus.kt.lcars.geometry.GArea;
 import de.tucottbus.kt.lcars.geometry.AGeometry;
 
@@ -181,18 +182,22 @@ public class EElbo extends EElement
     int armV = getArmVWidth();
     int arcO = getArcOWidth();
     int arcI = getArcIWidth();
-    Area area = new Area(new RoundRectangle2D.Float(x,y-h,2*w,2*h,arcO,arcO));
-    area.subtract(new Area(new RoundRectangle2D.Float(x+armH,y-(h-armV),2*(w-armH),2*(h-armV),arcI,arcI)));
-    AffineTransform tx = new AffineTransform();
-    switch (ess)
+    Area area = AreaCache.get(AreaCache.key(EElbo.class,w,h,armH,armV,arcO,arcI,ess),x,y,()->
     {
-    case LCARS.ES_SHAPE_NE: tx.translate(-w,h); break;
-    case LCARS.ES_SHAPE_NW: tx.translate( 0,h); break;
-    case LCARS.ES_SHAPE_SE: tx.translate(-w,0); break;
-    case LCARS.ES_SHAPE_SW: tx.translate( 0,0); break;
-    }
-    area.transform(tx);
-    area.intersect(new Area(new Rectangle2D.Float(x,y,w,h)));
+      Area are = new Area(new RoundRectangle2D.Float(0,-h,2*w,2*h,arcO,arcO));
+      are.subtract(new Area(new RoundRectangle2D.Float(armH,-(h-armV),2*(w-armH),2*(h-armV),arcI,arcI)));
+      AffineTransform tx = new AffineTransform();
+      switch (ess)
+      {
+      case LCARS.ES_SHAPE_NE: tx.translate(-w,h); break;
+      case LCARS.ES_SHAPE_NW: tx.translate( 0,h); break;
+      case LCARS.ES_SHAPE_SE: tx.translate(-w,0); break;
+      case LCARS.ES_SHAPE_SW: tx.translate( 0,0); break;
+      }
+      are.transform(tx);
+      are.intersect(new Area(new Rectangle2D.Float(0,0,w,h)));
+      return are;
+    });
     geos.add(new GArea(area,false));
 
     // Create label geometries
@@ -7,6 +7,8 @@ import java.awt.geom.Area;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Vector;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
@@ -22,6 +24,8 @@ import de.tucottbus.kt.lcars.geometry.AGeometry;
 import de.tucottbus.kt.lcars.geometry.GArea;
 import de.tucottbus.kt.lcars.swt.AwtSwt;
 import de.tucottbus.kt.lcars.swt.ColorMeta;
+import de.tucottbus.kt.lcars.util.DispatchExecutor;
+import de.tucottbus.kt.lcars.util.FrameClock;
 import de.tucottbus.kt.lcars.util.Objectt;
 
 /**
@@ -51,7 +55,8 @@ public abstract class EElement
   protected transient String                    label      = null;
   private   transient int                       holdf      = 50;
   private   transient EEvent                    holde      = null;
-  private   transient HoldThread                holdt      = null;
+  private   transient Future<?>                 holdt      = null;
+  private   transient Executor                  dispatcher = DispatchExecutor.newSerialQueue();
   protected transient Vector<EEventListener>    tlist      = new Vector<EEventListener>(); 
   protected transient Vector<EGeometryModifier> modifiers  = new Vector<EGeometryModifier>(); 
   private   transient Object                    userData   = null;
@@ -107,6 +112,29 @@ public abstract class EElement
     data.getArea(result);
     return result;
   }
+
+  /**
+   * Returns the bounding rectangle of the {@linkplain #getArea() area} covered
+   * by all background geometries.
+   */
+  public Rectangle getAreaBounds()
+  {
+    validateGeometry();
+    return data.getAreaBounds();
+  }
+
+  /**
+   * Determines if the {@linkplain #getArea() area} covered by all background
+   * geometries contains a point.
+   * 
+   * @param pt
+   *          The point in panel coordinates.
+   */
+  public boolean contains(Point pt)
+  {
+    validateGeometry();
+    return data.contains(pt);
+  }
   
   /**
    * Returns the rectangular bounds of this LCARS GUI element.
@@ -119,7 +147,9 @@ public abstract class EElement
   }
 
   /**
-   * Sets the bounding rectangle of this LCARS GUI element.
+   * Sets the bounding rectangle of this LCARS GUI element. If the element is only moved, its
+   * geometries are translated instead of recomputed if {@link #isTranslatable()} returns
+   * <code>true</code>.
    * 
    * @param bounds
    *          The new bounding rectangle in LCARS panel coordinates.
@@ -130,11 +160,38 @@ public abstract class EElement
     synchronized (data)
     {
       //if(Objectt.equals(bounds, data.state.getBounds())) return;
+      Rectangle prev = data.state.getBounds();
       data.state.setBounds(bounds);
+      if 
+      (
+        prev!=null && prev.width==bounds.width && prev.height==bounds.height 
+        && !isGeometryInvalid() && isTranslatable()
+        && data.translate(bounds.x-prev.x,bounds.y-prev.y)
+      )
+      {
+        Panel panel = getPanel();
+        if (panel!=null) panel.invalidate(this,true);
+        return;
+      }
       invalidate(true);
     }    
   }
   
+  /**
+   * Determines if the geometries of this element can be translated when the element is moved
+   * without being resized. The default implementation returns <code>true</code> if there are no
+   * {@linkplain #addGeometryModifier(EGeometryModifier) geometry modifiers}, because the modifiers
+   * may depend on the absolute position. Derived classes whose geometries depend on the absolute
+   * position must override this method and return <code>false</code>; overrides must not return
+   * <code>true</code> for elements with geometry modifiers.
+   * 
+   * @see #setBounds(Rectangle)
+   */
+  protected boolean isTranslatable()
+  {
+    return modifiers.isEmpty();
+  }
+  
   // -- Color getters and setters --
   
   /**
@@ -443,7 +500,8 @@ public abstract class EElement
    */
   public void setSilent(boolean silent)
   {
-    data.state.setStyle(LCARS.ES_SILENT,silent);
+    if (data.state.setStyle(LCARS.ES_SILENT,silent))
+      invalidate(false);
   }
   
   /**
@@ -477,7 +535,8 @@ public abstract class EElement
    */
   public void setStatic(boolean stat)
   {
-    data.state.setStyle(LCARS.ES_STATIC,stat);
+    if (data.state.setStyle(LCARS.ES_STATIC,stat))
+      invalidate(false);
   }  
 
   // -- State getters and setters --  
@@ -509,7 +568,8 @@ public abstract class EElement
    */
   public void clearTouch()
   {
-    data.state.setTouch(0x00000000);
+    if (data.state.setTouch(0x00000000))
+      invalidate(false);
     runHoldThread(null);
   }
   
@@ -544,9 +604,12 @@ public abstract class EElement
    */
   public synchronized ElementData getUpdateData(boolean incremental)
   {
-    boolean updateGeometry = (validateGeometry() & GEO_UPDATED) != 0;
-    geoState &= ~GEO_UPDATED;
-    return data.getUpdate(incremental,updateGeometry);
+    synchronized (data)
+    {
+      boolean updateGeometry = (validateGeometry() & GEO_UPDATED) != 0;
+      geoState &= ~GEO_UPDATED;
+      return data.getUpdate(incremental,updateGeometry);
+    }
   }
   
   /**
@@ -687,7 +750,7 @@ public abstract class EElement
     // Dispatch event
     try
     {
-      LCARS.invokeLater(new Runnable()
+      dispatcher.execute(new Runnable()
       {
         @Override
         public void run()
@@ -732,34 +795,28 @@ public abstract class EElement
     if ((holde==null) || (holdf<=0)) return;
     holde.id = EEvent.TOUCH_HOLD;
     holde.ct = 0;
-    if (holdt!=null && holdt.isAlive()) return;
-    holdt = new HoldThread();
-    holdt.start();
+    synchronized (this)
+    {
+      if (holdt!=null && !holdt.isDone()) return;
+      holdt = FrameClock.scheduleOnce(this::fireHoldEvent,holdf);
+    }
   }
 
   /**
-   * A thread firing touch events when the element is "held down" (i. e. touched for a longer time).
+   * Fires a touch hold event and schedules the next one as long as the
+   * element is "held down" (i. e. touched for a longer time). Runs on the
+   * {@link FrameClock}, the event listeners are invoked by the dispatcher.
    */
-  class HoldThread extends Thread
+  private void fireHoldEvent()
   {
-    public HoldThread()
-    {
-      super(HoldThread.class.getSimpleName() + " of EElement#" + data.serialNo);
-      setDaemon(true);
-    }
-
-    @Override
-    public void run()
+    EEvent holde = this.holde;
+    if (holde==null) return;
+    holde.ct++;
+    fireEEvent(holde);
+    synchronized (this)
     {
-      while (holde!=null)
-      {
-        try { Thread.sleep(holdf); } catch (InterruptedException e) {}
-        if (holde!=null)
-        {
-          holde.ct++;
-          fireEEvent(holde);
-        }
-      }
+      if (this.holde!=null)
+        holdt = FrameClock.scheduleOnce(this::fireHoldEvent,holdf);
     }
   }
   
@@ -833,7 +890,18 @@ public abstract class EElement
     if (geometryChanged)
       geoState |= GEO_RECOMPUTE;
     Panel panel = getPanel();
-    if (panel!=null) panel.invalidate();
+    if (panel==null) return;
+    panel.invalidate(this,geometryChanged);
+  }
+
+  /**
+   * Determines if the geometry of this element needs to be recomputed.
+   *
+   * @see #validateGeometry()
+   */
+  public final boolean isGeometryInvalid()
+  {
+    return (geoState & GEO_RECOMPUTE) != 0;
   }
 
   /**
@@ -894,6 +962,7 @@ public abstract class EElement
     if (panel == null) return;
     data.state.setChanged();
     geoState |= GEO_RECOMPUTE;
+    panel.invalidate(this,true);
   }
   
   public boolean checkValidation() {
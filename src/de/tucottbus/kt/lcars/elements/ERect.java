@@ -8,6 +8,7 @@ import java.util.ArrayList;
 
 import de.tucottbus.kt.lcars.LCARS;
 import de.tucottbus.kt.lcars.Panel;
+import de.tucottbus.kt.lcars.geometry.AreaCache;
 import de.tucottbus.kt.lcars.geometry.GArea;
 import de.tucottbus.kt.lcars.geometry.AGeometry;
 
@@ -58,14 +59,19 @@ public class ERect extends EElement
     int       w      = bounds.width;
     int       h      = bounds.height;
     int       arc    = computeArc();
-    Area      area   = new Area(new RoundRectangle2D.Float(x,y,w,h,arc,arc));
-    if ((style&LCARS.ES_RECT_RND)!=0)
+    int       rnd    = style&LCARS.ES_RECT_RND;
+    Area      area   = AreaCache.get(AreaCache.key(ERect.class,w,h,arc,rnd),x,y,()->
     {
-      if ((style&LCARS.ES_RECT_RND_E)==0)
-        area.add(new Area(new Rectangle2D.Float(x+w-w/2,y,w/2,h)));
-      if ((style&LCARS.ES_RECT_RND_W)==0)
-        area.add(new Area(new Rectangle2D.Float(x,y,w/2,h)));
-    }
+      Area are = new Area(new RoundRectangle2D.Float(0,0,w,h,arc,arc));
+      if (rnd!=0)
+      {
+        if ((rnd&LCARS.ES_RECT_RND_E)==0)
+          are.add(new Area(new Rectangle2D.Float(w-w/2,0,w/2,h)));
+        if ((rnd&LCARS.ES_RECT_RND_W)==0)
+          are.add(new Area(new Rectangle2D.Float(0,0,w/2,h)));
+      }
+      return are;
+    });
     geos.add(new GArea(area,false));
 
     // Create label geometries
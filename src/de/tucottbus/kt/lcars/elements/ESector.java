@@ -12,6 +12,7 @@ import java.util.ArrayList;
 
 import de.tucottbus.kt.lcars.LCARS;
 import de.tucottbus.kt.lcars.Panel;
+import de.tucottbus.kt.lcars.geometry.AreaCache;
 import de.tucottbus.kt.lcars.geometry.GArea;
 import de.tucottbus.kt.lcars.geometry.AGeometry;
 
@@ -129,7 +130,8 @@ public class ESector extends EElement
     // Create sector geometry
     int  cx   = getCenter().x;
     int  cy   = getCenter().y;
-    Area area = limit(sector(cx,cy,r0,r1,a0,a1,b),cx,cy,limitW,limitH,limitArc);    
+    Area area = AreaCache.get(AreaCache.key(ESector.class,r0,r1,a0,a1,b,limitW,limitH,limitArc),cx,cy,
+                              ()->limit(sector(0,0,r0,r1,a0,a1,b),0,0,limitW,limitH,limitArc));
     geos.add(new GArea(area,false));
 
     // Create label geometries
@@ -1,10 +1,15 @@
 package de.tucottbus.kt.lcars.elements;
 
+import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.GC;
@@ -63,11 +68,35 @@ public final class ElementData implements Serializable
    */
   ArrayList<AGeometry> geometries;
 
+  /**
+   * The horizontal offset of a translate-only update. On the panel side, the
+   * offset accumulated since the last update.
+   */
+  private int dx;
+
+  /**
+   * The vertical offset of a translate-only update. On the panel side, the
+   * offset accumulated since the last update.
+   */
+  private int dy;
+
   /**
    * Area of this element.
    */
   private transient Area cachedArea;
   
+  /**
+   * Generator of {@linkplain #version render versions}.
+   */
+  private static final AtomicInteger versionCounter = new AtomicInteger();
+  
+  /**
+   * The render version (screen side only). Two element data instances with
+   * the same serial number and the same render version have the same
+   * graphical representation.
+   */
+  private transient int version;
+  
   // -- Constructors --
 
   /**
@@ -84,6 +113,31 @@ public final class ElementData implements Serializable
     this.geometries = null;
   }
 
+  /**
+   * Creates an element data instance from its fields, used by decoders of the
+   * {@linkplain de.tucottbus.kt.lcars.net.WireCodec compact wire format}.
+   * 
+   * @param serialNo
+   *          The unique serial number of the {@link EElement} described by this
+   *          instance.
+   * @param state
+   *          The state, <code>null</code> if unchanged.
+   * @param geometries
+   *          The geometries, <code>null</code> if unchanged or translated.
+   * @param dx
+   *          The horizontal offset of a translate-only update.
+   * @param dy
+   *          The vertical offset of a translate-only update.
+   */
+  public ElementData(long serialNo, ElementState state,
+      ArrayList<AGeometry> geometries, int dx, int dy)
+  {
+    this(serialNo, state);
+    this.geometries = geometries;
+    this.dx = dx;
+    this.dy = dy;
+  }
+
   /**
    * Creates a new element data instance.
    * 
@@ -119,6 +173,39 @@ public final class ElementData implements Serializable
   {
     if (area == null)
       return;
+    area.add((Area) getCachedArea().clone());
+    return;
+  }
+
+  /**
+   * Returns the bounding rectangle of the {@linkplain #getArea(Area) area}
+   * covered by all background geometries.
+   */
+  public Rectangle getAreaBounds()
+  {
+    return getCachedArea().getBounds();
+  }
+
+  /**
+   * Determines if the {@linkplain #getArea(Area) area} covered by all
+   * background geometries contains a point. Unlike {@link #getArea(Area)}
+   * this method does not copy the area.
+   * 
+   * @param pt
+   *          The point in panel coordinates.
+   */
+  public boolean contains(Point pt)
+  {
+    return getCachedArea().contains(pt);
+  }
+
+  /**
+   * Returns the cached area covered by all background geometries, computes
+   * it if necessary. The returned area must not be modified.
+   */
+  private Area getCachedArea()
+  {
+    Area cachedArea = this.cachedArea;
     if (cachedArea == null)
     {
       Area ar = new Area();
@@ -135,10 +222,10 @@ public final class ElementData implements Serializable
           cachedArea = new Area(state.getBounds());
           Log.warn("Missing geometries in ElementData #" + serialNo);
         }
+        this.cachedArea = cachedArea;
       }
     }
-    area.add((Area) cachedArea.clone());
-    return;
+    return cachedArea;
   }
 
   // -- Operations --
@@ -151,11 +238,19 @@ public final class ElementData implements Serializable
    *          Get copy for incremental or full update.
    * @param updateGeometry
    *          Include {@link #geometries} in the update (always included
-   *          if <code>incremental</code> is <code>false</code>).
+   *          if <code>incremental</code> is <code>false</code>). Otherwise a
+   *          pending {@linkplain #translate(int, int) translation} is included.
    */
   public ElementData getUpdate(boolean incremental, boolean updateGeometry)
   {
     ElementData other = new ElementData(serialNo, this.state.getUpdate(incremental));
+    if (incremental && !updateGeometry)
+    {
+      other.dx = dx;
+      other.dy = dy;
+    }
+    dx = 0;
+    dy = 0;
     if (updateGeometry || !incremental)
       try
       {
@@ -173,6 +268,72 @@ public final class ElementData implements Serializable
     return other;
   }
 
+  /**
+   * Moves the geometries by an offset without recomputing them (panel side).
+   * The offset is accumulated and sent as a translate-only update, unless the
+   * geometries are included in the next update anyway.
+   * 
+   * @param dx
+   *          The horizontal offset in panel pixels.
+   * @param dy
+   *          The vertical offset in panel pixels.
+   * @return <code>false</code> if one of the geometries cannot be translated,
+   *         the geometries must be recomputed then.
+   */
+  boolean translate(int dx, int dy)
+  {
+    if (dx == 0 && dy == 0)
+      return true;
+    ArrayList<AGeometry> geos = translate(geometries, dx, dy);
+    if (geos == null)
+      return false;
+    Area cachedArea = this.cachedArea;
+    this.cachedArea = cachedArea != null ? cachedArea.createTransformedArea(
+        AffineTransform.getTranslateInstance(dx, dy)) : null;
+    this.geometries = geos;
+    this.dx += dx;
+    this.dy += dy;
+    return true;
+  }
+
+  /**
+   * Returns moved copies of geometries.
+   * 
+   * @return The copies or <code>null</code> if one of the geometries cannot be
+   *         translated.
+   */
+  private static ArrayList<AGeometry> translate(List<AGeometry> geometries,
+      int dx, int dy)
+  {
+    if (geometries == null)
+      return null;
+    ArrayList<AGeometry> result = new ArrayList<AGeometry>(geometries.size());
+    for (AGeometry geom : geometries)
+    {
+      AGeometry moved = geom.translate(dx, dy);
+      if (moved == null)
+        return null;
+      result.add(moved);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the horizontal offset of a translate-only update.
+   */
+  public int getDx()
+  {
+    return dx;
+  }
+
+  /**
+   * Returns the vertical offset of a translate-only update.
+   */
+  public int getDy()
+  {
+    return dy;
+  }
+
   /**
    * Updates this instance with information taken from another one.
    * 
@@ -205,8 +366,9 @@ public final class ElementData implements Serializable
     {
       if (geometries == null)
         throw new IllegalArgumentException("geometry required");
-      if (state == null)
+      if (state == null || state.isDelta())
         throw new IllegalArgumentException("state required");
+      version = versionCounter.incrementAndGet();
       return GEOMETRY_FLAG | ElementState.FLAG_MASK;
     }
 
@@ -220,24 +382,86 @@ public final class ElementData implements Serializable
         state = other.state;
       else
         Log.err("Missing state in ElementData#"+serialNo+", cannot apply state from previous ElementData because its null too.");
+    }
+    else if (state.isDelta())
+    {
+      // Patch the changed fields into a copy of the previous state
+      if (other.state != null && !other.state.isDelta())
+        state = other.state.applyDelta(state);
+      else
+        Log.err("Missing state in ElementData#"+serialNo+", cannot apply state delta.");
+      ret |= state.getChanged();
     } else
       ret |= state.setChanged(other.state.getChanged());
 
     if (geometries == null)
     {
-      if (other.geometries != null)
+      ArrayList<AGeometry> moved = null;
+      if ((dx != 0 || dy != 0) && other.geometries != null)
+      {
+        // Translate-only update: move the previous geometries
+        moved = translate(other.geometries, dx, dy);
+        if (moved == null)
+          Log.err("Cannot translate geometries of ElementData #" + serialNo);
+      }
+      if (moved != null)
+      {
+        this.geometries = moved;
+        this.cachedArea = other.cachedArea != null
+            ? other.cachedArea.createTransformedArea(
+                AffineTransform.getTranslateInstance(dx, dy))
+            : null;
+        ret |= GEOMETRY_FLAG;
+      }
+      else if (other.geometries != null)
       {
         for (AGeometry geom : this.geometries = other.geometries)
           if (geom instanceof HeavyGeometry)
             ((HeavyGeometry<?>) geom).update(true);
         this.cachedArea = other.cachedArea != null ? new Area(other.cachedArea)
-            : null; // TODO: correct, if bounds was updated (i.e. by translation)
+            : null;
       }
+      dx = 0;
+      dy = 0;
     } else
       ret |= GEOMETRY_FLAG;
+    version = ret != 0 ? versionCounter.incrementAndGet() : other.version;
     return ret;
   }
 
+  /**
+   * Determines the {@linkplain #getVersion() render version} of a complete
+   * (non-incremental) update. The render version of <code>pred</code> is
+   * taken over if this instance carries no state changes and the same
+   * geometry objects.
+   * 
+   * @param pred
+   *          The previous element data of the same element, can be
+   *          <code>null</code>.
+   */
+  public void inheritVersion(ElementData pred)
+  {
+    if 
+    (
+      pred != null && pred.serialNo == serialNo && pred.version != 0
+      && state != null && state.getChanged() == 0
+      && geometries != null && pred.geometries != null
+      && geometries.size() == pred.geometries.size()
+    )
+    {
+      int n = geometries.size();
+      int i = 0;
+      while (i < n && geometries.get(i) == pred.geometries.get(i))
+        i++;
+      if (i == n)
+      {
+        version = pred.version;
+        return;
+      }
+    }
+    version = versionCounter.incrementAndGet();
+  }
+
   /**
    * Renders the graphical representation of the {@link EElement} described by
    * this instance on a 2D graphics context.
@@ -307,6 +531,34 @@ public final class ElementData implements Serializable
     return result;
   }
 
+  /**
+   * Returns the render version (screen side only). Two element data instances
+   * with the same serial number and the same render version have the same
+   * graphical representation (given the same panel state). A value of 0
+   * indicates an unknown render version.
+   */
+  public int getVersion()
+  {
+    return version;
+  }
+
+  /**
+   * Returns the state of the {@link EElement} described by this instance.
+   */
+  public ElementState getState()
+  {
+    return state;
+  }
+
+  /**
+   * Returns an unmodifiable view of the geometries, may be <code>null</code>
+   * for incomplete incremental updates.
+   */
+  public List<AGeometry> getGeometries()
+  {
+    return geometries != null ? Collections.unmodifiableList(geometries) : null;
+  }
+
   public void onVisibilityChanged(boolean visible)
   {
     for (AGeometry g : geometries)
@@ -2,6 +2,10 @@ package de.tucottbus.kt.lcars.elements;
 
 import java.awt.Color;
 import java.awt.Rectangle;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 
 import de.tucottbus.kt.lcars.LCARS;
@@ -53,11 +57,22 @@ public class ElementState implements Serializable
    */
   private static final long serialVersionUID = 1L;
   
+  /**
+   * The fields are serialized by {@link #writeObject(ObjectOutputStream)}.
+   */
+  private static final ObjectStreamField[] serialPersistentFields = {};
+  
   /**
    * Flag indicating that this instance has been changed.
    */
   private int changed;
 
+  /**
+   * <code>true</code> if this is a delta update which only carries the fields
+   * flagged in {@link #changed}, see {@link #getUpdate(boolean)}.
+   */
+  private boolean delta;
+
   /**
    * The bounding rectangle of the element.
    */
@@ -116,6 +131,27 @@ public class ElementState implements Serializable
     this.touch       = 0;
   }
   
+  /**
+   * Creates an element state from its fields, used by decoders of the
+   * {@linkplain de.tucottbus.kt.lcars.net.WireCodec compact wire format}. If
+   * <code>delta</code> is <code>true</code>, only the fields flagged in
+   * <code>changed</code> are meaningful.
+   */
+  public ElementState(int changed, boolean delta, Rectangle bounds,
+      ColorMeta color, float alpha, int style, boolean visible,
+      boolean highlighted, int touch)
+  {
+    this.changed     = changed;
+    this.delta       = delta;
+    this.bounds      = bounds;
+    this.color       = color;
+    this.alpha       = alpha;
+    this.style       = style;
+    this.visible     = visible;
+    this.highlighted = highlighted;
+    this.touch       = touch;
+  }
+  
   /**
    * Copy constructor. Does not copy transient fields.
    * 
@@ -135,22 +171,81 @@ public class ElementState implements Serializable
   }
   
   /**
-   * Copies this {@ElementState} and sets this element state to unchanged, which becomes changed again when any setter is invoked. If parameter incremental is true and there are no changes, it returns null
+   * Delta copy constructor. Copies only the fields flagged in the changed
+   * flags of <code>other</code>.
+   * 
+   * @param other
+   *          The element state to copy.
+   * @param delta
+   *          Must be <code>true</code>.
+   */
+  private ElementState(ElementState other, boolean delta)
+  {
+    int mask = other.changed;
+    this.changed     = mask;
+    this.delta       = delta;
+    this.bounds      = (mask & BOUNDS)!=0 && other.bounds!=null ? new Rectangle(other.bounds) : null;
+    this.color       = (mask & COLOR)!=0 ? other.color : null;
+    this.alpha       = (mask & ALPHA)!=0 ? other.alpha : 0;
+    this.style       = (mask & STYLE)!=0 ? other.style : 0;
+    this.visible     = (mask & VISIBLE)!=0 ? other.visible : false;
+    this.highlighted = (mask & HIGHLIGHT)!=0 ? other.highlighted : false;
+    this.touch       = (mask & TOUCH)!=0 ? other.touch : 0;
+  }
+  
+  /**
+   * Copies this {@ElementState} and sets this element state to unchanged, which becomes changed again when any setter is invoked. If parameter incremental is true and there are no changes, it returns null.
+   * An incremental update is a {@linkplain #isDelta() delta} which only carries the changed fields.
    *
    * @param incremental
    *          Get copy for incremental or full update.
    * @return Copy of this {@ElementState} or null if incremental and unchanged.
    * 
    * @see #isChanged()
+   * @see #applyDelta(ElementState)
    */
   public synchronized ElementState getUpdate(boolean incremental)
   {
     if (incremental && this.changed == 0) return null;
-    ElementState result = new ElementState(this);
+    ElementState result = incremental && this.changed != FLAG_MASK
+        ? new ElementState(this, true) : new ElementState(this);
     this.changed = 0;
     return result;
   }
   
+  /**
+   * Determines if this is a delta update which only carries the fields flagged in
+   * {@link #getChanged()}. A delta must be {@linkplain #applyDelta(ElementState) applied} to the
+   * previous complete state before it can be used.
+   */
+  public boolean isDelta()
+  {
+    return this.delta;
+  }
+  
+  /**
+   * Creates a complete element state by applying a {@linkplain #isDelta() delta} to this state.
+   * This instance is not modified.
+   * 
+   * @param delta
+   *          The delta.
+   * @return The new element state, its changed flags are the ones of <code>delta</code>.
+   */
+  public ElementState applyDelta(ElementState delta)
+  {
+    ElementState result = new ElementState(this);
+    int mask = delta.changed;
+    result.changed = mask;
+    if ((mask & BOUNDS   )!=0) result.bounds      = delta.bounds;
+    if ((mask & COLOR    )!=0) result.color       = delta.color;
+    if ((mask & ALPHA    )!=0) result.alpha       = delta.alpha;
+    if ((mask & STYLE    )!=0) result.style       = delta.style;
+    if ((mask & VISIBLE  )!=0) result.visible     = delta.visible;
+    if ((mask & HIGHLIGHT)!=0) result.highlighted = delta.highlighted;
+    if ((mask & TOUCH    )!=0) result.touch       = delta.touch;
+    return result;
+  }
+  
   
   
   // -- Geometry getters and setters --
@@ -168,17 +263,18 @@ public class ElementState implements Serializable
     bounds = new Rectangle(bounds);
     if (Objectt.equals(this.bounds, bounds))
       return false;
-    //changed |= BOUNDS; //TODO: set changed to true?
+    changed |= BOUNDS; // Required for delta updates
     this.bounds = bounds;
     return true;
   }
 
   /**
-   * Returns the bounding rectangle of this graphical representation in LCARS panel coordinates.
+   * Returns the bounding rectangle of this graphical representation in LCARS panel coordinates,
+   * <code>null</code> if unknown (e.g. for a {@linkplain #isDelta() delta} with unchanged bounds).
    */
   public Rectangle getBounds()
   {
-    return new Rectangle(this.bounds);
+    return this.bounds!=null ? new Rectangle(this.bounds) : null;
   }
   
   // -- Color getters and setters --
@@ -404,6 +500,14 @@ public class ElementState implements Serializable
     return true;
   }
 
+  /**
+   * Returns the touch state.
+   */
+  public int getTouch()
+  {
+    return this.touch;
+  }
+
   /**
    * Sets the touch state.
    *
@@ -451,6 +555,56 @@ public class ElementState implements Serializable
   {
     return changed;
   }
+  
+  // -- Serialization --
+  
+  /**
+   * Writes the changed flags and the fields. A {@linkplain #isDelta() delta} only writes the fields
+   * flagged as changed.
+   */
+  private void writeObject(ObjectOutputStream out) throws IOException
+  {
+    out.defaultWriteObject();
+    out.writeShort(changed);
+    out.writeBoolean(delta);
+    int mask = delta ? changed : FLAG_MASK;
+    if ((mask & BOUNDS)!=0)
+    {
+      out.writeBoolean(bounds!=null);
+      if (bounds!=null)
+      {
+        out.writeInt(bounds.x);
+        out.writeInt(bounds.y);
+        out.writeInt(bounds.width);
+        out.writeInt(bounds.height);
+      }
+    }
+    if ((mask & COLOR    )!=0) out.writeObject(color);
+    if ((mask & ALPHA    )!=0) out.writeFloat(alpha);
+    if ((mask & STYLE    )!=0) out.writeInt(style);
+    if ((mask & VISIBLE  )!=0) out.writeBoolean(visible);
+    if ((mask & HIGHLIGHT)!=0) out.writeBoolean(highlighted);
+    if ((mask & TOUCH    )!=0) out.writeInt(touch);
+  }
+  
+  /**
+   * Reads an instance written by {@link #writeObject(ObjectOutputStream)}.
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+  {
+    in.defaultReadObject();
+    changed = in.readShort() & 0xFFFF;
+    delta   = in.readBoolean();
+    int mask = delta ? changed : FLAG_MASK;
+    if ((mask & BOUNDS)!=0 && in.readBoolean())
+      bounds = new Rectangle(in.readInt(),in.readInt(),in.readInt(),in.readInt());
+    if ((mask & COLOR    )!=0) color       = (ColorMeta)in.readObject();
+    if ((mask & ALPHA    )!=0) alpha       = in.readFloat();
+    if ((mask & STYLE    )!=0) style       = in.readInt();
+    if ((mask & VISIBLE  )!=0) visible     = in.readBoolean();
+    if ((mask & HIGHLIGHT)!=0) highlighted = in.readBoolean();
+    if ((mask & TOUCH    )!=0) touch       = in.readInt();
+  }
 }
 
 // EOF
@@ -5,6 +5,9 @@ import java.awt.geom.GeneralPath;
 import java.awt.geom.PathIterator;
 import java.awt.geom.Point2D;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import de.tucottbus.kt.lcars.contributors.ElementContributor;
 import de.tucottbus.kt.lcars.geometry.GArea;
@@ -18,9 +21,25 @@ import de.tucottbus.kt.lcars.geometry.AGeometry;
  */
 public class EPerspective implements EGeometryModifier
 {
+  /**
+   * Maximal number of cached transformed shapes.
+   */
+  private static final int CACHE_SIZE = 256;
+
   private float x;
   private float y;
-  private float[][] m;
+  private float[] m;
+  private final LinkedHashMap<PathData,Shape> cache
+    = new LinkedHashMap<PathData,Shape>(64,0.75f,true)
+  {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<PathData,Shape> eldest)
+    {
+      return size() > CACHE_SIZE;
+    }
+  };
 
   /**
    * Creates a new perspective projection.
@@ -29,7 +48,7 @@ public class EPerspective implements EGeometryModifier
    *          The projection matrix, see <a
    *          href="http://en.wikipedia.org/wiki/Transformation_matrix#Perspective_projection"
    *          >http://en.wikipedia.org/wiki/Transformation_matrix#Perspective_projection</a> for
-   *          details.
+   *          details. The matrix is copied, later changes of the array have no effect.
    * @param x
    *          The x-coordinate offset in panel coordinates (for use with {@link ElementContributor}
    *          s, 0 otherwise).
@@ -39,7 +58,10 @@ public class EPerspective implements EGeometryModifier
    */
   public EPerspective(float[][] matrix, float x, float y)
   {
-    this.m = matrix;
+    this.m = new float[16];
+    for (int i=0; i<4; i++)
+      for (int j=0; j<4; j++)
+        this.m[4*i+j] = matrix[i][j];
     this.x = x;
     this.y = y;
   }
@@ -53,20 +75,40 @@ public class EPerspective implements EGeometryModifier
    */
   public Point2D.Float transform(Point2D.Float point)
   {
-    float[] o = { point.x-this.x, point.y-this.y, 1, 1 };
-    float[] t = { 0, 0, 0, 0 };
-    
-    for (int i=0; i<4; i++)
-      for (int j=0; j<4; j++)
-        t[i] += m[i][j]*o[j];
+    float[] p = { point.x, point.y };
+    transform(p,0,1);
+    return new Point2D.Float(p[0],p[1]);
+  }
 
-    Point2D.Float newPoint = new Point2D.Float(t[0]/t[3]+this.x,t[1]/t[3]+this.y);
-    //System.out.print("\nw="+t[3]+", x="+newPoint.x+", y="+newPoint.y);
-    return newPoint;
+  /**
+   * Transforms an array of points in place.
+   * 
+   * @param coords
+   *          The point coordinates as x, y pairs.
+   * @param offset
+   *          The index of the x-coordinate of the first point.
+   * @param count
+   *          The number of points.
+   */
+  public void transform(float[] coords, int offset, int count)
+  {
+    // z and w of panel points are 1, so the 3rd and 4th column add up
+    float m02 = m[ 2]+m[ 3];
+    float m12 = m[ 6]+m[ 7];
+    float m32 = m[14]+m[15];
+    for (int i=offset, n=offset+2*count; i<n; i+=2)
+    {
+      float ox = coords[i  ]-this.x;
+      float oy = coords[i+1]-this.y;
+      float w  = m[12]*ox+m[13]*oy+m32;
+      coords[i  ] = (m[0]*ox+m[1]*oy+m02)/w+this.x;
+      coords[i+1] = (m[4]*ox+m[5]*oy+m12)/w+this.y;
+    }
   }
   
   /**
-   * Transforms a shape.
+   * Transforms a shape. Transformed shapes are cached, the result must not be
+   * modified.
    * <p><b>Author:</b> Tom Nelson
    * (<code>edu.uci.ics.jung.visualization.jai</code>)</p>
    * 
@@ -76,39 +118,21 @@ public class EPerspective implements EGeometryModifier
    */
   public Shape transform(Shape shape)
   {
-    GeneralPath newPath = new GeneralPath();
-    float[] coords = new float[6];
-    PathIterator iterator = shape.getPathIterator(null);
-    for (; iterator.isDone()==false; iterator.next())
+    PathData data = new PathData(shape);
+    Shape newPath;
+    synchronized (cache)
     {
-      int type = iterator.currentSegment(coords);
-      switch (type)
-      {
-      case PathIterator.SEG_MOVETO:
-        Point2D p = transform(new Point2D.Float(coords[0],coords[1]));
-        newPath.moveTo((float)p.getX(),(float)p.getY());
-        break;
-      case PathIterator.SEG_LINETO:
-        p = transform(new Point2D.Float(coords[0],coords[1]));
-        newPath.lineTo((float)p.getX(),(float)p.getY());
-        break;
-      case PathIterator.SEG_QUADTO:
-        p = transform(new Point2D.Float(coords[0],coords[1]));
-        Point2D q = transform(new Point2D.Float(coords[2],coords[3]));
-        newPath.quadTo((float)p.getX(),(float)p.getY(),(float)q.getX(),
-            (float)q.getY());
-        break;
-      case PathIterator.SEG_CUBICTO:
-        p = transform(new Point2D.Float(coords[0],coords[1]));
-        q = transform(new Point2D.Float(coords[2],coords[3]));
-        Point2D r = transform(new Point2D.Float(coords[4],coords[5]));
-        newPath.curveTo((float)p.getX(),(float)p.getY(),(float)q.getX(),
-            (float)q.getY(),(float)r.getX(),(float)r.getY());
-        break;
-      case PathIterator.SEG_CLOSE:
-        newPath.closePath();
-        break;
-      }
+      newPath = cache.get(data);
+    }
+    if (newPath!=null)
+      return newPath;
+
+    float[] coords = data.coords.clone();
+    transform(coords,0,coords.length/2);
+    newPath = data.toPath(coords);
+    synchronized (cache)
+    {
+      cache.put(data,newPath);
     }
     return newPath;
   }
@@ -122,10 +146,110 @@ public class EPerspective implements EGeometryModifier
       if (geo instanceof GArea)
       {
         GArea are = (GArea)geo;
-        are.setShape(transform(are.getArea()));
+        are.setShape(transform(are.getShape()));
       }
   }
-  
+
+  // -- Nested classes --
+
+  /**
+   * The segment types and coordinates of a path.
+   */
+  private static final class PathData
+  {
+    private final int     windingRule;
+    private final byte[]  types;
+    private final float[] coords;
+    private final int     hash;
+
+    PathData(Shape shape)
+    {
+      PathIterator iterator = shape.getPathIterator(null);
+      byte[]  types  = new byte[16];
+      float[] coords = new float[64];
+      float[] seg    = new float[6];
+      int     nt     = 0;
+      int     nc     = 0;
+      for (; iterator.isDone()==false; iterator.next())
+      {
+        int type = iterator.currentSegment(seg);
+        int n;
+        switch (type)
+        {
+        case PathIterator.SEG_MOVETO:
+        case PathIterator.SEG_LINETO : n = 2; break;
+        case PathIterator.SEG_QUADTO : n = 4; break;
+        case PathIterator.SEG_CUBICTO: n = 6; break;
+        default                      : n = 0;
+        }
+        if (nt==types.length)
+          types = Arrays.copyOf(types,2*nt);
+        if (nc+n>coords.length)
+          coords = Arrays.copyOf(coords,2*coords.length+n);
+        types[nt++] = (byte)type;
+        System.arraycopy(seg,0,coords,nc,n);
+        nc += n;
+      }
+      this.windingRule = iterator.getWindingRule();
+      this.types       = Arrays.copyOf(types,nt);
+      this.coords      = Arrays.copyOf(coords,nc);
+      this.hash        = (31*windingRule+Arrays.hashCode(this.types))*31
+                         +Arrays.hashCode(this.coords);
+    }
+
+    /**
+     * Creates a path from the segment types of this path and the given
+     * coordinates.
+     */
+    GeneralPath toPath(float[] c)
+    {
+      GeneralPath path = new GeneralPath(windingRule,types.length);
+      int i = 0;
+      for (byte type : types)
+        switch (type)
+        {
+        case PathIterator.SEG_MOVETO:
+          path.moveTo(c[i],c[i+1]);
+          i += 2;
+          break;
+        case PathIterator.SEG_LINETO:
+          path.lineTo(c[i],c[i+1]);
+          i += 2;
+          break;
+        case PathIterator.SEG_QUADTO:
+          path.quadTo(c[i],c[i+1],c[i+2],c[i+3]);
+          i += 4;
+          break;
+        case PathIterator.SEG_CUBICTO:
+          path.curveTo(c[i],c[i+1],c[i+2],c[i+3],c[i+4],c[i+5]);
+          i += 6;
+          break;
+        case PathIterator.SEG_CLOSE:
+          path.closePath();
+          break;
+        }
+      return path;
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      if (this==obj)
+        return true;
+      if (!(obj instanceof PathData))
+        return false;
+      PathData other = (PathData)obj;
+      return hash==other.hash && windingRule==other.windingRule
+          && Arrays.equals(types,other.types) && Arrays.equals(coords,other.coords);
+    }
+  }
+
 }
 
 // EOF
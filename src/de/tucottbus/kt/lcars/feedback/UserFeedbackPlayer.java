@@ -1,10 +1,8 @@
 package de.tucottbus.kt.lcars.feedback;
 
-import java.util.Timer;
-import java.util.TimerTask;
-
 import de.tucottbus.kt.lcars.logging.Log;
 import de.tucottbus.kt.lcars.swt.ColorMeta;
+import de.tucottbus.kt.lcars.util.FrameClock;
 import sun.audio.AudioPlayer;
 import sun.audio.AudioStream;
 
@@ -30,7 +28,7 @@ public abstract class UserFeedbackPlayer
   /**
    * The play-back timer.
    */
-  private Timer timer;
+  private FrameClock.Registration timer;
 
   /**
    * The samples of the currently played eyecon.
@@ -192,14 +190,12 @@ public abstract class UserFeedbackPlayer
         }
         
         // Start play-back thread
-        if (eyeconSamples!=null && timer==null)
+        synchronized (this)
         {
-          long period = (long)(1000./Eyecon.getSampleRate());
-          timer = new Timer(true);
-          timer.scheduleAtFixedRate(new TimerTask()
+          if (eyeconSamples!=null && timer==null)
           {
-            @Override
-            public void run()
+            long period = (long)(1000./Eyecon.getSampleRate());
+            timer = FrameClock.schedule(() ->
             {
               try
               {
@@ -216,7 +212,6 @@ public abstract class UserFeedbackPlayer
                   else
                   {
                     timer.cancel();
-                    timer.purge();
                     timer = null;
                   }
                 }
@@ -225,8 +220,8 @@ public abstract class UserFeedbackPlayer
               {
                 Log.err("Some error in " + UserFeedback.class.getSimpleName() + "occured while playing eyecon samples.", e);
               }
-            }
-          },period,period);
+            },period,"UserFeedbackPlayer (eyecon)");
+          }
         }
       }
       catch (Exception e)
@@ -262,7 +257,6 @@ public abstract class UserFeedbackPlayer
         eyeconSamples = null;
         eyeconSample = 0;
         timer.cancel();
-        timer.purge();
         timer = null;
       } catch (Exception e)
       {
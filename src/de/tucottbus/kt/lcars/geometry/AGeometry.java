@@ -69,6 +69,22 @@ public abstract class AGeometry implements Serializable
    */
   public abstract void paint2D(GC gc);
 
+  /**
+   * Returns a copy of this geometry moved by an offset. Used for translate-only
+   * updates of moving elements, which do not recompute their geometries.
+   * 
+   * @param dx
+   *          The horizontal offset in panel pixels.
+   * @param dy
+   *          The vertical offset in panel pixels.
+   * @return The moved copy or <code>null</code> if this geometry cannot be
+   *         translated and must be recomputed (the default).
+   */
+  public AGeometry translate(int dx, int dy)
+  {
+    return null;
+  }
+
   /**
    * Called when the visibility of the {@link GC} changed.
    * @param visibility
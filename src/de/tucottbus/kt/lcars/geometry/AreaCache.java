@@ -0,0 +1,117 @@
+package de.tucottbus.kt.lcars.geometry;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A bounded cache of element shapes. Shapes are constructed once at the
+ * origin and translated on reuse, so identical elements at different
+ * positions (e.g. the buttons of a panel) pay for the constructive area
+ * geometry only once.
+ *
+ * <p>The cache is thread-safe.</p>
+ */
+public final class AreaCache
+{
+  /**
+   * Maximal number of cached shapes.
+   */
+  public static final int CACHE_SIZE = 512;
+
+  private static final LinkedHashMap<Object,Area> cache
+    = new LinkedHashMap<Object,Area>(64,0.75f,true)
+  {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Object,Area> eldest)
+    {
+      return size() > CACHE_SIZE;
+    }
+  };
+
+  private static long hits;
+  private static long misses;
+
+  private AreaCache()
+  {
+  }
+
+  /**
+   * Creates a cache key from the parameters determining a shape.
+   *
+   * @param params
+   *          The parameters, typically the element class and the dimensions,
+   *          style bits and arcs but <em>not</em> the position of the shape.
+   */
+  public static List<Object> key(Object... params)
+  {
+    return Arrays.asList(params);
+  }
+
+  /**
+   * Returns a shape from the cache, constructs it if necessary.
+   *
+   * @param key
+   *          The cache key, see {@link #key(Object...)}.
+   * @param x
+   *          The x-coordinate to translate the origin of the shape to.
+   * @param y
+   *          The y-coordinate to translate the origin of the shape to.
+   * @param factory
+   *          Constructs the shape at the origin.
+   * @return A new area, the caller may modify it.
+   */
+  public static Area get(Object key, double x, double y, Supplier<Area> factory)
+  {
+    Area area;
+    synchronized (cache)
+    {
+      area = cache.get(key);
+      if (area!=null)
+        hits++;
+      else
+        misses++;
+    }
+    if (area==null)
+    {
+      area = factory.get();
+      synchronized (cache)
+      {
+        cache.put(key,area);
+      }
+    }
+    if (x==0 && y==0)
+      return new Area(area);
+    return area.createTransformedArea(AffineTransform.getTranslateInstance(x,y));
+  }
+
+  /**
+   * Returns the number of shapes served from the cache.
+   */
+  public static long getHits()
+  {
+    synchronized (cache)
+    {
+      return hits;
+    }
+  }
+
+  /**
+   * Returns the number of shapes constructed.
+   */
+  public static long getMisses()
+  {
+    synchronized (cache)
+    {
+      return misses;
+    }
+  }
+}
+
+// EOF
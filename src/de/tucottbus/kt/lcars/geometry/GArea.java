@@ -2,14 +2,14 @@ package de.tucottbus.kt.lcars.geometry;
 
 import java.awt.Rectangle;
 import java.awt.Shape;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
 import java.awt.geom.GeneralPath;
 
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.GC;
-import org.eclipse.swt.graphics.Path;
 
-import de.tucottbus.kt.lcars.swt.AwtSwt;
+import de.tucottbus.kt.lcars.swt.PathCache;
 
 /**
  * A geometry representing a {@link Shape}.
@@ -22,7 +22,9 @@ public class GArea extends AGeometry
 
   protected GeneralPath     area;
   protected boolean         outline;  
-  private transient Path    cachedPath;
+  private transient PathCache.Entry cachedPath;
+  private transient int     cachedX;
+  private transient int     cachedY;
   
   public GArea(Area area, boolean foreground)
   {
@@ -30,12 +32,47 @@ public class GArea extends AGeometry
     this.area = new GeneralPath(area);
   }
   
+  /**
+   * Creates an area geometry from an arbitrary shape. The shape is copied.
+   * 
+   * @param shape
+   *          The shape.
+   * @param foreground
+   *          Foreground/background flag.
+   */
+  public GArea(Shape shape, boolean foreground)
+  {
+    super(foreground);
+    this.area = new GeneralPath(shape);
+  }
+  
   @Override
   public Area getArea()
   {
     return new Area(this.area);
   }
   
+  @Override
+  public AGeometry translate(int dx, int dy)
+  {
+    if (getClass() != GArea.class)
+      return null;
+    GArea result = new GArea(new Area(), foreground);
+    result.area = (GeneralPath)area.clone();
+    result.area.transform(AffineTransform.getTranslateInstance(dx, dy));
+    result.outline = outline;
+    return result;
+  }
+  
+  /**
+   * Returns the shape of this geometry without copying it. The shape must not
+   * be modified, use {@link #setShape(Shape)} instead.
+   */
+  public Shape getShape()
+  {
+    return area;
+  }
+  
   public Rectangle getBounds()
   {
     return area.getBounds();
@@ -54,6 +91,7 @@ public class GArea extends AGeometry
   public void setShape(Shape shape)
   {
     area = new GeneralPath(shape);
+    cachedPath = null;
   }
     
   /*
@@ -63,20 +101,27 @@ public class GArea extends AGeometry
   @Override
   public void paint2D(GC gc)
   {
-    if (cachedPath == null)
-      cachedPath = AwtSwt.toSwtPath(area, gc.getDevice());
+    PathCache cache = PathCache.getInstance(gc.getDevice());
+    PathCache.Entry cachedPath = this.cachedPath;
+    if (cachedPath == null || cachedPath.isDisposed())
+    {
+      Rectangle b = area.getBounds();
+      cachedX = b.x;
+      cachedY = b.y;
+      this.cachedPath = cachedPath = cache.acquire(area, cachedX, cachedY);
+    }
     
     if (outline) {
       Color bgc = gc.getBackground();
       Color fgc = gc.getForeground();
       gc.setForeground(bgc);
-      gc.drawPath(cachedPath);
+      cache.paint(gc, cachedPath, cachedX, cachedY, true);
       gc.setForeground(fgc);
       bgc.dispose();
       fgc.dispose();
     }
     else
-      gc.fillPath(cachedPath);
+      cache.paint(gc, cachedPath, cachedX, cachedY, false);
   }  
 
   @Override
@@ -84,14 +129,6 @@ public class GArea extends AGeometry
   {
     return getClass().getSimpleName() + " outline=" + outline;
   }
-  
-  @Override
-  protected void finalize() throws Throwable
-  {
-    if (cachedPath != null)
-      cachedPath.dispose();
-    super.finalize();
-  }
 }
 
 // EOF
@@ -63,6 +63,14 @@ public class GImage extends AGeometry
   {
     return new Area(getBounds());
   }
+
+  @Override
+  public AGeometry translate(int dx, int dy)
+  {
+    if (getClass() != GImage.class)
+      return null;
+    return new GImage(meta, new Point(pos.x + dx, pos.y + dy), size, null);
+  }
   
   @Override
   public Rectangle getBounds()
@@ -78,6 +86,23 @@ public class GImage extends AGeometry
         : new Rectangle();
   }
   
+  /**
+   * Returns the position of the upper left corner of the image.
+   */
+  public Point getPos()
+  {
+    return new Point(pos);
+  }
+
+  /**
+   * Returns the size the image is scaled to or <code>null</code> if the image
+   * is drawn in its original size.
+   */
+  public Dimension getSize()
+  {
+    return size != null ? new Dimension(size) : null;
+  }
+  
   /**
    * Returns the image which will be drawn using {@link paint2D(GC)} and is provided by the member {@link #meta}.
    * @return
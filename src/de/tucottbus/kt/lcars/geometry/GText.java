@@ -8,6 +8,7 @@ import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.GC;
 
 import de.tucottbus.kt.lcars.LCARS;
+import de.tucottbus.kt.lcars.geometry.rendering.GlyphAtlas;
 import de.tucottbus.kt.lcars.swt.ColorMeta;
 import de.tucottbus.kt.lcars.swt.FontMeta;
 
@@ -85,6 +86,18 @@ public class GText extends AGeometry
     return new Area(getBounds());
   }
 
+  @Override
+  public AGeometry translate(int dx, int dy)
+  {
+    if (getClass() != GText.class)
+      return null;
+    GText result = new GText(text, new Rectangle(x + dx, y + dy, width, height),
+        fontMeta, foreground);
+    result.descent = descent;
+    result.indent = indent;
+    return result;
+  }
+
   /**
    * Returns the smallest {@link java.awt.Rectangle} which contains the hole text ignoring indent and descent.
    */
@@ -103,6 +116,14 @@ public class GText extends AGeometry
     return this.text;
   }
 
+  /**
+   * Returns the font the text is rendered with.
+   */
+  public FontMeta getFontMeta()
+  {
+    return this.fontMeta;
+  }
+
   /**
    * Returns the distance from the baseline to the bottom of the lowest descenders on the glyphs.
    * @return
@@ -148,11 +169,15 @@ public class GText extends AGeometry
     //org.eclipse.swt.graphics.Rectangle clip = gc.getClipping();
     Color cf = gc.getForeground();
     Color cb = gc.getBackground();
-    gc.setFont(fontMeta.getFont());
-    gc.setForeground(cb);
-    //gc.setClipping(new org.eclipse.swt.graphics.Rectangle(x, y, width, height+2));
-    gc.drawString(text, x + indent, y + descent, true);
-    //gc.setClipping(clip);
+    if (!GlyphAtlas.isEnabled() || !GlyphAtlas.getInstance(gc.getDevice())
+        .drawString(gc, text, x + indent, y + descent, fontMeta, cb.getRGB()))
+    {
+      gc.setFont(fontMeta.getFont());
+      gc.setForeground(cb);
+      //gc.setClipping(new org.eclipse.swt.graphics.Rectangle(x, y, width, height+2));
+      gc.drawString(text, x + indent, y + descent, true);
+      //gc.setClipping(clip);
+    }
 
     if (LCARS.SCREEN_DEBUG) // draw bounds
     {
@@ -0,0 +1,379 @@
+package de.tucottbus.kt.lcars.geometry.rendering;
+
+import java.awt.Rectangle;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The region of the screen which has to be repainted, represented as a
+ * coalesced list of pairwise disjoint rectangles (in panel coordinates).
+ *
+ * <p>Added rectangles are accumulated exactly in a {@link Region}. The
+ * rectangle list is derived from the region on demand: its rectangles are
+ * merged into their common bounding box if this does not
+ * waste more than {@link #MERGE_WASTE} of the merged area. The number of
+ * rectangles is limited to {@link #MAX_RECTS}; if the limit is exceeded the
+ * two rectangles whose union wastes the fewest pixels are merged. Two small
+ * changes in opposite corners of a panel therefore result in two small
+ * rectangles rather than in one rectangle covering almost the entire
+ * panel.</p>
+ */
+public class DirtyRegion implements Cloneable
+{
+  /**
+   * Maximal fraction of the area of a merged rectangle which may not be
+   * covered by the rectangles it was merged from.
+   */
+  public static final float MERGE_WASTE = 0.25f;
+
+  /**
+   * Maximal number of rectangles.
+   */
+  public static final int MAX_RECTS = 16;
+
+  /**
+   * The exact region.
+   */
+  private final Region region;
+
+  /**
+   * Rectangles added but not yet united with the {@link #region}.
+   */
+  private final ArrayList<Rectangle> pending;
+
+  /**
+   * The coalesced pairwise disjoint rectangles, <code>null</code> if not
+   * (yet) derived from the {@link #region}.
+   */
+  private ArrayList<Rectangle> rects;
+
+  /**
+   * Creates an empty dirty region.
+   */
+  public DirtyRegion()
+  {
+    region = new Region();
+    pending = new ArrayList<Rectangle>();
+  }
+
+  /**
+   * Creates a dirty region consisting of one rectangle.
+   *
+   * @param r
+   *          The rectangle.
+   */
+  public DirtyRegion(Rectangle r)
+  {
+    this();
+    add(r);
+  }
+
+  // -- Getters --
+
+  /**
+   * Determines if this region is empty.
+   */
+  public boolean isEmpty()
+  {
+    return region.isEmpty() && pending.isEmpty();
+  }
+
+  /**
+   * Returns the number of rectangles.
+   */
+  public int getRectCount()
+  {
+    return coalesce().size();
+  }
+
+  /**
+   * Returns a copy of the pairwise disjoint rectangles of this region.
+   */
+  public Rectangle[] getRects()
+  {
+    ArrayList<Rectangle> rects = coalesce();
+    Rectangle[] result = new Rectangle[rects.size()];
+    for (int i = 0; i < result.length; i++)
+      result[i] = new Rectangle(rects.get(i));
+    return result;
+  }
+
+  /**
+   * Returns the number of pixels covered by the {@linkplain #getRects()
+   * rectangles} of this region, i.e. the number of pixels to be repainted.
+   */
+  public long getPixelCount()
+  {
+    long result = 0;
+    for (Rectangle r : coalesce())
+      result += (long) r.width * r.height;
+    return result;
+  }
+
+  /**
+   * Returns the bounding box of this region.
+   */
+  public Rectangle getBounds()
+  {
+    return flush().getBounds();
+  }
+
+  /**
+   * Returns the exact region. The returned object must not be modified.
+   */
+  public Region getRegion()
+  {
+    return flush();
+  }
+
+  /**
+   * Determines if a rectangle intersects this region.
+   *
+   * @param r
+   *          The rectangle.
+   */
+  public boolean intersects(Rectangle r)
+  {
+    return flush().intersects(r);
+  }
+
+  // -- Operations --
+
+  /**
+   * Adds a rectangle to this region.
+   *
+   * @param r
+   *          The rectangle, empty rectangles and <code>null</code> are
+   *          ignored.
+   */
+  public void add(Rectangle r)
+  {
+    if (r == null || r.isEmpty())
+      return;
+    pending.add(new Rectangle(r));
+    rects = null;
+  }
+
+  /**
+   * Adds another region to this region.
+   *
+   * @param other
+   *          The other region, can be <code>null</code>.
+   */
+  public void add(DirtyRegion other)
+  {
+    if (other == null)
+      return;
+    flush().add(other.flush());
+    rects = null;
+  }
+
+  /**
+   * Makes this region empty. The allocated memory is retained.
+   */
+  public void clear()
+  {
+    region.clear();
+    pending.clear();
+    rects = null;
+  }
+
+  /**
+   * Clips this region to a rectangle.
+   *
+   * @param r
+   *          The clipping rectangle.
+   */
+  public void intersect(Rectangle r)
+  {
+    flush().intersect(r);
+    rects = null;
+  }
+
+  @Override
+  public DirtyRegion clone()
+  {
+    DirtyRegion clone = new DirtyRegion();
+    clone.region.set(flush());
+    return clone;
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + " rects=" + getRectCount()
+        + " pixels=" + getPixelCount();
+  }
+
+  // -- Private methods --
+
+  /**
+   * Unites the pending rectangles with the exact region.
+   * 
+   * @return The exact region.
+   */
+  private Region flush()
+  {
+    if (!pending.isEmpty())
+    {
+      Rectangle[] rs = pending.toArray(new Rectangle[pending.size()]);
+      region.add(rs, 0, rs.length);
+      pending.clear();
+    }
+    return region;
+  }
+
+  /**
+   * Derives the coalesced rectangle list from the exact region. The
+   * rectangles of the region are visited top to bottom. Each one is either
+   * merged into the rectangle whose bounding box wastes the fewest pixels, or
+   * appended to the list. Parts already covered by a merged rectangle are cut
+   * off first, so the list stays pairwise disjoint.
+   */
+  private ArrayList<Rectangle> coalesce()
+  {
+    if (rects != null)
+      return rects;
+    ArrayList<Rectangle> out = new ArrayList<Rectangle>(MAX_RECTS);
+    long[] covered = new long[MAX_RECTS];
+    ArrayDeque<Rectangle> todo = new ArrayDeque<Rectangle>(
+        Arrays.asList(flush().getRects()));
+    next: while (!todo.isEmpty())
+    {
+      Rectangle r = todo.poll();
+      long area = (long) r.width * r.height;
+
+      // Cut off the parts of r covered by merged rectangles
+      for (int i = 0; i < out.size(); i++)
+      {
+        Rectangle e = out.get(i);
+        if (!e.intersects(r))
+          continue;
+        Rectangle c = e.intersection(r);
+        covered[i] += (long) c.width * c.height;
+        if (!c.equals(r))
+          split(r, e, todo);
+        continue next;
+      }
+
+      // Merge with the cheapest rectangle or append
+      int best = -1;
+      long bestWaste = Long.MAX_VALUE;
+      for (int i = 0; i < out.size(); i++)
+      {
+        Rectangle u = out.get(i).union(r);
+        long union = (long) u.width * u.height;
+        long waste = union - covered[i] - area;
+        if (waste < bestWaste && waste <= (long) (union * MERGE_WASTE)
+            && !intersectsOthers(out, u, i))
+        {
+          best = i;
+          bestWaste = waste;
+        }
+      }
+      if (best >= 0)
+      {
+        out.get(best).add(r);
+        covered[best] += area;
+      }
+      else
+      {
+        if (out.size() == covered.length)
+          covered = Arrays.copyOf(covered, 2 * covered.length);
+        covered[out.size()] = area;
+        out.add(r);
+      }
+    }
+    rects = out;
+    while (rects.size() > MAX_RECTS)
+      mergeCheapestPair();
+    return rects;
+  }
+
+  /**
+   * Adds the parts of a rectangle not covered by another rectangle to the
+   * front of a queue.
+   */
+  private static void split(Rectangle r, Rectangle e, ArrayDeque<Rectangle> todo)
+  {
+    int r0 = r.y, r1 = r.y + r.height;
+    int e0 = e.y, e1 = e.y + e.height;
+    int y0 = Math.max(r0, e0);
+    int y1 = Math.min(r1, e1);
+    if (r.x + r.width > e.x + e.width)
+      todo.push(new Rectangle(e.x + e.width, y0,
+          r.x + r.width - e.x - e.width, y1 - y0));
+    if (r.x < e.x)
+      todo.push(new Rectangle(r.x, y0, e.x - r.x, y1 - y0));
+    if (r1 > e1)
+      todo.push(new Rectangle(r.x, e1, r.width, r1 - e1));
+    if (r0 < e0)
+      todo.push(new Rectangle(r.x, r0, r.width, e0 - r0));
+  }
+
+  /**
+   * Determines if a rectangle intersects any rectangle of a list except one.
+   */
+  private static boolean intersectsOthers(ArrayList<Rectangle> rects,
+      Rectangle r, int except)
+  {
+    for (int i = 0; i < rects.size(); i++)
+      if (i != except && rects.get(i).intersects(r))
+        return true;
+    return false;
+  }
+
+  /**
+   * Merges the pair of rectangles whose bounding box wastes the fewest pixels.
+   */
+  private void mergeCheapestPair()
+  {
+    int bi = 0, bj = 1;
+    long bestWaste = Long.MAX_VALUE;
+    for (int i = 0; i < rects.size(); i++)
+      for (int j = i + 1; j < rects.size(); j++)
+      {
+        Rectangle ri = rects.get(i);
+        Rectangle rj = rects.get(j);
+        long waste = unionArea(ri, rj) - coveredArea(ri, rj);
+        if (waste < bestWaste)
+        {
+          bestWaste = waste;
+          bi = i;
+          bj = j;
+        }
+      }
+    Rectangle r = rects.remove(bj);
+    r.add(rects.remove(bi));
+
+    // Absorb all rectangles overlapping the union, so the count decreases
+    for (boolean absorbed = true; absorbed;)
+    {
+      absorbed = false;
+      for (int i = rects.size() - 1; i >= 0; i--)
+        if (rects.get(i).intersects(r))
+        {
+          r.add(rects.remove(i));
+          absorbed = true;
+        }
+    }
+    rects.add(r);
+  }
+
+  private static long unionArea(Rectangle r1, Rectangle r2)
+  {
+    long w = Math.max(r1.x + r1.width, r2.x + r2.width) - Math.min(r1.x, r2.x);
+    long h = Math.max(r1.y + r1.height, r2.y + r2.height) - Math.min(r1.y, r2.y);
+    return w * h;
+  }
+
+  private static long coveredArea(Rectangle r1, Rectangle r2)
+  {
+    long a = (long) r1.width * r1.height + (long) r2.width * r2.height;
+    Rectangle i = r1.intersection(r2);
+    return i.isEmpty() ? a : a - (long) i.width * i.height;
+  }
+}
+
+// EOF
@@ -0,0 +1,295 @@
+package de.tucottbus.kt.lcars.geometry.rendering;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+
+import de.tucottbus.kt.lcars.elements.ElementData;
+import de.tucottbus.kt.lcars.util.LongObjectMap;
+
+/**
+ * A uniform grid over the panel which indexes the bounds of the
+ * {@link ElementData} displayed on the screen by their serial numbers. The
+ * index is kept up to date incrementally by {@link FrameData#apply(FrameData)}
+ * and finds the elements intersecting a dirty rectangle in time proportional
+ * to the size of the rectangle rather than to the number of elements.
+ *
+ * <p><b>Not thread-safe</b>, the index must only be accessed by the thread
+ * applying frame updates.</p>
+ */
+class ElementIndex
+{
+  /**
+   * Edge length of the square grid cells in panel pixels.
+   */
+  static final int CELL_SIZE = 64;
+
+  /**
+   * An indexed element.
+   */
+  private static class Entry
+  {
+    final long serialNo;
+    ElementData data;
+    Rectangle bounds;
+    int z;
+    int c0, r0, c1, r1;
+    int mark;
+
+    Entry(long serialNo)
+    {
+      this.serialNo = serialNo;
+    }
+  }
+
+  /**
+   * Orders entries by ascending z-order.
+   */
+  private static final Comparator<Entry> BY_Z = (e1, e2) -> Integer.compare(e1.z, e2.z);
+
+  private final int width;
+  private final int height;
+  private final int cols;
+  private final int rows;
+  private final ArrayList<Entry>[] cells;
+  private final LongObjectMap<Entry> entries;
+  private final ArrayList<Entry> hits = new ArrayList<Entry>();
+  private int mark;
+
+  /**
+   * Creates a new element index.
+   *
+   * @param width
+   *          The panel width.
+   * @param height
+   *          The panel height.
+   */
+  @SuppressWarnings("unchecked")
+  ElementIndex(int width, int height)
+  {
+    this.width = Math.max(width, 1);
+    this.height = Math.max(height, 1);
+    this.cols = (this.width + CELL_SIZE - 1) / CELL_SIZE;
+    this.rows = (this.height + CELL_SIZE - 1) / CELL_SIZE;
+    this.cells = new ArrayList[cols * rows];
+    this.entries = new LongObjectMap<Entry>(256);
+  }
+
+  /**
+   * Determines if this index covers a panel of the specified size.
+   */
+  boolean fits(int width, int height)
+  {
+    return this.width == Math.max(width, 1) && this.height == Math.max(height, 1);
+  }
+
+  /**
+   * Returns the number of indexed elements.
+   */
+  int size()
+  {
+    return entries.size();
+  }
+
+  /**
+   * Removes all elements from the index.
+   */
+  void clear()
+  {
+    for (int i = 0; i < cells.length; i++)
+      cells[i] = null;
+    entries.trim();
+  }
+
+  /**
+   * Adds an element or updates its bounds.
+   *
+   * @param data
+   *          The element data.
+   * @param bounds
+   *          The (new) bounds of the element in panel coordinates.
+   * @param z
+   *          The z-order, i.e. the position of the element in the frame.
+   * @return The previous bounds of the element or <code>null</code> if the
+   *         element was not indexed before.
+   */
+  Rectangle put(ElementData data, Rectangle bounds, int z)
+  {
+    Entry entry = entries.get(data.serialNo);
+    Rectangle prev = null;
+    if (entry == null)
+      entries.put(data.serialNo, entry = new Entry(data.serialNo));
+    else
+    {
+      prev = entry.bounds;
+      unlink(entry);
+    }
+    entry.data = data;
+    entry.bounds = bounds;
+    entry.z = z;
+    link(entry);
+    return prev;
+  }
+
+  /**
+   * Replaces the element data of an indexed element whose bounds did not
+   * change.
+   *
+   * @param data
+   *          The element data.
+   * @param z
+   *          The z-order, i.e. the position of the element in the frame.
+   * @return <code>false</code> if the element is not indexed.
+   */
+  boolean update(ElementData data, int z)
+  {
+    Entry entry = entries.get(data.serialNo);
+    if (entry == null)
+      return false;
+    entry.data = data;
+    entry.z = z;
+    return true;
+  }
+
+  /**
+   * Removes an element from the index.
+   *
+   * @param serialNo
+   *          The serial number of the element.
+   * @return The bounds of the removed element or <code>null</code> if the
+   *         element was not indexed.
+   */
+  Rectangle remove(long serialNo)
+  {
+    Entry entry = entries.remove(serialNo);
+    if (entry == null)
+      return null;
+    unlink(entry);
+    return entry.bounds;
+  }
+
+  /**
+   * Returns the bounds of an indexed element.
+   *
+   * @param serialNo
+   *          The serial number of the element.
+   * @return The bounds or <code>null</code> if the element is not indexed.
+   */
+  Rectangle getBounds(long serialNo)
+  {
+    Entry entry = entries.get(serialNo);
+    return entry != null ? entry.bounds : null;
+  }
+
+  /**
+   * Collects all elements whose bounds intersect a rectangle. Every element
+   * is collected at most once per call.
+   *
+   * @param r
+   *          The rectangle in panel coordinates.
+   * @param result
+   *          The collection to add the element data to.
+   */
+  void query(Rectangle r, Collection<ElementData> result)
+  {
+    query(new Rectangle[] { r }, result);
+  }
+
+  /**
+   * Collects all elements whose bounds intersect at least one of a set of
+   * rectangles. Every element is collected at most once per call and the
+   * elements are added in z-order.
+   *
+   * @param rs
+   *          The rectangles in panel coordinates.
+   * @param result
+   *          The collection to add the element data to.
+   */
+  void query(Rectangle[] rs, Collection<ElementData> result)
+  {
+    int mark = ++this.mark;
+    ArrayList<Entry> hits = this.hits;
+    hits.clear();
+    for (Rectangle r : rs)
+    {
+      if (r == null || r.isEmpty())
+        continue;
+      int c0 = col(r.x);
+      int c1 = col(r.x + r.width - 1);
+      int r0 = row(r.y);
+      int r1 = row(r.y + r.height - 1);
+      for (int row = r0; row <= r1; row++)
+        for (int col = c0; col <= c1; col++)
+        {
+          ArrayList<Entry> cell = cells[row * cols + col];
+          if (cell == null)
+            continue;
+          for (int i = 0, n = cell.size(); i < n; i++)
+          {
+            Entry entry = cell.get(i);
+            if (entry.mark == mark)
+              continue;
+            if (entry.bounds.intersects(r))
+            {
+              entry.mark = mark;
+              hits.add(entry);
+            }
+          }
+        }
+    }
+    hits.sort(BY_Z);
+    for (int i = 0, n = hits.size(); i < n; i++)
+      result.add(hits.get(i).data);
+    hits.clear();
+  }
+
+  // -- Private methods --
+
+  private int col(int x)
+  {
+    return Math.max(0, Math.min(cols - 1, x / CELL_SIZE));
+  }
+
+  private int row(int y)
+  {
+    return Math.max(0, Math.min(rows - 1, y / CELL_SIZE));
+  }
+
+  private void link(Entry entry)
+  {
+    Rectangle b = entry.bounds;
+    if (b == null || b.isEmpty() || b.x >= width || b.y >= height
+        || b.x + b.width <= 0 || b.y + b.height <= 0)
+    {
+      entry.c0 = entry.r0 = 0;
+      entry.c1 = entry.r1 = -1;
+      return;
+    }
+    entry.c0 = col(b.x);
+    entry.c1 = col(b.x + b.width - 1);
+    entry.r0 = row(b.y);
+    entry.r1 = row(b.y + b.height - 1);
+    for (int row = entry.r0; row <= entry.r1; row++)
+      for (int col = entry.c0; col <= entry.c1; col++)
+      {
+        int i = row * cols + col;
+        if (cells[i] == null)
+          cells[i] = new ArrayList<Entry>(4);
+        cells[i].add(entry);
+      }
+  }
+
+  private void unlink(Entry entry)
+  {
+    for (int row = entry.r0; row <= entry.r1; row++)
+      for (int col = entry.c0; col <= entry.c1; col++)
+      {
+        ArrayList<Entry> cell = cells[row * cols + col];
+        if (cell != null)
+          cell.remove(entry);
+      }
+  }
+}
+
+// EOF
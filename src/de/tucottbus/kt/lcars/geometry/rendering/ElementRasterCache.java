@@ -0,0 +1,402 @@
+package de.tucottbus.kt.lcars.geometry.rendering;
+
+import java.awt.Rectangle;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.Device;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
+import org.eclipse.swt.graphics.Transform;
+
+import de.tucottbus.kt.lcars.LCARS;
+import de.tucottbus.kt.lcars.PanelState;
+import de.tucottbus.kt.lcars.elements.ElementData;
+import de.tucottbus.kt.lcars.elements.ElementState;
+import de.tucottbus.kt.lcars.geometry.AGeometry;
+import de.tucottbus.kt.lcars.geometry.GArea;
+import de.tucottbus.kt.lcars.geometry.GText;
+import de.tucottbus.kt.lcars.logging.Log;
+
+/**
+ * A retained-mode cache of rasterized {@linkplain ElementData elements}. The
+ * cache keeps an offscreen {@link Image} with an alpha channel per element,
+ * keyed by the element's serial number and {@linkplain ElementData#getVersion()
+ * render version}. Unchanged elements which have to be repainted (e.g.
+ * because they intersect a dirty region) are blitted instead of re-running
+ * the path filling and text drawing.
+ *
+ * <p>An element is rasterized when it is painted for the second time with the
+ * same render version, so elements changing in every frame never pay for
+ * rasterization. Only elements consisting of {@link GArea}s and
+ * {@link GText}s are cached. The cache is bounded by a memory budget and
+ * evicts the least recently used images first.</p>
+ *
+ * <p><b>Not thread-safe</b>, the cache must only be used on the SWT display
+ * thread.</p>
+ */
+public class ElementRasterCache
+{
+  /**
+   * The default memory budget in bytes.
+   */
+  public static final long DEFAULT_BUDGET = 64L << 20;
+
+  /**
+   * A cache entry.
+   */
+  private static class Entry
+  {
+    int version;
+    int stateKey;
+    float scale;
+    Image image;
+    long bytes;
+    int x, y, w, h;
+  }
+
+  private final Device device;
+  private final long budget;
+  private final LinkedHashMap<Long, Entry> entries;
+  private long used;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  /**
+   * Creates a new element raster cache.
+   *
+   * @param device
+   *          The device to create the images on.
+   * @param budget
+   *          The memory budget in bytes.
+   */
+  public ElementRasterCache(Device device, long budget)
+  {
+    this.device = device;
+    this.budget = budget;
+    this.entries = new LinkedHashMap<Long, Entry>(256, 0.75f, true);
+  }
+
+  // -- Getters --
+
+  /**
+   * Returns the memory currently occupied by cached images in bytes.
+   */
+  public long getUsedBytes()
+  {
+    return used;
+  }
+
+  /**
+   * Returns the number of elements painted from the cache.
+   */
+  public long getHits()
+  {
+    return hits;
+  }
+
+  /**
+   * Returns the number of cacheable elements which had to be rendered.
+   */
+  public long getMisses()
+  {
+    return misses;
+  }
+
+  /**
+   * Returns the number of images evicted to stay within the memory budget.
+   */
+  public long getEvictions()
+  {
+    return evictions;
+  }
+
+  // -- Operations --
+
+  /**
+   * Paints an element from the cache. Rasterizes the element if necessary.
+   *
+   * @param gc
+   *          The graphics context, with the panel-to-screen transform set.
+   * @param el
+   *          The element.
+   * @param panelState
+   *          The panel state.
+   * @param scale
+   *          The scale factor of the panel-to-screen transform.
+   * @return <code>true</code> if the element was painted, <code>false</code>
+   *         if the caller has to render the element itself.
+   */
+  public boolean paint(GC gc, ElementData el, PanelState panelState, float scale)
+  {
+    if (el.getVersion() == 0 || !isCacheable(el))
+      return false;
+
+    int stateKey = getStateKey(el.getState(), panelState);
+    Entry entry = entries.get(el.serialNo);
+    if (entry == null || entry.version != el.getVersion()
+        || entry.stateKey != stateKey || entry.scale != scale)
+    {
+      // First sighting: remember version, let the caller render
+      misses++;
+      if (entry == null)
+        entries.put(el.serialNo, entry = new Entry());
+      else
+        disposeImage(entry);
+      entry.version = el.getVersion();
+      entry.stateKey = stateKey;
+      entry.scale = scale;
+      return false;
+    }
+
+    if (entry.image == null)
+    {
+      // Second sighting with the same version: rasterize
+      misses++;
+      if (!rasterize(entry, el, panelState, scale))
+        return false;
+      used += entry.bytes;
+      evict();
+      if (entry.image == null)
+        return false;
+    }
+    else
+      hits++;
+
+    org.eclipse.swt.graphics.Rectangle ib = entry.image.getBounds();
+    gc.drawImage(entry.image, 0, 0, ib.width, ib.height, entry.x, entry.y,
+        entry.w, entry.h);
+    return true;
+  }
+
+  /**
+   * Removes the entries of all elements not contained in a frame.
+   *
+   * @param retain
+   *          The elements to keep.
+   */
+  public void retainAll(Collection<ElementData> retain)
+  {
+    HashSet<Long> keep = new HashSet<Long>(retain.size() * 2);
+    for (ElementData el : retain)
+      if (el != null)
+        keep.add(el.serialNo);
+    for (Iterator<Map.Entry<Long, Entry>> it = entries.entrySet().iterator(); it
+        .hasNext();)
+    {
+      Map.Entry<Long, Entry> e = it.next();
+      if (!keep.contains(e.getKey()))
+      {
+        disposeImage(e.getValue());
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Disposes all cached images.
+   */
+  public void clear()
+  {
+    for (Entry entry : entries.values())
+      disposeImage(entry);
+    entries.clear();
+  }
+
+  // -- Private methods --
+
+  /**
+   * Determines if an element can be cached.
+   */
+  private boolean isCacheable(ElementData el)
+  {
+    ElementState state = el.getState();
+    List<AGeometry> geos = el.getGeometries();
+    if (state == null || !state.isVisible() || geos == null || geos.isEmpty())
+      return false;
+    for (AGeometry geo : geos)
+      if (!(geo instanceof GArea) && !(geo instanceof GText))
+        return false;
+    return true;
+  }
+
+  /**
+   * Computes a key of the parts of the panel state the appearance of an
+   * element depends on.
+   */
+  private static int getStateKey(ElementState state, PanelState panelState)
+  {
+    int key = panelState.colorScheme;
+    if (state.getStyle(LCARS.ES_MODAL) == 0)
+      key = 31 * key + Float.floatToIntBits(panelState.alpha);
+    if (state.getStyle(LCARS.ES_BLINKING) != 0)
+      key = 31 * key + panelState.blink;
+    return key;
+  }
+
+  /**
+   * Renders an element into an image with alpha channel. The element is
+   * rendered on a black and on a white background, the opacity of each pixel
+   * is recovered from the difference.
+   */
+  private boolean rasterize(Entry entry, ElementData el, PanelState panelState,
+      float scale)
+  {
+    Rectangle b = el.getBounds();
+    b.grow(1, 1); // Antialiasing
+    int iw = (int) Math.ceil(b.width * scale);
+    int ih = (int) Math.ceil(b.height * scale);
+    long bytes = 4L * iw * ih;
+    if (iw <= 0 || ih <= 0 || bytes > budget / 4)
+      return false;
+
+    ImageData onBlack;
+    ImageData onWhite;
+    try
+    {
+      onBlack = render(el, panelState, b, scale, iw, ih,
+          device.getSystemColor(SWT.COLOR_BLACK));
+      onWhite = render(el, panelState, b, scale, iw, ih,
+          device.getSystemColor(SWT.COLOR_WHITE));
+    }
+    catch (Exception e)
+    {
+      Log.err("Cannot rasterize " + el + ".", e);
+      return false;
+    }
+
+    entry.image = new Image(device, composeAlpha(onBlack, onWhite));
+    entry.bytes = bytes;
+    entry.x = b.x;
+    entry.y = b.y;
+    entry.w = b.width;
+    entry.h = b.height;
+    return true;
+  }
+
+  /**
+   * Renders an element on an opaque background.
+   */
+  private ImageData render(ElementData el, PanelState panelState,
+      Rectangle b, float scale, int iw, int ih, Color background)
+  {
+    Image image = new Image(device, iw, ih);
+    GC gc = new GC(image);
+    Transform t = new Transform(device);
+    try
+    {
+      gc.setAdvanced(true);
+      gc.setAntialias(SWT.ON);
+      gc.setTextAntialias(SWT.ON);
+      gc.setBackground(background);
+      gc.fillRectangle(0, 0, iw, ih);
+      t.scale(scale, scale);
+      t.translate(-b.x, -b.y);
+      gc.setTransform(t);
+      el.render2D(gc, panelState);
+      return image.getImageData();
+    }
+    finally
+    {
+      t.dispose();
+      gc.dispose();
+      image.dispose();
+    }
+  }
+
+  /**
+   * Recovers an image with alpha channel from two renderings of the same
+   * content, one on a black and one on a white background.
+   *
+   * @param onBlack
+   *          The rendering on black.
+   * @param onWhite
+   *          The rendering on white, same size.
+   * @return The image data with alpha channel.
+   */
+  static ImageData composeAlpha(ImageData onBlack, ImageData onWhite)
+  {
+    int iw = onBlack.width;
+    int ih = onBlack.height;
+    PaletteData pb = onBlack.palette;
+    PaletteData pw = onWhite.palette;
+    ImageData data = new ImageData(iw, ih, 24,
+        new PaletteData(0xFF0000, 0x00FF00, 0x0000FF));
+    int[] rowB = new int[iw];
+    int[] rowW = new int[iw];
+    int[] rowD = new int[iw];
+    byte[] alphas = new byte[iw];
+    for (int y = 0; y < ih; y++)
+    {
+      onBlack.getPixels(0, y, iw, rowB, 0);
+      onWhite.getPixels(0, y, iw, rowW, 0);
+      for (int x = 0; x < iw; x++)
+      {
+        int gb = channel(rowB[x], pb.greenMask, pb.greenShift);
+        int gw = channel(rowW[x], pw.greenMask, pw.greenShift);
+        int a = Math.max(0, Math.min(255, 255 - (gw - gb)));
+        alphas[x] = (byte) a;
+        if (a == 0)
+        {
+          rowD[x] = 0;
+          continue;
+        }
+        int r = Math.min(255,
+            channel(rowB[x], pb.redMask, pb.redShift) * 255 / a);
+        int g = Math.min(255, gb * 255 / a);
+        int bl = Math.min(255,
+            channel(rowB[x], pb.blueMask, pb.blueShift) * 255 / a);
+        rowD[x] = (r << 16) | (g << 8) | bl;
+      }
+      data.setPixels(0, y, iw, rowD, 0);
+      data.setAlphas(0, y, iw, alphas, 0);
+    }
+    return data;
+  }
+
+  /**
+   * Extracts a color channel from a direct palette pixel.
+   */
+  private static int channel(int pixel, int mask, int shift)
+  {
+    int c = pixel & mask;
+    return shift < 0 ? c >>> -shift : c << shift;
+  }
+
+  /**
+   * Evicts least recently used images until the memory budget is met.
+   */
+  private void evict()
+  {
+    for (Iterator<Entry> it = entries.values().iterator(); it.hasNext()
+        && used > budget;)
+    {
+      Entry entry = it.next();
+      if (entry.image == null)
+        continue;
+      disposeImage(entry);
+      evictions++;
+    }
+  }
+
+  private void disposeImage(Entry entry)
+  {
+    if (entry.image == null)
+      return;
+    entry.image.dispose();
+    entry.image = null;
+    used -= entry.bytes;
+    entry.bytes = 0;
+  }
+}
+
+// EOF
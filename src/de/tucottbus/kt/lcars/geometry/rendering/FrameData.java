@@ -1,17 +1,17 @@
 package de.tucottbus.kt.lcars.geometry.rendering;
 
 import java.awt.Rectangle;
-import java.awt.Shape;
-import java.awt.geom.Area;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collections;
 
 import de.tucottbus.kt.lcars.PanelData;
 import de.tucottbus.kt.lcars.PanelState;
 import de.tucottbus.kt.lcars.elements.ElementData;
 import de.tucottbus.kt.lcars.logging.Log;
 import de.tucottbus.kt.lcars.swt.ImageMeta;
+import de.tucottbus.kt.lcars.util.LongObjectMap;
 import de.tucottbus.kt.lcars.util.Objectt;
 
 /**
@@ -28,12 +28,41 @@ class FrameData implements Cloneable
   
   private boolean selectiveRepaint;
   private final boolean incremental;
+  private long panelId;
   private PanelState panelState;
   private ElementData[] elements;
+
+  /**
+   * The data of a sparse update which are merged into the elements of the
+   * previous frame, <code>null</code> for complete frames.
+   */
+  private PanelData sparseData;
   private ArrayList<ElementData> elementsToPaint;
-  private Shape dirtyArea;
+  private ArrayList<ArrayList<ElementData>> elementsToPaintPerRect;
+  private DirtyRegion dirtyRegion;
+  private Rectangle[] dirtyRects;
   private boolean fullRepaint;
   private boolean bgChanged = true;
+  
+  /**
+   * Spatial index of the elements of this frame, <code>null</code> if not
+   * (yet) built. The index is handed over from frame to frame and built
+   * lazily on the first selective repaint.
+   */
+  private ElementIndex index;
+
+  /**
+   * Reusable map from serial numbers to {@link ElementData}, handed over from
+   * frame to frame like the {@link #index}. Empty between frame updates.
+   */
+  private LongObjectMap<ElementData> lookup;
+
+  /**
+   * Reusable scratch structures and pooled output structures, handed over
+   * from frame to frame like the {@link #index}. Only used by the thread
+   * applying updates.
+   */
+  private Scratch scratch;
 
   private FrameData(boolean incremental)
   {
@@ -44,8 +73,11 @@ class FrameData implements Cloneable
   {
     this.incremental = incremental;
     this.selectiveRepaint = selectiveRepaint;
+    this.panelId = panelData.panelId;
     this.panelState = panelData.panelState;
     this.elements = panelData.elementData;
+    if (panelData.sparse)
+      this.sparseData = panelData;
     
     if (Log.DebugMode) //Debug: check if all elements not null
       for (ElementData ed : this.elements)
@@ -97,13 +129,9 @@ class FrameData implements Cloneable
   {
     try
     {
-      // Shallow copy of all fields
-      FrameData clone = (FrameData)super.clone();
-
-      // Deeper copy of some fields
-      clone.dirtyArea = new Area(this.dirtyArea);
-      
-      return clone;
+      // Shallow copy of all fields (the dirty region and the lists of elements
+      // to paint are not modified after apply(FrameData))
+      return (FrameData)super.clone();
     } 
     catch (CloneNotSupportedException e)
     {
@@ -125,10 +153,18 @@ class FrameData implements Cloneable
    */
   public void apply(FrameData pred)
   {
+    Scratch scratch = takeScratch(pred);
     if (pred == null)
     {
-      dirtyArea = new Rectangle(getPanelWidth(), getPanelHeight());
-      elementsToPaint = new ArrayList<ElementData>(Arrays.asList(elements));
+      if (sparseData != null)
+        Log.warn("Sparse update without previous frame");
+      sparseData = null;
+      for (ElementData edu : elements)
+        if (edu != null)
+          edu.inheritVersion(null);
+      elementsToPaint = scratch.list();
+      Collections.addAll(elementsToPaint, elements);
+      setDirtyRegion(scratch.region(getPanelBounds()), null);
       bgChanged = updateBgImage(null);
       return;
     }
@@ -140,150 +176,342 @@ class FrameData implements Cloneable
                     || !selectiveRepaint;
     
     // 1. Create a hash map of the current ElementData
-    HashMap<Long, ElementData> hPred = incremental ? createHashMap(pred.elements) : null;
+    LongObjectMap<ElementData> hPred = takeLookup(pred);
+    for (ElementData edp : pred.elements)
+      hPred.put(edp.serialNo, edp);
+    if (sparseData != null)
+    {
+      elements = merge(pred, sparseData, hPred, scratch);
+      sparseData = null;
+    }
     
     // 2. Complete the received ElementData with the present information
     //
     if (fullRepaint)
     {
-      elementsToPaint = new ArrayList<ElementData>(Arrays.asList(elements));
-      if (incremental)
-        for (ElementData edu : elements)
-          try
-          {
-            ElementData edp = hPred.get(edu.serialNo);
-            if (edp != null)
-              hPred.remove(edu.serialNo);
-            edu.applyUpdate(edp);          
-          } catch (Exception e)
-          {
-            if (edu != null)
-              Log.err("Cannot apply frame update on " + edu + ".", e);
-            else
-              Log.err("Cannot apply frame update because of illegal null ElementData.");
-          }
-      dirtyArea = new Area(new Rectangle(getPanelWidth(), getPanelHeight()));
+      elementsToPaint = scratch.list();
+      Collections.addAll(elementsToPaint, elements);
+      for (ElementData edu : elements)
+        try
+        {
+          ElementData edp = hPred.remove(edu.serialNo);
+          if (edu == edp)
+            continue; // Unchanged element taken over by a sparse update
+          if (incremental)
+            edu.applyUpdate(edp);
+          else
+            edu.inheritVersion(edp);
+        } catch (Exception e)
+        {
+          if (edu != null)
+            Log.err("Cannot apply frame update on " + edu + ".", e);
+          else
+            Log.err("Cannot apply frame update because of illegal null ElementData.");
+        }
+      setDirtyRegion(scratch.region(getPanelBounds()), null);
     } 
     else
     {
-      ArrayList<ElementData> elementsToPaint = new ArrayList<ElementData>(elements.length);
-      ArrayList<ElementData> elsWithoutChanges = new ArrayList<ElementData>(elements.length);
-      Area dirtyArea = new Area();
+      ElementIndex index = takeIndex(pred);
+      ArrayList<ElementData> elementsToPaint = scratch.list();
+      DirtyRegion dirtyRegion = scratch.region(null);
 
-      for (ElementData edu : elements)
+      // Note: selective repaints are always incremental
+      for (int z = 0; z < elements.length; z++)
+      {
+        ElementData edu = elements[z];
         try
         {
-          if (incremental) 
-          {
-            ElementData edp = hPred.get(edu.serialNo);
-            if (edp != null)
-              hPred.remove(edu.serialNo);
-              
-            if (edu.applyUpdate(edp) == 0)
-            {
-              elsWithoutChanges.add(edu);
-              continue;                
-            }
-              
-            if (edp!=null)
-              dirtyArea.add(new Area(edp.getBounds()));
-          }
-          dirtyArea.add(new Area(edu.getBounds()));
-          elementsToPaint.add(edu);
+          ElementData edp = hPred.remove(edu.serialNo);
+          if ((edu == edp || edu.applyUpdate(edp) == 0) && index.update(edu, z))
+            continue;
 
+          Rectangle bounds = edu.getBounds();
+          Rectangle prev = index.put(edu, bounds, z);
+          dirtyRegion.add(prev);
+          dirtyRegion.add(bounds);
         } catch (Exception e)
         {
           Log.err("Update failed on element #" + edu.serialNo + ": "+e.getMessage(),e);
         }
-      // Add removed elements to the dirtyArea
+      }
+      // Add removed elements to the dirty region
       try
       {
-        hPred.forEach((serialNo, edp) -> dirtyArea.add(new Area(edp.getBounds())));
+        for (int i = hPred.nextSlot(0); i >= 0; i = hPred.nextSlot(i + 1))
+          dirtyRegion.add(index.remove(hPred.keyAt(i)));
       } catch (Exception e)
       {
         Log.err("Cannot create dirty area.", e);
       }
-      dirtyArea.intersect(new Area(new Rectangle(getPanelWidth(), getPanelHeight())));
-      this.dirtyArea = dirtyArea;
+      dirtyRegion.intersect(getPanelBounds());
+      setDirtyRegion(dirtyRegion, index);
 
-      for (ElementData edu : elsWithoutChanges)
-        if (dirtyArea.getBounds().intersects(edu.getBounds()))
-          elementsToPaint.add(edu);
+      index.query(dirtyRects, elementsToPaint);
       this.elementsToPaint = elementsToPaint;
+      this.index = index;
     }
+    hPred.trim(); // Release the elements of the previous frame
+    this.lookup = hPred;
     
 //    if(elements.size() !=elementsToPaint.size())
 //      Log.warn(CLASSKEY, "Element difference " + elements.size() + ":" + elementsToPaint.size());
   }
 
   /**
-   * Collapse this and all previous frames as they had added as one frame.
+   * Merges a sparse update into the elements of the previous frame.
    * 
-   * @param preds
-   * @return Indicates if all elements has complete data
+   * @param pred
+   *          - previous {@link FrameData}
+   * @param data
+   *          - the sparse update
+   * @param hPred
+   *          - the elements of <code>pred</code> by serial number
+   * @param scratch
+   *          - the scratch structures to use
+   * @return the complete elements of this frame in z-order; unchanged
+   *         elements are the instances of <code>pred</code>
    */
-  public boolean collapse(FrameData[] preds)
+  private static ElementData[] merge(FrameData pred, PanelData data,
+      LongObjectMap<ElementData> hPred, Scratch scratch)
   {
-    // TODO: bounded buffer testen
-    // TODO:
+    long[] removed = data.removed != null ? data.removed.clone() : new long[0];
+    long[] appended = data.appended != null ? data.appended : new long[0];
+    Arrays.sort(removed);
 
-    if (!incremental) // not if background changed because incremental apply
-      return true;
+    LongObjectMap<ElementData> hChanged = scratch.changed;
+    for (ElementData edu : data.elementData)
+      hChanged.put(edu.serialNo, edu);
 
-    HashMap<Long, ElementData> hThis = createHashMapOnlyIncomplete(elements);
-    if (hThis.isEmpty())
-      return true;
+    ArrayList<ElementData> result = scratch.merged;
+    for (ElementData edp : pred.elements)
+    {
+      if (removed.length > 0 && Arrays.binarySearch(removed, edp.serialNo) >= 0)
+        continue;
+      ElementData edu = hChanged.remove(edp.serialNo);
+      result.add(edu != null ? edu : edp);
+    }
+    for (long serialNo : appended)
+    {
+      ElementData edu = hChanged.remove(serialNo);
+      if (edu == null)
+        edu = hPred.get(serialNo);
+      if (edu != null)
+        result.add(edu);
+      else
+        Log.warn("Missing data of added element #" + serialNo);
+    }
+    if (!hChanged.isEmpty())
+      Log.warn(hChanged.size() + " changed elements not on the previous frame");
+    hChanged.trim();
+    ElementData[] elements = result.toArray(new ElementData[result.size()]);
+    result.clear();
+    return elements;
+  }
 
-    for (int i = preds.length - 1; i >= 0; i--)
-      for (ElementData predEl : preds[i].elements)
+  /**
+   * Sets the dirty region and collects the elements to paint in each of its
+   * rectangles.
+   * 
+   * @param dirtyRegion
+   *          - the dirty region
+   * @param index
+   *          - the spatial index to look up the elements to paint, if
+   *          <code>null</code> all {@link #elementsToPaint} will be painted in
+   *          every rectangle
+   */
+  private void setDirtyRegion(DirtyRegion dirtyRegion, ElementIndex index)
+  {
+    this.dirtyRegion = dirtyRegion;
+    this.dirtyRects = dirtyRegion.getRects();
+    this.elementsToPaintPerRect = scratch.perRect();
+    for (Rectangle r : dirtyRects)
+      if (index != null)
       {
-        ElementData thisEl = hThis.get(predEl.serialNo);
-        if (thisEl == null) continue;
-        thisEl.applyUpdate(predEl);
-        if (thisEl.getMissing() == 0)
-        {
-          hThis.remove(thisEl.serialNo);
-          if (hThis.isEmpty())
-            return true;
-        }
+        ArrayList<ElementData> els = scratch.list();
+        index.query(r, els);
+        elementsToPaintPerRect.add(els);
       }
-    return hThis.isEmpty();
+      else
+        elementsToPaintPerRect.add(elementsToPaint);
   }
 
   /**
+   * Takes over the spatial index from the previous frame. If the previous
+   * frame has no index or the panel size has changed, a new index is built
+   * from the elements of the previous frame.
    * 
-   * @param elements
-   * @return
+   * @param pred
+   *          - previous {@link FrameData}
+   * @return the index, reflecting the elements of <code>pred</code>
+   */
+  private ElementIndex takeIndex(FrameData pred)
+  {
+    ElementIndex index = pred.index;
+    pred.index = null;
+    if (index != null && index.fits(getPanelWidth(), getPanelHeight()))
+      return index;
+    
+    index = new ElementIndex(getPanelWidth(), getPanelHeight());
+    for (int z = 0; z < pred.elements.length; z++)
+      try
+      {
+        ElementData edp = pred.elements[z];
+        index.put(edp, edp.getBounds(), z);
+      } catch (Exception e)
+      {
+        Log.err("Cannot index element #" + pred.elements[z].serialNo + ".", e);
+      }
+    return index;
+  }
+
+  /**
+   * Takes over the scratch structures from the previous frame or creates new
+   * ones.
+   * 
+   * @param pred
+   *          - previous {@link FrameData}
+   * @return the scratch structures, also assigned to this frame
    */
-  private static HashMap<Long, ElementData> createHashMap(
-      ElementData[] elements)
+  private Scratch takeScratch(FrameData pred)
   {
-    HashMap<Long, ElementData> result = new HashMap<Long, ElementData>(
-        elements.length);
-    for (ElementData edp : elements)
-      result.put(edp.serialNo, edp);
-    return result;
+    Scratch scratch = pred != null ? pred.scratch : null;
+    if (pred != null)
+      pred.scratch = null;
+    if (scratch == null)
+      scratch = new Scratch();
+    this.scratch = scratch;
+    return scratch;
   }
 
   /**
+   * Hands the dirty region and the lists of elements to paint of a frame
+   * which is not painted any more over to the pool of this frame, so the
+   * next frames can reuse them. Must be invoked by the thread applying
+   * updates after {@link #apply(FrameData)}. The other frame must not be
+   * used afterwards.
    * 
-   * @param elements
-   * @return
+   * @param done
+   *          - a frame which has been replaced on the painting thread or
+   *          collapsed into a newer frame
+   */
+  public void recycle(FrameData done)
+  {
+    if (scratch == null || done == this)
+      return;
+    scratch.recycle(done.dirtyRegion);
+    scratch.recycle(done.elementsToPaint);
+    if (done.elementsToPaintPerRect != null)
+    {
+      for (ArrayList<ElementData> els : done.elementsToPaintPerRect)
+        if (els != done.elementsToPaint)
+          scratch.recycle(els);
+      scratch.recyclePerRect(done.elementsToPaintPerRect);
+    }
+    done.dirtyRegion = null;
+    done.dirtyRects = null;
+    done.elementsToPaint = null;
+    done.elementsToPaintPerRect = null;
+  }
+
+  /**
+   * Takes over the reusable serial number map from the previous frame or
+   * creates a new one.
+   * 
+   * @param pred
+   *          - previous {@link FrameData}
+   * @return the empty map
+   */
+  private LongObjectMap<ElementData> takeLookup(FrameData pred)
+  {
+    LongObjectMap<ElementData> lookup = pred != null ? pred.lookup : null;
+    if (lookup == null)
+      return new LongObjectMap<ElementData>(pred != null ? pred.elements.length
+          : elements.length);
+    pred.lookup = null;
+    return lookup;
+  }
+
+  /**
+   * Collapses an applied frame which has not been painted into this frame.
+   * The repaint area of this frame is extended by the repaint area of the
+   * unpainted frame, so painting this frame also repaints the changes of the
+   * unpainted one. Must be called after {@link #apply(FrameData)}.
+   * 
+   * @param unpainted
+   *          - the predecessor of this frame or any earlier frame which has
+   *          not been painted (including the frames collapsed into it)
+   */
+  public void collapse(FrameData unpainted)
+  {
+    bgChanged |= unpainted.bgChanged;
+    if (fullRepaint || index == null)
+      return; // Repainting everything anyway
+    
+    // The lists of elements to paint are rebuilt
+    for (ArrayList<ElementData> els : elementsToPaintPerRect)
+      scratch.recycle(els);
+    scratch.recyclePerRect(elementsToPaintPerRect);
+    scratch.recycle(elementsToPaint);
+
+    if (unpainted.fullRepaint)
+    {
+      fullRepaint = true;
+      scratch.recycle(dirtyRegion);
+      elementsToPaint = scratch.list();
+      Collections.addAll(elementsToPaint, elements);
+      setDirtyRegion(scratch.region(getPanelBounds()), null);
+      return;
+    }
+    
+    dirtyRegion.add(unpainted.dirtyRegion);
+    dirtyRegion.intersect(getPanelBounds());
+    setDirtyRegion(dirtyRegion, index);
+    ArrayList<ElementData> elementsToPaint = scratch.list();
+    index.query(dirtyRects, elementsToPaint);
+    this.elementsToPaint = elementsToPaint;
+  }
+
+  /**
+   * Returns the region of the screen to be repainted.
+   */
+  public DirtyRegion getDirtyRegion()
+  {
+    return dirtyRegion;
+  }
+
+  /**
+   * Returns the pairwise disjoint rectangles of the {@linkplain
+   * #getDirtyRegion() dirty region}.
+   */
+  public Rectangle[] getDirtyRects()
+  {
+    return dirtyRects;
+  }
+
+  /**
+   * Returns the elements to be painted in one of the {@linkplain
+   * #getDirtyRects() dirty rectangles} in z-order.
+   * 
+   * @param rect
+   *          - the index of the dirty rectangle
    */
-  private static HashMap<Long, ElementData> createHashMapOnlyIncomplete(
-      ElementData[] elements)
+  public ArrayList<ElementData> getElementsToPaint(int rect)
+  {
+    return elementsToPaintPerRect.get(rect);
+  }
+
+  public Rectangle getPanelBounds()
   {
-    HashMap<Long, ElementData> result = new HashMap<Long, ElementData>(
-        elements.length);
-    for (ElementData edu : elements)
-      if (edu.getMissing() != 0)
-        result.put(edu.serialNo, edu);
-    return result;
+    return new Rectangle(getPanelWidth(), getPanelHeight());
   }
 
-  public Shape getDirtyArea()
+  /**
+   * Returns the serial number of the panel this frame was received from.
+   */
+  public long getPanelId()
   {
-    return dirtyArea;
+    return panelId;
   }
 
   public int getPanelWidth()
@@ -319,4 +547,89 @@ class FrameData implements Cloneable
   public Boolean getFullRepaint() {
     return fullRepaint;
   }
+
+  // -- Nested classes --
+
+  /**
+   * Scratch structures of the frame pipeline and a pool of the output
+   * structures of frames which are not painted any more. In steady state
+   * applying an update allocates no maps, lists or dirty regions.
+   */
+  private static final class Scratch
+  {
+    /**
+     * Maximal number of pooled lists.
+     */
+    private static final int MAX_LISTS = 2 * DirtyRegion.MAX_RECTS + 4;
+
+    /**
+     * Maximal number of pooled dirty regions and lists of lists.
+     */
+    private static final int MAX_REGIONS = 4;
+
+    final LongObjectMap<ElementData> changed = new LongObjectMap<ElementData>();
+    final ArrayList<ElementData> merged = new ArrayList<ElementData>();
+    private final ArrayDeque<ArrayList<ElementData>> lists
+      = new ArrayDeque<ArrayList<ElementData>>();
+    private final ArrayDeque<ArrayList<ArrayList<ElementData>>> perRects
+      = new ArrayDeque<ArrayList<ArrayList<ElementData>>>();
+    private final ArrayDeque<DirtyRegion> regions = new ArrayDeque<DirtyRegion>();
+
+    /**
+     * Returns an empty list of elements.
+     */
+    ArrayList<ElementData> list()
+    {
+      ArrayList<ElementData> list = lists.poll();
+      return list != null ? list : new ArrayList<ElementData>();
+    }
+
+    /**
+     * Returns an empty list of element lists.
+     */
+    ArrayList<ArrayList<ElementData>> perRect()
+    {
+      ArrayList<ArrayList<ElementData>> list = perRects.poll();
+      return list != null ? list : new ArrayList<ArrayList<ElementData>>();
+    }
+
+    /**
+     * Returns a dirty region.
+     * 
+     * @param r
+     *          - the initial rectangle, <code>null</code> for an empty region
+     */
+    DirtyRegion region(Rectangle r)
+    {
+      DirtyRegion region = regions.poll();
+      if (region == null)
+        region = new DirtyRegion();
+      region.add(r);
+      return region;
+    }
+
+    void recycle(ArrayList<ElementData> list)
+    {
+      if (list == null || lists.size() >= MAX_LISTS)
+        return;
+      list.clear();
+      lists.add(list);
+    }
+
+    void recyclePerRect(ArrayList<ArrayList<ElementData>> list)
+    {
+      if (list == null || perRects.size() >= MAX_REGIONS)
+        return;
+      list.clear();
+      perRects.add(list);
+    }
+
+    void recycle(DirtyRegion region)
+    {
+      if (region == null || regions.size() >= MAX_REGIONS)
+        return;
+      region.clear();
+      regions.add(region);
+    }
+  }
 }
@@ -0,0 +1,423 @@
+package de.tucottbus.kt.lcars.geometry.rendering;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.Device;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Transform;
+import org.jfree.experimental.swt.SWTUtils;
+
+import de.tucottbus.kt.lcars.LCARS;
+import de.tucottbus.kt.lcars.PanelData;
+import de.tucottbus.kt.lcars.PanelState;
+import de.tucottbus.kt.lcars.elements.ElementData;
+import de.tucottbus.kt.lcars.logging.Log;
+import de.tucottbus.kt.lcars.swt.ImageMeta;
+
+/**
+ * Renders {@link PanelData panel updates} on an SWT graphics context. The
+ * renderer keeps the frame context which incremental and selective updates
+ * are applied to. It is used by {@link LcarsComposite} and can paint on any
+ * {@link GC}, e.g. one of an offscreen image.
+ *
+ * <p>Updates are applied on the thread delivering them. Each applied frame
+ * is posted to a single-slot mailbox, which the painting thread empties. If
+ * the painting thread falls behind, a newer frame replaces the unpainted one
+ * in the mailbox and the unpainted frame is {@linkplain
+ * FrameData#collapse(FrameData) collapsed} into it. The painting thread
+ * always paints the newest frame, and the delivering thread never waits for
+ * it.</p>
+ */
+public class FrameRenderer
+{
+  /**
+   * Enables selective rendering where only dirty regions will be updated
+   */
+  private boolean selectiveRepaint = false;
+
+  /**
+   * The frame most recently applied. Incremental and sparse updates are
+   * applied to it.
+   */
+  private volatile FrameData context;
+
+  /**
+   * The newest applied frame which has not been painted yet, or
+   * <code>null</code>.
+   */
+  private final AtomicReference<FrameData> mailbox =
+      new AtomicReference<FrameData>();
+
+  /**
+   * The frame being painted, only changed by the painting thread.
+   */
+  private volatile FrameData frame;
+
+  /**
+   * The last frame replaced by the painting thread, or <code>null</code>. Its
+   * dirty region and element lists are {@linkplain FrameData#recycle(FrameData)
+   * reused} by the next update.
+   */
+  private final AtomicReference<FrameData> released =
+      new AtomicReference<FrameData>();
+
+  /**
+   * Serializes updates.
+   */
+  private final Object updateLock = new Object();
+
+  /**
+   * Number of frames collapsed into a newer frame before being painted.
+   */
+  private volatile long collapsedCount;
+
+  /**
+   * The device to create resources on.
+   */
+  private final Device device;
+
+  /**
+   * The scale factor of the rendering transform.
+   */
+  private float renderScale = 1f;
+
+  /**
+   * Cache of rasterized elements, <code>null</code> if disabled.
+   */
+  private ElementRasterCache rasterCache;
+
+  /**
+   * Number of rectangles repainted in the last frame.
+   */
+  private volatile int dirtyRectCount;
+
+  /**
+   * Number of pixels (in panel coordinates) repainted in the last frame.
+   */
+  private volatile long repaintedPixels;
+
+  /**
+   * Creates a new frame renderer.
+   *
+   * @param device
+   *          The device to create resources on.
+   */
+  public FrameRenderer(Device device)
+  {
+    this.device = device;
+  }
+
+  /**
+   * Releases all resources of this renderer.
+   */
+  public void dispose()
+  {
+    if (rasterCache!=null)
+      rasterCache.clear();
+  }
+
+  /**
+   * Sets a hint for selective repaints where only dirty areas on the screen
+   * will be repainted.
+   *
+   * @param selectiveRepaint
+   *          The new selective repaint mode.
+   * @see LcarsComposite#setSelectiveRenderingHint(boolean)
+   */
+  public void setSelectiveRenderingHint(boolean selectiveRepaint)
+  {
+    this.selectiveRepaint = selectiveRepaint;
+  }
+
+  /**
+   * Sets a hint for caching rasterized elements. Must be called on the
+   * thread painting.
+   *
+   * @param rasterCache
+   *          The new raster caching mode.
+   * @see LcarsComposite#setRasterCacheHint(boolean)
+   */
+  public void setRasterCacheHint(boolean rasterCache)
+  {
+    if (rasterCache && this.rasterCache==null)
+      this.rasterCache = new ElementRasterCache(device,ElementRasterCache.DEFAULT_BUDGET);
+    else if (!rasterCache && this.rasterCache!=null)
+    {
+      this.rasterCache.clear();
+      this.rasterCache = null;
+    }
+  }
+
+  /**
+   * Returns the cache of rasterized elements or <code>null</code> if raster
+   * caching is disabled.
+   */
+  public ElementRasterCache getRasterCache()
+  {
+    return rasterCache;
+  }
+
+  /**
+   * Updates the rendering data.
+   *
+   * @param data
+   *          The panel data update.
+   * @param incremental
+   *          If <code>true</code> the update data are incremental.
+   * @return <code>true</code> if the background image has changed.
+   */
+  public boolean applyUpdate(PanelData data, boolean incremental)
+  {
+    synchronized (updateLock)
+    {
+      FrameData pred = this.context;
+      if (data.sparse)
+      {
+        // A sparse update can only be merged into the previous frame of the
+        // same panel, the panel sends a full update at least once per second
+        if (pred == null || pred.getPanelId() != data.panelId)
+          return false;
+      }
+      FrameData context = FrameData.create(data, incremental, selectiveRepaint);
+      context.apply(pred);
+      boolean bgChanged = context.isBgChanged();
+
+      // Post to the mailbox, collapsing the unpainted frame (if any)
+      FrameData unpainted = mailbox.getAndSet(null);
+      if (unpainted != null)
+      {
+        context.collapse(unpainted);
+        context.recycle(unpainted);
+        collapsedCount++;
+      }
+      FrameData done = released.getAndSet(null);
+      if (done != null)
+        context.recycle(done);
+      this.context = context;
+      mailbox.set(context);
+      return bgChanged;
+    }
+  }
+
+  /**
+   * Takes the newest frame from the mailbox. Invoked by the painting thread.
+   *
+   * @return The frame to paint or <code>null</code> if there is none.
+   */
+  private FrameData takeFrame()
+  {
+    FrameData frame = mailbox.getAndSet(null);
+    if (frame != null)
+    {
+      FrameData done = this.frame;
+      this.frame = frame;
+      if (done != null)
+        released.set(done);
+    }
+    return this.frame;
+  }
+
+  /**
+   * Returns the background image of the current frame or <code>null</code>
+   * if there is none.
+   */
+  public ImageMeta getBackgroundImage()
+  {
+    FrameData context = this.context;
+    return context!=null ? context.getBackgroundImage() : null;
+  }
+
+  /**
+   * Determines if there is a frame to render.
+   */
+  public boolean hasFrame()
+  {
+    return context!=null;
+  }
+
+  /**
+   * Sets a transform which scales the panel to fit into a rectangle of the
+   * specified size and centers it.
+   *
+   * @param transform
+   *          The transform to set.
+   * @param width
+   *          The width of the target rectangle.
+   * @param height
+   *          The height of the target rectangle.
+   */
+  public void updateTransform(Transform transform, int width, int height)
+  {
+    transform.identity();
+    renderScale = 1f;
+
+    FrameData context = takeFrame();
+    if (context!=null)
+    {
+      float scrw = width;
+      float scrh = height;
+      float pnlw = context.getPanelWidth();
+      float pnlh = context.getPanelHeight();
+
+      float scl  = Math.min(scrw/pnlw,scrh/pnlh);
+      float ofsx = (scrw-pnlw*scl)/2;
+      float ofsy = (scrh-pnlh*scl)/2;
+
+      transform.translate(ofsx,ofsy);
+      transform.scale(scl,scl);
+      renderScale = scl;
+    }
+  }
+
+  /**
+   * Paints the current frame.
+   *
+   * @param gc
+   *          The graphics context.
+   * @param transform
+   *          The rendering transform, see
+   *          {@link #updateTransform(Transform, int, int)}.
+   * @param width
+   *          The width of the area to paint on.
+   * @param height
+   *          The height of the area to paint on.
+   * @param background
+   *          The background color.
+   * @param debug
+   *          If <code>true</code>, always repaint everything and mark the
+   *          area that would be redrawn in red.
+   */
+  public void paint(GC gc, Transform transform, int width, int height,
+      Color background, boolean debug)
+  {
+    gc.setTransform(transform);
+    FrameData context = takeFrame();
+    if (context==null)
+      return;
+
+    PanelState state = context.getPanelState();
+
+    // Erase background and draw elements
+    gc.setBackground(background);
+    if (context.getFullRepaint() || debug)
+    {
+      gc.setTransform(null);
+      gc.setClipping((org.eclipse.swt.graphics.Rectangle)null);
+      gc.fillRectangle(0,0,width,height);
+      gc.setTransform(transform);
+      paintElements(gc,context.getElementsToPaint(),state);
+      if (rasterCache!=null)
+        rasterCache.retainAll(context.getElementsToPaint());
+      dirtyRectCount = 1;
+      repaintedPixels = (long)context.getPanelWidth()*context.getPanelHeight();
+    }
+    else
+    {
+      // Clip and redraw each dirty rectangle separately
+      java.awt.Rectangle[] dirtyRects = context.getDirtyRects();
+      for (int i=0; i<dirtyRects.length; i++)
+      {
+        gc.setClipping(SWTUtils.toSwtRectangle(dirtyRects[i]));
+        gc.setBackground(background);
+        gc.fillRectangle(0,0,width,height);
+        paintElements(gc,context.getElementsToPaint(i),state);
+      }
+      dirtyRectCount = dirtyRects.length;
+      repaintedPixels = context.getDirtyRegion().getPixelCount();
+    }
+
+    // -- DEBUG: Show repainted area -->
+    if (debug)
+    {
+      int alpha = gc.getAlpha();
+      gc.setAlpha(64);
+      gc.setBackground(LCARS.getColor(LCARS.CS_REDALERT,LCARS.EC_ELBOLO).getColor());
+      if (context.getFullRepaint())
+      {
+        gc.setClipping(0,0,context.getPanelWidth(),context.getPanelHeight());
+        gc.fillRectangle(0,0,context.getPanelWidth(),context.getPanelHeight());
+      }
+      else
+        for (java.awt.Rectangle r : context.getDirtyRects())
+        {
+          gc.setClipping(SWTUtils.toSwtRectangle(r));
+          gc.fillRectangle(r.x,r.y,r.width,r.height);
+        }
+      gc.setAlpha(alpha);
+    }
+    // <--
+  }
+
+  /**
+   * Paints elements on a graphics context.
+   *
+   * @param gc
+   *          The graphics context.
+   * @param elements
+   *          The elements to paint in z-order.
+   * @param state
+   *          The panel state.
+   */
+  protected void paintElements(GC gc, Iterable<ElementData> elements, PanelState state)
+  {
+    for (ElementData el : elements)
+    {
+      if (el==null)
+        continue;
+      if (el.serialNo == -1)
+        Log.debug(el.toString());
+      try
+      {
+        if (rasterCache==null || !rasterCache.paint(gc, el, state, renderScale))
+          el.render2D(gc, state);
+      }
+      catch (Throwable ex)
+      {
+        Log.err("error drawing elements to the screen", ex);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of rectangles repainted in the last frame. A full
+   * repaint counts as one rectangle.
+   */
+  public int getDirtyRectCount()
+  {
+    return dirtyRectCount;
+  }
+
+  /**
+   * Returns the number of pixels (in panel coordinates) repainted in the last
+   * frame.
+   */
+  public long getRepaintedPixels()
+  {
+    return repaintedPixels;
+  }
+
+  /**
+   * Returns the number of frames which were not painted because a newer frame
+   * arrived first. Their changes were painted with the newer frame.
+   */
+  public long getCollapsedCount()
+  {
+    return collapsedCount;
+  }
+
+  /**
+   * Discards the current frame.
+   */
+  public void clear()
+  {
+    synchronized (updateLock)
+    {
+      context = null;
+      mailbox.set(null);
+      frame = null;
+    }
+  }
+}
+
+// EOF
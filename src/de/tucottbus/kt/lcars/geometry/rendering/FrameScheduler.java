@@ -0,0 +1,186 @@
+package de.tucottbus.kt.lcars.geometry.rendering;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.widgets.Display;
+
+import de.tucottbus.kt.lcars.util.FrameTimes;
+
+/**
+ * Schedules frames on the SWT display thread. A frame is rendered only if one
+ * has been {@linkplain #requestFrame() requested}, all requests arriving until
+ * the frame is rendered are coalesced into it, and consecutive frames are at
+ * least one frame interval apart.
+ *
+ * <p>Requesting a frame never blocks the caller. The scheduler records the
+ * intervals between frames and counts missed deadlines. A deadline is missed
+ * if a frame is not completed within one frame interval after it was due.</p>
+ */
+public class FrameScheduler
+{
+  /**
+   * The default frame interval in milliseconds (25 frames per second).
+   */
+  public static final int DEFAULT_INTERVAL = 40;
+
+  private final Display display;
+  private final Runnable frame;
+  private final long interval;
+  private final AtomicBoolean pending = new AtomicBoolean(false);
+  private final AtomicLong frameCount = new AtomicLong();
+  private final AtomicLong coalescedCount = new AtomicLong();
+  private final AtomicLong missedCount = new AtomicLong();
+  private final FrameTimes intervals = new FrameTimes(250);
+  private final Runnable scheduleRunnable = this::schedule;
+  private final Runnable runRunnable = this::run;
+
+  /**
+   * Time of the first request (nanoseconds) since the last frame.
+   */
+  private volatile long requestTime;
+
+  /**
+   * Start time of the last frame (nanoseconds), only used on the display
+   * thread.
+   */
+  private long lastFrame;
+
+  private volatile boolean disposed;
+
+  /**
+   * Creates a new frame scheduler.
+   *
+   * @param display
+   *          The display to render on.
+   * @param frame
+   *          Renders a frame, invoked on the display thread.
+   * @param interval
+   *          The minimal interval between two frames in milliseconds.
+   */
+  public FrameScheduler(Display display, Runnable frame, int interval)
+  {
+    this.display = display;
+    this.frame = frame;
+    this.interval = interval * 1000000L;
+  }
+
+  /**
+   * Requests a frame. Can be invoked on any thread and never blocks. If a frame
+   * is already pending, the request is coalesced into it.
+   */
+  public void requestFrame()
+  {
+    if (disposed)
+      return;
+    if (!pending.compareAndSet(false, true))
+    {
+      coalescedCount.incrementAndGet();
+      return;
+    }
+    requestTime = System.nanoTime();
+    if (display.getThread() == Thread.currentThread())
+      schedule();
+    else
+      try
+      {
+        display.asyncExec(scheduleRunnable);
+      }
+      catch (SWTException e)
+      {
+        // Display disposed -> no more frames
+        disposed = true;
+      }
+  }
+
+  /**
+   * Determines if a frame has been requested but not yet rendered.
+   */
+  public boolean isPending()
+  {
+    return pending.get();
+  }
+
+  /**
+   * Stops scheduling frames. Pending frames are dropped.
+   */
+  public void dispose()
+  {
+    disposed = true;
+  }
+
+  /**
+   * Schedules the pending frame for the next frame slot. Invoked on the
+   * display thread.
+   */
+  private void schedule()
+  {
+    if (disposed || display.isDisposed())
+      return;
+    long wait = lastFrame + interval - System.nanoTime();
+    if (lastFrame != 0 && wait > 0)
+      display.timerExec((int) ((wait + 999999) / 1000000), runRunnable);
+    else
+      run();
+  }
+
+  /**
+   * Renders the pending frame. Invoked on the display thread.
+   */
+  private void run()
+  {
+    if (disposed)
+      return;
+    long due = Math.max(requestTime, lastFrame + interval);
+
+    // Requests arriving from now on need another frame
+    pending.set(false);
+
+    long start = System.nanoTime();
+    if (lastFrame != 0)
+      intervals.add(start - lastFrame);
+    lastFrame = start;
+    frame.run();
+    frameCount.incrementAndGet();
+    if (System.nanoTime() - due > interval)
+      missedCount.incrementAndGet();
+  }
+
+  // -- Statistics --
+
+  /**
+   * Returns the intervals between the most recent frames.
+   */
+  public FrameTimes getFrameIntervals()
+  {
+    return intervals;
+  }
+
+  /**
+   * Returns the number of frames rendered.
+   */
+  public long getFrameCount()
+  {
+    return frameCount.get();
+  }
+
+  /**
+   * Returns the number of frame requests which were coalesced into a pending
+   * frame.
+   */
+  public long getCoalescedCount()
+  {
+    return coalescedCount.get();
+  }
+
+  /**
+   * Returns the number of frames which missed their deadline.
+   */
+  public long getMissedDeadlines()
+  {
+    return missedCount.get();
+  }
+}
+
+// EOF
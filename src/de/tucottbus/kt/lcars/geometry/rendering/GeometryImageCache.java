@@ -1,17 +1,29 @@
 package de.tucottbus.kt.lcars.geometry.rendering;
 
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.eclipse.swt.graphics.Device;
 import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.widgets.Display;
 
 import de.tucottbus.kt.lcars.geometry.AGeometry;
+import de.tucottbus.kt.lcars.logging.Log;
 
 /**
  * A static cache for images used by {@link AGeometry} with automatic garbage
- * collection.
- * 
+ * collection. The cache is thread-safe and limited by a budget of pixel memory.
+ * If the budget is exceeded, the least recently used images are evicted.
+ * Images not accessed for longer than a timeout are evicted as well.
+ *
+ * <p>Evicted and removed images are {@linkplain Image#dispose() disposed}
+ * asynchronously on the display thread, so an image obtained from the cache
+ * remains valid until the display thread is done with the current event.</p>
+ *
  * @author Matthias Wolff
  */
 public class GeometryImageCache
@@ -20,22 +32,30 @@ public class GeometryImageCache
    * If <code>true<code> print debug messages at stderr.
    */
   private static final boolean DEBUG = false;
-  
+
+  /**
+   * The default budget of pixel memory in bytes.
+   */
+  public static final long DEFAULT_BUDGET = 32L * 1024 * 1024;
+
   /**
-   *  Cache entries: Image with time of last access.
+   *  Cache entries: Image with size and time of last access.
    */
   private static class CacheEntry
   {
     public final Image image;
+    public final long size;
     public long lastAccessTimeMillis;
-    
+
     CacheEntry(Image image)
     {
       this.image = image;
+      Rectangle b = image.getBounds();
+      this.size = 4L * b.width * b.height;
       this.lastAccessTimeMillis = System.currentTimeMillis();
     }
   }
-  
+
   /**
    * Timeout for cache objects in milliseconds. Images will be removed if not
    * accessed for longer than this period.
@@ -43,13 +63,39 @@ public class GeometryImageCache
   private static long TIMEOUT = 10000;
 
   /**
-   * Global cache of images.
+   * Budget of pixel memory in bytes.
+   */
+  private static long budget = DEFAULT_BUDGET;
+
+  /**
+   * Pixel memory of the cached images in bytes.
+   */
+  private static long size;
+
+  /**
+   * Global cache of images in access order (least recently used first).
+   */
+  private static final LinkedHashMap<Object,CacheEntry> cache
+    = new LinkedHashMap<Object,CacheEntry>(16,0.75f,true);
+
+  /**
+   * Images waiting to be disposed on the display thread.
    */
-  private static HashMap<Object,GeometryImageCache.CacheEntry> cache;
-  
+  private static final ConcurrentLinkedQueue<Image> disposeQueue
+    = new ConcurrentLinkedQueue<Image>();
+
+  /**
+   * <code>true</code> while the disposal of queued images is scheduled.
+   */
+  private static final AtomicBoolean disposeScheduled = new AtomicBoolean();
+
+  private static long hits;
+  private static long misses;
+  private static long evictions;
+
   /**
    * Puts a image into the global cache.
-   * 
+   *
    * @param key
    *          The key.
    * @param image
@@ -60,100 +106,237 @@ public class GeometryImageCache
    */
   public static void putImage(Object key, Image image)
   {
-    cleanup();
-    if (cache==null)
-      cache = new HashMap<Object,GeometryImageCache.CacheEntry>();
-    removeImage(key);
-    if (image!=null)
-      cache.put(key,new CacheEntry(image));
+    synchronized (cache)
+    {
+      CacheEntry current = cache.get(key);
+      if (current!=null && current.image==image)
+        return;
+      removeImage(key);
+      if (image!=null)
+      {
+        CacheEntry entry = new CacheEntry(image);
+        cache.put(key,entry);
+        size += entry.size;
+      }
+      cleanup();
+    }
   }
-  
+
   /**
    * Removes a image into the global cache and
    * {@linkplain Image#dispose() disposes} it.
-   * 
+   *
    * @param key
    *          The key.
    * @see #getImage(Object)
    */
   public static void removeImage(Object key)
   {
-    if (cache==null)
-      return;
-    cleanup();
-    GeometryImageCache.CacheEntry entry = cache.get(key); 
-    if (entry==null)
-      return;
-    if (entry.image!=null)
-      entry.image.dispose();
-    cache.remove(key);
+    synchronized (cache)
+    {
+      CacheEntry entry = cache.remove(key);
+      if (entry==null)
+        return;
+      size -= entry.size;
+      disposeLater(entry.image);
+    }
   }
-  
+
   /**
    * Retrieves a image from the global cache.
-   * 
+   *
    * <p><b style="color:red">Important Remark:</b> Caching is <em>not</em> done
    * automatically! The method retrieves only images which were previously
-   * stored by the application invoking {@link #putImage(int, Image)}.</p>
-   * 
-   * @param sliceType
+   * stored by the application invoking {@link #putImage(Object, Image)}.</p>
+   *
+   * @param key
    *          The key.
    * @return The image.
    * @see #putImage(Object, Image)
    */
   public static Image getImage(Object key)
   {
-    cleanup();
-    if (cache==null)
+    synchronized (cache)
     {
-      DebugMsg("MISS (cache does not exist)");
+      cleanup();
+      CacheEntry entry = cache.get(key);
+      if (entry!=null)
+      {
+        hits++;
+        entry.lastAccessTimeMillis = System.currentTimeMillis();
+        return entry.image;
+      }
+      misses++;
+      DebugMsg("MISS ("+cache.size()+" images in cache)");
       return null;
     }
-    GeometryImageCache.CacheEntry entry = cache.get(key);
-    if (entry!=null)
+  }
+
+  /**
+   * Sets the budget of pixel memory. Images are evicted until the budget is
+   * met.
+   *
+   * @param bytes
+   *          The budget in bytes (4 bytes per pixel).
+   */
+  public static void setBudget(long bytes)
+  {
+    synchronized (cache)
+    {
+      budget = bytes;
+      cleanup();
+    }
+  }
+
+  /**
+   * Returns the budget of pixel memory in bytes.
+   */
+  public static long getBudget()
+  {
+    synchronized (cache)
     {
-      entry.lastAccessTimeMillis = System.currentTimeMillis();
-      //DebugMsg("HIT ("+cache.size()+" images in cache)");
-      return entry.image;
+      return budget;
     }
-    else
+  }
+
+  /**
+   * Removes and disposes all images.
+   */
+  public static void clear()
+  {
+    synchronized (cache)
     {
-      DebugMsg("MISS ("+cache.size()+" images in cache)");
-      return null;
+      for (CacheEntry entry : cache.values())
+        disposeLater(entry.image);
+      cache.clear();
+      size = 0;
     }
   }
 
+  // -- Statistics --
+
   /**
-   * Removes outdated images from the cache.
+   * Returns the number of cached images.
    */
-  private static void cleanup()
+  public static int getCount()
   {
-    if (cache==null)
-      return;
+    synchronized (cache)
+    {
+      return cache.size();
+    }
+  }
+
+  /**
+   * Returns the pixel memory of the cached images in bytes.
+   */
+  public static long getSize()
+  {
+    synchronized (cache)
+    {
+      return size;
+    }
+  }
+
+  /**
+   * Returns the number of successful {@link #getImage(Object)} calls.
+   */
+  public static long getHits()
+  {
+    synchronized (cache)
+    {
+      return hits;
+    }
+  }
+
+  /**
+   * Returns the number of unsuccessful {@link #getImage(Object)} calls.
+   */
+  public static long getMisses()
+  {
+    synchronized (cache)
+    {
+      return misses;
+    }
+  }
+
+  /**
+   * Returns the number of images evicted because the budget was exceeded or
+   * they timed out.
+   */
+  public static long getEvictions()
+  {
+    synchronized (cache)
+    {
+      return evictions;
+    }
+  }
+
+  // -- Implementation --
 
+  /**
+   * Evicts least recently used images while the budget is exceeded or the
+   * least recently used image has timed out. The caller must hold the lock on
+   * {@link #cache}.
+   */
+  private static void cleanup()
+  {
     long now = System.currentTimeMillis();
-    for 
-    (
-      Iterator<Map.Entry<Object,GeometryImageCache.CacheEntry>> it = cache.entrySet().iterator(); 
-      it.hasNext(); 
-    ) 
-    {
-      Map.Entry<Object,GeometryImageCache.CacheEntry> entry = it.next();
-      if (entry.getValue()==null)
-        it.remove();
-      if (now-entry.getValue().lastAccessTimeMillis > TIMEOUT)
+    for (Iterator<Map.Entry<Object,CacheEntry>> it = cache.entrySet().iterator(); it.hasNext();)
+    {
+      Map.Entry<Object,CacheEntry> entry = it.next();
+      CacheEntry value = entry.getValue();
+      if (size<=budget && now-value.lastAccessTimeMillis<=TIMEOUT)
+        break;
+      DebugMsg("AUTO-REMOVED key="+entry.getKey());
+      it.remove();
+      size -= value.size;
+      evictions++;
+      disposeLater(value.image);
+    }
+  }
+
+  /**
+   * Disposes an image on the display thread after the current event.
+   *
+   * @param image
+   *          The image.
+   */
+  private static void disposeLater(Image image)
+  {
+    if (image==null)
+      return;
+    Device device = image.getDevice();
+    if (!(device instanceof Display))
+    {
+      image.dispose();
+      return;
+    }
+    disposeQueue.add(image);
+    if (!disposeScheduled.compareAndSet(false,true))
+      return;
+    try
+    {
+      ((Display)device).asyncExec(() ->
       {
-        DebugMsg("AUTO-REMOVED key="+entry.getKey());
-        if (entry.getValue().image!=null)
-          entry.getValue().image.dispose();
-        it.remove();
-      }
-    }      
+        disposeScheduled.set(false);
+        Image img;
+        while ((img = disposeQueue.poll())!=null)
+          if (!img.isDisposed())
+            img.dispose();
+      });
+    }
+    catch (Exception e)
+    {
+      // Display disposed -> images are gone anyway
+      disposeScheduled.set(false);
+      disposeQueue.clear();
+      Log.warn("Cannot dispose cached images: "+e.getMessage());
+    }
   }
-  
+
   /**
    * Prints a debug message.
-   * 
+   *
    * @param msg
    *          The message.
    */
@@ -163,5 +346,5 @@ public class GeometryImageCache
       return;
     System.err.println("GeometryImageCache: "+msg);
   }
-  
+
 }
\ No newline at end of file
@@ -0,0 +1,360 @@
+package de.tucottbus.kt.lcars.geometry.rendering;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.Device;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.RGB;
+import org.eclipse.swt.graphics.Transform;
+
+import de.tucottbus.kt.lcars.logging.Log;
+import de.tucottbus.kt.lcars.swt.FontMeta;
+import de.tucottbus.kt.lcars.swt.TextMetrics;
+
+/**
+ * Pre-rasterized glyphs for drawing text with image copies instead of native
+ * string drawing. For each font, color and scale of the rendering transform,
+ * the {@linkplain TextMetrics#isTabulated(String) tabulated} glyphs (digits
+ * and common punctuation) are rasterized once into an atlas image with alpha
+ * channel. A line of text consisting of tabulated glyphs only is composed
+ * from pixel-exact copies of the atlas cells, any other text is left to
+ * {@link GC#drawString(String, int, int, boolean)}. Mixed lines are not
+ * composed, because the positions of kerned glyphs are not known.
+ *
+ * <p>The atlas is disabled by default, see {@link #setEnabled(boolean)}.</p>
+ *
+ * <p><b>Not thread-safe</b>, the atlas must only be used on the SWT display
+ * thread.</p>
+ */
+public class GlyphAtlas
+{
+  /**
+   * The glyphs in the atlas.
+   */
+  private static final String GLYPHS = TextMetrics.TABLE_CHARS;
+
+  /**
+   * Maximal number of atlas images.
+   */
+  private static final int MAX_ATLASES = 64;
+
+  /**
+   * Padding of the glyph cells in device pixels (antialiasing, overhang).
+   */
+  private static final int PAD = 2;
+
+  private static volatile boolean enabled;
+  private static GlyphAtlas instance;
+
+  private final Device device;
+  private final LinkedHashMap<Key, Atlas> atlases;
+  private final Transform transform;
+  private final float[] elements = new float[6];
+  private long hits;
+  private long misses;
+
+  /**
+   * Enables or disables drawing text from glyph atlases.
+   *
+   * @param enabled
+   *          The new state.
+   */
+  public static void setEnabled(boolean enabled)
+  {
+    GlyphAtlas.enabled = enabled;
+  }
+
+  /**
+   * Determines if drawing text from glyph atlases is enabled.
+   */
+  public static boolean isEnabled()
+  {
+    return enabled;
+  }
+
+  /**
+   * Returns the glyph atlas of a device.
+   *
+   * @param device
+   *          The device.
+   */
+  public static GlyphAtlas getInstance(Device device)
+  {
+    if (instance == null || instance.device != device)
+    {
+      if (instance != null)
+        instance.dispose();
+      instance = new GlyphAtlas(device);
+    }
+    return instance;
+  }
+
+  private GlyphAtlas(Device device)
+  {
+    this.device = device;
+    this.transform = new Transform(device);
+    this.atlases = new LinkedHashMap<Key, Atlas>(16, 0.75f, true)
+    {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Atlas> eldest)
+      {
+        if (size() <= MAX_ATLASES)
+          return false;
+        eldest.getValue().dispose();
+        return true;
+      }
+    };
+  }
+
+  /**
+   * Draws a line of text from the atlas.
+   *
+   * @param gc
+   *          The graphics context, the transform must not rotate or shear.
+   * @param text
+   *          The text.
+   * @param x
+   *          The x-coordinate of the text.
+   * @param y
+   *          The y-coordinate of the top of the text.
+   * @param fontMeta
+   *          The font.
+   * @param color
+   *          The text color.
+   * @return <code>true</code> if the text was drawn, <code>false</code> if
+   *         the caller has to draw it.
+   */
+  public boolean drawString(GC gc, String text, int x, int y,
+      FontMeta fontMeta, RGB color)
+  {
+    if (text.length() == 0 || !TextMetrics.isTabulated(text))
+      return false;
+
+    gc.getTransform(transform);
+    transform.getElements(elements);
+    if (elements[1] != 0 || elements[2] != 0 || elements[0] <= 0
+        || elements[0] != elements[3])
+      return false;
+    float scale = elements[0];
+    float tx = elements[4];
+    float ty = elements[5];
+
+    Atlas atlas = getAtlas(fontMeta, color, scale);
+    if (atlas == null)
+      return false;
+    hits++;
+
+    // Copy glyph cells in device space
+    gc.setTransform(null);
+    try
+    {
+      int dy = Math.round(y * scale + ty);
+      float px = x;
+      for (int i = 0; i < text.length(); i++)
+      {
+        int g = GLYPHS.indexOf(text.charAt(i));
+        int dx = Math.round(px * scale + tx) - PAD;
+        gc.drawImage(atlas.image, atlas.cellX[g], 0, atlas.cellW[g],
+            atlas.height, dx, dy, atlas.cellW[g], atlas.height);
+        px += atlas.advances[g];
+      }
+    }
+    finally
+    {
+      gc.setTransform(transform);
+    }
+    return true;
+  }
+
+  /**
+   * Disposes all atlas images.
+   */
+  public void clear()
+  {
+    for (Atlas atlas : atlases.values())
+      atlas.dispose();
+    atlases.clear();
+  }
+
+  /**
+   * Returns the number of lines drawn from an atlas.
+   */
+  public long getHits()
+  {
+    return hits;
+  }
+
+  /**
+   * Returns the number of atlases rasterized.
+   */
+  public long getMisses()
+  {
+    return misses;
+  }
+
+  // -- Private methods --
+
+  private void dispose()
+  {
+    clear();
+    transform.dispose();
+  }
+
+  /**
+   * Returns an atlas, rasterizes it if necessary.
+   *
+   * @return The atlas or <code>null</code> if it cannot be rasterized.
+   */
+  private Atlas getAtlas(FontMeta fontMeta, RGB color, float scale)
+  {
+    Key key = new Key(fontMeta, color, scale);
+    Atlas atlas = atlases.get(key);
+    if (atlas != null)
+      return atlas.image != null ? atlas : null;
+    misses++;
+    atlas = new Atlas();
+    try
+    {
+      rasterize(atlas, fontMeta, color, scale);
+    }
+    catch (Exception e)
+    {
+      Log.err("Cannot rasterize glyphs of " + fontMeta + ".", e);
+      atlas.dispose();
+    }
+    atlases.put(key, atlas);
+    return atlas.image != null ? atlas : null;
+  }
+
+  /**
+   * Rasterizes the glyphs of a font into an atlas. The glyphs are rendered on
+   * a black and on a white background, the opacity of each pixel is recovered
+   * from the difference.
+   */
+  private void rasterize(Atlas atlas, FontMeta fontMeta, RGB color, float scale)
+  {
+    int n = GLYPHS.length();
+    atlas.advances = new float[n];
+    atlas.cellX = new int[n];
+    atlas.cellW = new int[n];
+    int w = 0;
+    for (int i = 0; i < n; i++)
+    {
+      atlas.advances[i] = TextMetrics.getAdvance(fontMeta, GLYPHS.charAt(i));
+      atlas.cellX[i] = w;
+      atlas.cellW[i] = (int) Math.ceil(atlas.advances[i] * scale) + 2 * PAD;
+      w += atlas.cellW[i];
+    }
+    atlas.height = (int) Math.ceil(
+        TextMetrics.get(fontMeta, "0", SWT.LEFT).height * scale) + PAD;
+
+    ImageData onBlack = render(atlas, fontMeta, color, scale, w,
+        device.getSystemColor(SWT.COLOR_BLACK));
+    ImageData onWhite = render(atlas, fontMeta, color, scale, w,
+        device.getSystemColor(SWT.COLOR_WHITE));
+    atlas.image = new Image(device,
+        ElementRasterCache.composeAlpha(onBlack, onWhite));
+  }
+
+  /**
+   * Renders the glyphs of an atlas on an opaque background.
+   */
+  private ImageData render(Atlas atlas, FontMeta fontMeta, RGB color,
+      float scale, int width, Color background)
+  {
+    Image image = new Image(device, width, atlas.height);
+    GC gc = new GC(image);
+    Transform t = new Transform(device);
+    Color foreground = new Color(device, color);
+    try
+    {
+      gc.setAdvanced(true);
+      gc.setAntialias(SWT.ON);
+      gc.setTextAntialias(SWT.ON);
+      gc.setBackground(background);
+      gc.fillRectangle(0, 0, width, atlas.height);
+      gc.setFont(fontMeta.getFont());
+      gc.setForeground(foreground);
+      for (int i = 0; i < GLYPHS.length(); i++)
+      {
+        t.identity();
+        t.translate(atlas.cellX[i] + PAD, 0);
+        t.scale(scale, scale);
+        gc.setTransform(t);
+        gc.drawString(GLYPHS.substring(i, i + 1), 0, 0, true);
+      }
+      return image.getImageData();
+    }
+    finally
+    {
+      foreground.dispose();
+      t.dispose();
+      gc.dispose();
+      image.dispose();
+    }
+  }
+
+  // -- Nested classes --
+
+  /**
+   * The glyphs of one font, color and scale.
+   */
+  private static class Atlas
+  {
+    Image image;
+    float[] advances;
+    int[] cellX;
+    int[] cellW;
+    int height;
+
+    void dispose()
+    {
+      if (image != null)
+        image.dispose();
+      image = null;
+    }
+  }
+
+  /**
+   * Key of an atlas.
+   */
+  private static final class Key
+  {
+    private final FontMeta fontMeta;
+    private final RGB color;
+    private final float scale;
+
+    Key(FontMeta fontMeta, RGB color, float scale)
+    {
+      this.fontMeta = fontMeta;
+      this.color = color;
+      this.scale = scale;
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return (fontMeta.hashCode() * 31 + color.hashCode()) * 31
+          + Float.floatToIntBits(scale);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      if (!(obj instanceof Key))
+        return false;
+      Key other = (Key) obj;
+      return scale == other.scale && color.equals(other.color)
+          && fontMeta.equals(other.fontMeta);
+    }
+  }
+}
+
+// EOF
@@ -6,19 +6,16 @@ import java.awt.Point;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.PaintEvent;
 import org.eclipse.swt.events.PaintListener;
-import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.graphics.Transform;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Display;
-import org.jfree.experimental.swt.SWTUtils;
 
 import de.tucottbus.kt.lcars.LCARS;
 import de.tucottbus.kt.lcars.PanelData;
-import de.tucottbus.kt.lcars.PanelState;
-import de.tucottbus.kt.lcars.elements.ElementData;
 import de.tucottbus.kt.lcars.logging.Log;
+import de.tucottbus.kt.lcars.swt.ImageMeta;
 
 /**
  * This Class organizes the screen updates to relieve the paint process.
@@ -40,10 +37,9 @@ public class LcarsComposite extends Composite implements PaintListener
   protected boolean selectiveRepaint = false;
 
   /**
-   * Context for the next repaint. Contains all element and the region of the
-   * screen that has to be updated.
+   * Renders the frames. Contains the context for the next repaint.
    */
-  private FrameData context;
+  private final FrameRenderer renderer;
   
   /**
    * The SWT rendering transform.
@@ -66,6 +62,7 @@ public class LcarsComposite extends Composite implements PaintListener
     super(parent, SWT.DOUBLE_BUFFERED|SWT.NO_BACKGROUND);    
     display = parent.getDisplay();
     transform = new Transform(display);
+    renderer = new FrameRenderer(display);
     addPaintListener(this);
   }
 
@@ -74,6 +71,7 @@ public class LcarsComposite extends Composite implements PaintListener
   {
     if (transform!=null && !transform.isDisposed())
       transform.dispose();
+    renderer.dispose();
     super.dispose();
   }
 
@@ -96,6 +94,28 @@ public class LcarsComposite extends Composite implements PaintListener
     this.selectiveRepaint = selectiveRepaint;
   }
 
+  /**
+   * Sets a hint for caching rasterized elements. Unchanged elements will be
+   * painted from offscreen images instead of being rendered again. Must be
+   * called on the SWT display thread.
+   * 
+   * @param rasterCache
+   *          The new raster caching mode.
+   */
+  public void setRasterCacheHint(boolean rasterCache)
+  {
+    renderer.setRasterCacheHint(rasterCache);
+  }
+  
+  /**
+   * Returns the cache of rasterized elements or <code>null</code> if raster
+   * caching is disabled.
+   */
+  public ElementRasterCache getRasterCache()
+  {
+    return renderer.getRasterCache();
+  }
+
   /**
    * Updates the rendering data.
    * 
@@ -106,16 +126,11 @@ public class LcarsComposite extends Composite implements PaintListener
    */
   public void applyUpdate(PanelData data, boolean incremental)
   {
-    FrameData context = FrameData.create(data, incremental, selectiveRepaint);    
-    context.apply(this.context);
-    synchronized (this)
-    {
-      this.context = context;
-    }
-    
-    if (context.isBgChanged())
+    renderer.setSelectiveRenderingHint(selectiveRepaint);
+    if (renderer.applyUpdate(data, incremental))
     {      
-      Image bg = context.isBgChanged() ? context.getBackgroundImage().getImage() : null;
+      ImageMeta bgImage = renderer.getBackgroundImage();
+      Image bg = bgImage!=null ? bgImage.getImage() : null;
       display.asyncExec(() -> {
         setBackgroundImage(bg);
       });
@@ -127,24 +142,8 @@ public class LcarsComposite extends Composite implements PaintListener
    */
   protected Transform updateRenderingTransform()
   {
-    transform.identity();
-    
-    if (context!=null)
-    {
-      Rectangle b = getBounds();
-      float scrw = b.width;
-      float scrh = b.height;
-      float pnlw = context.getPanelWidth();
-      float pnlh = context.getPanelHeight();
-      
-      float scl  = Math.min(scrw/pnlw,scrh/pnlh);
-      float ofsx = (scrw-pnlw*scl)/2;
-      float ofsy = (scrh-pnlh*scl)/2;
-      
-      transform.translate(ofsx,ofsy);
-      transform.scale(scl,scl);
-    }
-    
+    Rectangle b = getBounds();
+    renderer.updateTransform(transform,b.width,b.height);
     return transform;
   }
 
@@ -192,81 +191,38 @@ public class LcarsComposite extends Composite implements PaintListener
   @Override
   public void paintControl(PaintEvent e)
   {
-    GC gc = e.gc;
-
     Transform transform = updateRenderingTransform();
-    gc.setTransform(transform);
-    if (this.context==null)
-      return;
-
-    FrameData context;
-    synchronized (this)
-    {
-      context = this.context.clone();
-    }
-    
-    // Clipping setup
-    final Rectangle dirtyArea = SWTUtils.toSwtRectangle(context.getDirtyArea().getBounds());
-    final Rectangle maxArea = getBounds();
-
-    // Erase background
-    gc.setBackground(getBackground());
-    if (context.getFullRepaint() || DEBUG)
-    {
-      gc.setTransform(null);
-      gc.setClipping((Rectangle)null);
-      gc.fillRectangle(0,0,maxArea.width,maxArea.height);
-      gc.setTransform(transform);
-    }
-    else
-    {
-      gc.setClipping(dirtyArea);
-      gc.fillRectangle(0,0,maxArea.width,maxArea.height);
-    }
-
-    // Draw elements
-    PanelState state = context.getPanelState();
-    for (ElementData el : context.getElementsToPaint())
-    {
-      if (el==null)
-        continue;
-      if (el.serialNo == -1)
-        Log.debug(el.toString());
-      try
-      {
-        el.render2D(gc, state);
-      }
-      catch (Throwable ex)
-      {
-        Log.err("error drawing elements to the screen", ex);
-      }
-    }
-    
-    // -- DEBUG: Show repainted area -->
-    if (DEBUG)
-    {
-      if (context.getFullRepaint())
-        gc.setClipping(0,0,context.getPanelWidth(),context.getPanelHeight());
-      else
-        gc.setClipping(dirtyArea);
-      int alpha = gc.getAlpha();
-      gc.setAlpha(64);
-      gc.setBackground(LCARS.getColor(LCARS.CS_REDALERT,LCARS.EC_ELBOLO).getColor());
-      gc.fillRectangle(0,0,context.getPanelWidth(),context.getPanelHeight());
-      gc.setAlpha(alpha);
-    }
-    // <--
+    Rectangle maxArea = getBounds();
+    renderer.paint(e.gc,transform,maxArea.width,maxArea.height,getBackground(),DEBUG);
+  }
+  
+  /**
+   * Returns the number of rectangles repainted in the last frame. A full
+   * repaint counts as one rectangle.
+   */
+  public int getDirtyRectCount()
+  {
+    return renderer.getDirtyRectCount();
+  }
+  
+  /**
+   * Returns the number of pixels (in panel coordinates) repainted in the last
+   * frame.
+   */
+  public long getRepaintedPixels()
+  {
+    return renderer.getRepaintedPixels();
   }
   
   /**
    * Clears the painter and fills the screen with the default background color (
    * {@value #DEFAULT_BG_COLOR}).
    */
-  public synchronized void clear()
+  public void clear()
   {
     if (LCARS.SCREEN_DEBUG)
       Log.debug("Renderer cleared");
-    context = null;    
+    renderer.clear();
   }
 
 }
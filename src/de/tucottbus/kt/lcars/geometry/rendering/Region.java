@@ -0,0 +1,584 @@
+package de.tucottbus.kt.lcars.geometry.rendering;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * An integer region consisting of axis-aligned rectangles. The region is
+ * stored in the banded representation known from X11 and pixman: a list of
+ * horizontal bands sorted by y, each holding a sorted list of disjoint
+ * x-spans. Vertically adjacent bands with identical spans are coalesced, so
+ * the representation of a region is canonical.
+ *
+ * <p>Boolean operations sweep the bands of both operands once and write into
+ * buffers which are reused by subsequent operations. Unlike
+ * {@link java.awt.geom.Area} no floating point geometry and no per-operation
+ * objects are involved.</p>
+ *
+ * <p><b>Not thread-safe</b>.</p>
+ */
+public class Region implements Cloneable
+{
+  private static final int UNION     = 0;
+  private static final int INTERSECT = 1;
+  private static final int SUBTRACT  = 2;
+
+  /**
+   * Top edges of the bands.
+   */
+  private int[] by0;
+
+  /**
+   * Bottom edges (exclusive) of the bands.
+   */
+  private int[] by1;
+
+  /**
+   * End index of the spans of each band in {@link #xs}. The spans of band
+   * <code>i</code> start at <code>bend[i-1]</code> (or 0).
+   */
+  private int[] bend;
+
+  /**
+   * Span boundaries, x0 (inclusive) and x1 (exclusive) of each span.
+   */
+  private int[] xs;
+
+  /**
+   * Number of bands.
+   */
+  private int nb;
+
+  /**
+   * Buffers for the result of the next operation, swapped with the region's
+   * arrays after each operation.
+   */
+  private int[] tby0, tby1, tbend, txs;
+
+  /**
+   * Single rectangle operand, reused by the rectangle operations.
+   */
+  private Region tmp;
+
+  /**
+   * Creates an empty region.
+   */
+  public Region()
+  {
+    by0 = new int[4];
+    by1 = new int[4];
+    bend = new int[4];
+    xs = new int[8];
+  }
+
+  /**
+   * Creates a region consisting of one rectangle.
+   *
+   * @param r
+   *          The rectangle.
+   */
+  public Region(Rectangle r)
+  {
+    this();
+    set(r.x, r.y, r.width, r.height);
+  }
+
+  // -- Getters --
+
+  /**
+   * Determines if this region is empty.
+   */
+  public boolean isEmpty()
+  {
+    return nb == 0;
+  }
+
+  /**
+   * Returns the bounding box of this region.
+   */
+  public Rectangle getBounds()
+  {
+    if (nb == 0)
+      return new Rectangle();
+    int x0 = Integer.MAX_VALUE;
+    int x1 = Integer.MIN_VALUE;
+    for (int i = 0; i < nb; i++)
+    {
+      x0 = Math.min(x0, xs[spanStart(i)]);
+      x1 = Math.max(x1, xs[bend[i] - 1]);
+    }
+    return new Rectangle(x0, by0[0], x1 - x0, by1[nb - 1] - by0[0]);
+  }
+
+  /**
+   * Returns the number of rectangles of this region.
+   */
+  public int getRectCount()
+  {
+    return nb == 0 ? 0 : bend[nb - 1] / 2;
+  }
+
+  /**
+   * Returns the rectangles of this region, i.e. the spans of all bands. The
+   * rectangles are pairwise disjoint and sorted by y and x.
+   */
+  public Rectangle[] getRects()
+  {
+    Rectangle[] result = new Rectangle[getRectCount()];
+    for (int i = 0, k = 0; i < nb; i++)
+      for (int j = spanStart(i); j < bend[i]; j += 2)
+        result[k++] = new Rectangle(xs[j], by0[i], xs[j + 1] - xs[j],
+            by1[i] - by0[i]);
+    return result;
+  }
+
+  /**
+   * Returns the number of pixels covered by this region.
+   */
+  public long getPixelCount()
+  {
+    long result = 0;
+    for (int i = 0; i < nb; i++)
+    {
+      long w = 0;
+      for (int j = spanStart(i); j < bend[i]; j += 2)
+        w += xs[j + 1] - xs[j];
+      result += w * (by1[i] - by0[i]);
+    }
+    return result;
+  }
+
+  /**
+   * Determines if this region contains a point.
+   */
+  public boolean contains(int x, int y)
+  {
+    for (int i = 0; i < nb && by0[i] <= y; i++)
+      if (y < by1[i])
+      {
+        for (int j = spanStart(i); j < bend[i] && xs[j] <= x; j += 2)
+          if (x < xs[j + 1])
+            return true;
+        return false;
+      }
+    return false;
+  }
+
+  /**
+   * Determines if a rectangle intersects this region.
+   *
+   * @param r
+   *          The rectangle.
+   */
+  public boolean intersects(Rectangle r)
+  {
+    if (r == null || r.isEmpty())
+      return false;
+    int rx1 = r.x + r.width;
+    int ry1 = r.y + r.height;
+    for (int i = 0; i < nb && by0[i] < ry1; i++)
+    {
+      if (by1[i] <= r.y)
+        continue;
+      for (int j = spanStart(i); j < bend[i] && xs[j] < rx1; j += 2)
+        if (xs[j + 1] > r.x)
+          return true;
+    }
+    return false;
+  }
+
+  // -- Operations --
+
+  /**
+   * Makes this region empty.
+   */
+  public void clear()
+  {
+    nb = 0;
+  }
+
+  /**
+   * Replaces this region by a copy of another region.
+   *
+   * @param other
+   *          The other region.
+   */
+  public void set(Region other)
+  {
+    if (other == this)
+      return;
+    nb = 0;
+    int nx = other.nb == 0 ? 0 : other.bend[other.nb - 1];
+    ensureBands(other.nb);
+    ensureSpans(nx);
+    System.arraycopy(other.by0, 0, by0, 0, other.nb);
+    System.arraycopy(other.by1, 0, by1, 0, other.nb);
+    System.arraycopy(other.bend, 0, bend, 0, other.nb);
+    System.arraycopy(other.xs, 0, xs, 0, nx);
+    nb = other.nb;
+  }
+
+  /**
+   * Adds a rectangle to this region.
+   *
+   * @param r
+   *          The rectangle, empty rectangles and <code>null</code> are
+   *          ignored.
+   */
+  public void add(Rectangle r)
+  {
+    if (r != null)
+      add(r.x, r.y, r.width, r.height);
+  }
+
+  /**
+   * Adds a rectangle to this region.
+   */
+  public void add(int x, int y, int width, int height)
+  {
+    if (width <= 0 || height <= 0)
+      return;
+    if (nb == 0)
+    {
+      set(x, y, width, height);
+      return;
+    }
+    op(rect(x, y, width, height), UNION);
+  }
+
+  /**
+   * Adds a number of rectangles to this region. The rectangles are united
+   * pairwise in a balanced tree, which is considerably faster than adding
+   * them one by one if there are many.
+   *
+   * @param rects
+   *          The rectangles, empty rectangles and <code>null</code> are
+   *          ignored.
+   * @param from
+   *          The index of the first rectangle.
+   * @param to
+   *          The index after the last rectangle.
+   */
+  public void add(Rectangle[] rects, int from, int to)
+  {
+    if (to - from <= 4)
+    {
+      for (int i = from; i < to; i++)
+        add(rects[i]);
+      return;
+    }
+    int mid = (from + to) >>> 1;
+    Region other = new Region();
+    other.add(rects, mid, to);
+    add(rects, from, mid);
+    add(other);
+  }
+
+  /**
+   * Adds another region to this region.
+   *
+   * @param other
+   *          The other region, can be <code>null</code>.
+   */
+  public void add(Region other)
+  {
+    if (other == null || other.nb == 0)
+      return;
+    if (nb == 0)
+      set(other);
+    else
+      op(other, UNION);
+  }
+
+  /**
+   * Clips this region to a rectangle.
+   *
+   * @param r
+   *          The clipping rectangle.
+   */
+  public void intersect(Rectangle r)
+  {
+    if (nb == 0)
+      return;
+    if (r == null || r.isEmpty())
+    {
+      nb = 0;
+      return;
+    }
+    op(rect(r.x, r.y, r.width, r.height), INTERSECT);
+  }
+
+  /**
+   * Intersects this region with another region.
+   *
+   * @param other
+   *          The other region.
+   */
+  public void intersect(Region other)
+  {
+    if (nb == 0)
+      return;
+    if (other.nb == 0)
+    {
+      nb = 0;
+      return;
+    }
+    op(other, INTERSECT);
+  }
+
+  /**
+   * Removes a rectangle from this region.
+   *
+   * @param r
+   *          The rectangle, empty rectangles and <code>null</code> are
+   *          ignored.
+   */
+  public void subtract(Rectangle r)
+  {
+    if (nb == 0 || r == null || r.isEmpty())
+      return;
+    op(rect(r.x, r.y, r.width, r.height), SUBTRACT);
+  }
+
+  /**
+   * Removes another region from this region.
+   *
+   * @param other
+   *          The other region.
+   */
+  public void subtract(Region other)
+  {
+    if (nb == 0 || other.nb == 0)
+      return;
+    op(other, SUBTRACT);
+  }
+
+  @Override
+  public Region clone()
+  {
+    Region clone = new Region();
+    clone.set(this);
+    return clone;
+  }
+
+  @Override
+  public boolean equals(Object obj)
+  {
+    if (!(obj instanceof Region))
+      return false;
+    Region other = (Region) obj;
+    if (other.nb != nb)
+      return false;
+    int nx = nb == 0 ? 0 : bend[nb - 1];
+    for (int i = 0; i < nb; i++)
+      if (by0[i] != other.by0[i] || by1[i] != other.by1[i]
+          || bend[i] != other.bend[i])
+        return false;
+    for (int j = 0; j < nx; j++)
+      if (xs[j] != other.xs[j])
+        return false;
+    return true;
+  }
+
+  @Override
+  public int hashCode()
+  {
+    int h = nb;
+    int nx = nb == 0 ? 0 : bend[nb - 1];
+    for (int i = 0; i < nb; i++)
+      h = 31 * (31 * h + by0[i]) + by1[i];
+    for (int j = 0; j < nx; j++)
+      h = 31 * h + xs[j];
+    return h;
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + " bands=" + nb + " rects="
+        + getRectCount() + " pixels=" + getPixelCount();
+  }
+
+  // -- Private methods --
+
+  private int spanStart(int band)
+  {
+    return band == 0 ? 0 : bend[band - 1];
+  }
+
+  /**
+   * Makes this region a single rectangle.
+   */
+  private void set(int x, int y, int width, int height)
+  {
+    if (width <= 0 || height <= 0)
+    {
+      nb = 0;
+      return;
+    }
+    by0[0] = y;
+    by1[0] = y + height;
+    bend[0] = 2;
+    xs[0] = x;
+    xs[1] = x + width;
+    nb = 1;
+  }
+
+  /**
+   * Returns the reused single rectangle operand.
+   */
+  private Region rect(int x, int y, int width, int height)
+  {
+    if (tmp == null)
+      tmp = new Region();
+    tmp.set(x, y, width, height);
+    return tmp;
+  }
+
+  private void ensureBands(int n)
+  {
+    if (by0.length >= n)
+      return;
+    int len = Math.max(n, by0.length * 2);
+    by0 = Arrays.copyOf(by0, len);
+    by1 = Arrays.copyOf(by1, len);
+    bend = Arrays.copyOf(bend, len);
+  }
+
+  private void ensureSpans(int n)
+  {
+    if (xs.length < n)
+      xs = Arrays.copyOf(xs, Math.max(n, xs.length * 2));
+  }
+
+  /**
+   * Replaces this region by the result of a boolean operation with another
+   * region. Sweeps both band lists top to bottom and combines the spans of
+   * each y-interval in which neither operand changes.
+   */
+  private void op(Region b, int kind)
+  {
+    int na = nb;
+    int nbb = b.nb;
+
+    // Output buffers
+    int maxBands = 2 * (na + nbb);
+    int maxSpans = bend[na - 1] + b.bend[nbb - 1];
+    if (tby0 == null || tby0.length < maxBands)
+    {
+      tby0 = new int[maxBands];
+      tby1 = new int[maxBands];
+      tbend = new int[maxBands];
+    }
+    if (txs == null || txs.length < maxSpans)
+      txs = new int[maxSpans];
+    int[] oy0 = tby0, oy1 = tby1, oend = tbend, ox = txs;
+    int on = 0, onx = 0;
+
+    int ia = 0, ib = 0;
+    int y = Math.min(by0[0], b.by0[0]);
+    while (ia < na || ib < nbb)
+    {
+      // Skip bands above y
+      while (ia < na && by1[ia] <= y)
+        ia++;
+      while (ib < nbb && b.by1[ib] <= y)
+        ib++;
+      if (ia >= na && ib >= nbb)
+        break;
+
+      // Operands covering y and the next y where this changes
+      boolean inA = ia < na && by0[ia] <= y;
+      boolean inB = ib < nbb && b.by0[ib] <= y;
+      int yn = Integer.MAX_VALUE;
+      if (ia < na)
+        yn = Math.min(yn, inA ? by1[ia] : by0[ia]);
+      if (ib < nbb)
+        yn = Math.min(yn, inB ? b.by1[ib] : b.by0[ib]);
+      if (!inA && !inB)
+      {
+        y = yn;
+        continue;
+      }
+      if (!inA && kind != UNION || !inB && kind == INTERSECT)
+      {
+        // Result is empty in this interval
+        y = yn;
+        continue;
+      }
+
+      // Combine spans
+      int sa = inA ? spanStart(ia) : 0, ea = inA ? bend[ia] : 0;
+      int sb = inB ? b.spanStart(ib) : 0, eb = inB ? b.bend[ib] : 0;
+      int start = onx;
+      if (ox.length < onx + (ea - sa) + (eb - sb))
+        txs = ox = Arrays.copyOf(ox, Math.max(2 * ox.length,
+            onx + (ea - sa) + (eb - sb)));
+      boolean a = false, c = false, in = false;
+      while (sa < ea || sb < eb)
+      {
+        int xa = sa < ea ? xs[sa] : Integer.MAX_VALUE;
+        int xb = sb < eb ? b.xs[sb] : Integer.MAX_VALUE;
+        int x = Math.min(xa, xb);
+        if (xa == x)
+        {
+          a = !a;
+          sa++;
+        }
+        if (xb == x)
+        {
+          c = !c;
+          sb++;
+        }
+        boolean nin = kind == UNION ? a || c : kind == INTERSECT ? a && c
+            : a && !c;
+        if (nin != in)
+        {
+          ox[onx++] = x;
+          in = nin;
+        }
+      }
+
+      if (onx > start)
+      {
+        // Coalesce with the previous band if adjacent and equal
+        int ps = on == 0 ? 0 : on == 1 ? 0 : oend[on - 2];
+        if (on > 0 && oy1[on - 1] == y && oend[on - 1] - ps == onx - start
+            && rangeEquals(ox, ps, start, onx - start))
+        {
+          oy1[on - 1] = yn;
+          onx = start;
+        }
+        else
+        {
+          oy0[on] = y;
+          oy1[on] = yn;
+          oend[on] = onx;
+          on++;
+        }
+      }
+      y = yn;
+    }
+
+    // Swap buffers
+    tby0 = by0;
+    tby1 = by1;
+    tbend = bend;
+    txs = xs;
+    by0 = oy0;
+    by1 = oy1;
+    bend = oend;
+    xs = ox;
+    nb = on;
+  }
+
+  private static boolean rangeEquals(int[] a, int i, int j, int n)
+  {
+    for (int k = 0; k < n; k++)
+      if (a[i + k] != a[j + k])
+        return false;
+    return true;
+  }
+}
+
+// EOF
@@ -13,6 +13,12 @@ public interface IRmiScreenAdapterRemote extends IRmiAdapterRemote
    * The memory statistics of the screen update data.
    */
   public int getMemStat() throws RemoteException;
+
+  /**
+   * Returns the port of the screen's {@linkplain StreamServer stream server} or <code>0</code> if
+   * the screen does not accept stream connections.
+   */
+  public int getStreamPort() throws RemoteException;
 }
 
 // EOF
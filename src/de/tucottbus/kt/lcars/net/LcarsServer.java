@@ -142,7 +142,9 @@ public class LcarsServer implements IRmiLcarsServerRemote
     {
       String screenUrl = RmiAdapter.makeScreenAdapterUrl(NetUtils.getHostName(),screenHostName,0);
       Log.info("LCARS.server: Connection request from "+screenUrl);
-      RmiPanelAdapter rpa = new RmiPanelAdapter(panelClassName,screenHostName);
+      RmiPanelAdapter rpa = NetUtils.isMirrorMode()
+          ? new MirrorPanelAdapter(panelClassName,screenHostName)
+          : new RmiPanelAdapter(panelClassName,screenHostName);
       rmiPanelAdapters.put(screenHostName+"."+screenID,rpa);
       return true;
     }
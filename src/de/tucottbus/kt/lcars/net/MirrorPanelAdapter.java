@@ -0,0 +1,141 @@
+package de.tucottbus.kt.lcars.net;
+
+import java.awt.event.KeyEvent;
+import java.net.MalformedURLException;
+import java.rmi.RemoteException;
+
+import de.tucottbus.kt.lcars.IPanel;
+import de.tucottbus.kt.lcars.Screen;
+import de.tucottbus.kt.lcars.TouchEvent;
+import de.tucottbus.kt.lcars.logging.Log;
+
+/**
+ * Network adapter serving a {@linkplain PanelMirror mirrored panel} to a remote screen. All mirror
+ * panel adapters requesting the same panel class share one panel instance.
+ */
+public class MirrorPanelAdapter extends RmiPanelAdapter
+{
+  /**
+   * The mirror this adapter is subscribed to, <code>null</code> if the panel could not be
+   * mirrored.
+   */
+  private volatile PanelMirror mirror;
+
+  // -- Constructors --
+
+  /**
+   * Creates a new mirror panel adapter for a remote {@linkplain Screen LCARS screen}.
+   *
+   * @param className
+   *          The class name of the panel to mirror.
+   * @param screenHostName
+   *          The name of the host serving the peer {@linkplain IPanel LCARS panel} to connect this
+   *          adapter to.
+   * @throws RemoteException
+   *           If the RMI registry could not be contacted.
+   * @throws MalformedURLException
+   *           If <code>rmiSelfName</code> is not an appropriately formatted URL.
+   */
+  public MirrorPanelAdapter(String className, String screenHostName)
+  throws RemoteException, MalformedURLException, ClassNotFoundException
+  {
+    super(className,screenHostName);
+  }
+
+  // -- Operations --
+
+  @Override
+  public void shutDown()
+  {
+    PanelMirror mirror = this.mirror;
+    if (mirror!=null)
+      mirror.unsubscribe(this);
+    super.shutDown();
+  }
+
+  // -- Implementation of abstract methods --
+
+  @Override
+  public void updatePeer()
+  {
+    PanelMirror mirror = this.mirror;
+    if (mirror==null)
+    {
+      super.updatePeer();
+      return;
+    }
+    updateStreamScreen();
+    mirror.setScreen(this,getPeer()!=null ? getScreen() : null);
+  }
+
+  // -- Implementation of the IRmiPanelAdapteRemote interface --
+
+  @Override
+  public void setPanel(String className) throws ClassNotFoundException
+  {
+    PanelMirror mirror = this.mirror;
+    if (mirror!=null)
+    {
+      mirror.unsubscribe(this);
+      this.mirror = null;
+    }
+    try
+    {
+      mirror = PanelMirror.subscribe(className,this);
+    }
+    catch (ClassNotFoundException e)
+    {
+      Log.warn("Panel "+className+" cannot be mirrored.");
+      super.setPanel(className);
+      return;
+    }
+    this.mirror = mirror;
+    panel = mirror.getMirroredPanel();
+    if (getPeer()!=null)
+      mirror.setScreen(this,getScreen());
+  }
+
+  // -- Panel wrapper methods / Implementation of the IPanel interface --
+
+  @Override
+  public void start()
+  {
+    PanelMirror mirror = this.mirror;
+    if (mirror!=null)
+      mirror.start(this);
+    else
+      super.start();
+  }
+
+  @Override
+  public void stop()
+  {
+    PanelMirror mirror = this.mirror;
+    if (mirror!=null)
+      mirror.stop(this);
+    else
+      super.stop();
+  }
+
+  @Override
+  public void processTouchEvents(TouchEvent[] events)
+  {
+    PanelMirror mirror = this.mirror;
+    if (mirror!=null)
+      mirror.processTouchEvents(this,events);
+    else
+      super.processTouchEvents(events);
+  }
+
+  @Override
+  public void processKeyEvent(KeyEvent event)
+  {
+    PanelMirror mirror = this.mirror;
+    if (mirror!=null)
+      mirror.processKeyEvent(this,event);
+    else
+      super.processKeyEvent(event);
+  }
+}
+
+// EOF
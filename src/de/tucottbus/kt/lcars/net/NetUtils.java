@@ -160,6 +160,44 @@ public class NetUtils
     return 1099;
   }
 
+  /**
+   * Determines if screen updates and input events are sent over a {@linkplain StreamConnection
+   * stream connection} instead of RMI (command line option <code>--transport=stream</code>). RMI
+   * is the default.
+   */
+  public static boolean isStreamTransport()
+  {
+    return "stream".equals(LCARS.getArg("--transport="));
+  }
+
+  /**
+   * Determines if screens requesting the same panel class share one {@linkplain PanelMirror
+   * mirrored} panel instance (command line option <code>--mirror</code>).
+   */
+  public static boolean isMirrorMode()
+  {
+    return LCARS.getArg("--mirror")!=null;
+  }
+
+  /**
+   * Returns the capacity of the send queue of {@linkplain StreamConnection stream connections}
+   * (command line option <code>--sendqueue=n</code>).
+   */
+  public static int getSendQueueSize()
+  {
+    String arg = LCARS.getArg("--sendqueue=");
+    if (arg!=null)
+      try
+      {
+        return Math.max(1,Integer.parseInt(arg));
+      }
+      catch (NumberFormatException e)
+      {
+        Log.warn("Invalid send queue size \""+arg+"\"");
+      }
+    return StreamConnection.DEFAULT_QUEUE_SIZE;
+  }
+
   /**
    * Returns the LCARS RMI name prefix.
    */
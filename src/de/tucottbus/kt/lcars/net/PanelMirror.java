@@ -0,0 +1,559 @@
+package de.tucottbus.kt.lcars.net;
+
+import java.awt.event.KeyEvent;
+import java.awt.geom.Area;
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import de.tucottbus.kt.lcars.IPanel;
+import de.tucottbus.kt.lcars.IScreen;
+import de.tucottbus.kt.lcars.Panel;
+import de.tucottbus.kt.lcars.PanelData;
+import de.tucottbus.kt.lcars.TouchEvent;
+import de.tucottbus.kt.lcars.feedback.UserFeedback;
+import de.tucottbus.kt.lcars.logging.Log;
+import de.tucottbus.kt.lcars.util.DispatchExecutor;
+import de.tucottbus.kt.lcars.util.LoadStatistics;
+
+/**
+ * One {@linkplain Panel panel} shown on several remote screens. The mirror is
+ * the panel's only {@linkplain IScreen screen} and broadcasts each update to
+ * all subscribed screens. Updates to screens connected through the {@linkplain
+ * StreamConnection stream transport} are encoded once for all of them.
+ * Screens connected through RMI are updated on a serial queue per screen, so
+ * a slow screen does not delay the others.
+ *
+ * <ul>
+ * <li>The mirror keeps the last full update and all updates since. A screen
+ * which subscribes late or misses an update is resynchronized by sending it
+ * these updates again. Other screens are not affected. An RMI screen misses
+ * all updates arriving while its previous update is still in progress.</li>
+ * <li>Touch and key events of all screens are passed to the panel. While a
+ * screen is being touched, new touches on other screens are discarded, so
+ * touch chains of different screens do not interleave.</li>
+ * <li>User feedback, panel changes and exit requests go to the screen which
+ * sent the last input event.</li>
+ * </ul>
+ *
+ * <p>Mirrors are shared per panel class and served by {@link
+ * MirrorPanelAdapter}s, see command line option <code>--mirror</code>.</p>
+ */
+public class PanelMirror implements IScreen
+{
+  /**
+   * The maximal number of {@linkplain #history updates kept for
+   * resynchronization}. The panel sends a full update at least once per
+   * second.
+   */
+  private static final int MAX_HISTORY = 64;
+
+  /**
+   * The mirrors by panel class name.
+   */
+  private static final HashMap<String,PanelMirror> mirrors =
+      new HashMap<String,PanelMirror>();
+
+  private final String className;
+  private final Panel panel;
+  private final CopyOnWriteArrayList<Subscriber> subscribers =
+      new CopyOnWriteArrayList<Subscriber>();
+  private final Object input = new Object();
+
+  /**
+   * The last full update and all updates since, empty if there was no full
+   * update yet or too many updates since. Accessed by the panel's update
+   * thread only.
+   */
+  private final ArrayList<Frame> history = new ArrayList<Frame>();
+  private Subscriber inputOwner;
+  private volatile Subscriber inputSource;
+
+  // -- Constructors --
+
+  private PanelMirror(String className) throws ClassNotFoundException
+  {
+    this.className = className;
+    this.panel = Panel.createPanel(className, this);
+    if (this.panel == null)
+      throw new ClassNotFoundException(className);
+  }
+
+  // -- Subscriptions --
+
+  /**
+   * Subscribes a panel adapter to the mirror of a panel class. The mirror and
+   * its panel are created by the first subscription.
+   *
+   * @param className
+   *          The panel class name.
+   * @param adapter
+   *          The panel adapter serving the screen.
+   * @return The mirror.
+   * @throws ClassNotFoundException
+   *           If the panel cannot be created.
+   */
+  public static PanelMirror subscribe(String className, RmiPanelAdapter adapter)
+  throws ClassNotFoundException
+  {
+    synchronized (mirrors)
+    {
+      PanelMirror mirror = mirrors.get(className);
+      if (mirror == null)
+      {
+        mirror = new PanelMirror(className);
+        mirrors.put(className, mirror);
+        Log.info("Mirroring panel " + className);
+      }
+      mirror.subscribers.add(new Subscriber(adapter));
+      return mirror;
+    }
+  }
+
+  /**
+   * Removes a panel adapter from this mirror. The panel is stopped and the
+   * mirror is discarded with the last subscription.
+   *
+   * @param adapter
+   *          The panel adapter.
+   */
+  public void unsubscribe(RmiPanelAdapter adapter)
+  {
+    synchronized (mirrors)
+    {
+      Subscriber subscriber = getSubscriber(adapter);
+      if (subscriber == null)
+        return;
+      subscribers.remove(subscriber);
+      synchronized (input)
+      {
+        if (inputOwner == subscriber)
+          inputOwner = null;
+        if (inputSource == subscriber)
+          inputSource = null;
+      }
+      if (subscribers.isEmpty())
+      {
+        mirrors.remove(className);
+        Log.info("Panel " + className + " no longer mirrored");
+      }
+      stopIfIdle();
+    }
+  }
+
+  /**
+   * Sets the screen of a subscription. The screen receives updates starting
+   * with the next full update.
+   *
+   * @param adapter
+   *          The panel adapter.
+   * @param screen
+   *          The screen, <code>null</code> to suspend updates. Touches in
+   *          progress on the previous screen are abandoned.
+   */
+  public void setScreen(RmiPanelAdapter adapter, IScreen screen)
+  {
+    Subscriber subscriber = getSubscriber(adapter);
+    if (subscriber == null || subscriber.screen == screen)
+      return;
+    subscriber.keyframePending = true;
+    subscriber.screen = screen;
+    synchronized (input)
+    {
+      if (inputOwner == subscriber)
+        inputOwner = null;
+      subscriber.touches = 0;
+      subscriber.discarding = false;
+    }
+  }
+
+  /**
+   * Starts the panel on behalf of a subscription.
+   *
+   * @param adapter
+   *          The panel adapter.
+   */
+  public void start(RmiPanelAdapter adapter)
+  {
+    synchronized (mirrors)
+    {
+      Subscriber subscriber = getSubscriber(adapter);
+      if (subscriber == null)
+        return;
+      subscriber.started = true;
+      if (!panel.isRunning())
+      {
+        panel.start();
+        panel.requestFullUpdate();
+      }
+    }
+  }
+
+  /**
+   * Stops the panel on behalf of a subscription. The panel keeps running
+   * while other subscriptions have started it.
+   *
+   * @param adapter
+   *          The panel adapter.
+   */
+  public void stop(RmiPanelAdapter adapter)
+  {
+    synchronized (mirrors)
+    {
+      Subscriber subscriber = getSubscriber(adapter);
+      if (subscriber == null)
+        return;
+      subscriber.started = false;
+      stopIfIdle();
+    }
+  }
+
+  /**
+   * Returns the mirrored panel.
+   */
+  public Panel getMirroredPanel()
+  {
+    return panel;
+  }
+
+  /**
+   * Returns the number of subscriptions.
+   */
+  public int getSubscriberCount()
+  {
+    return subscribers.size();
+  }
+
+  // -- Input --
+
+  /**
+   * Passes touch events of a subscribed screen to the panel.
+   *
+   * @param adapter
+   *          The panel adapter serving the screen.
+   * @param events
+   *          The touch events.
+   */
+  public void processTouchEvents(RmiPanelAdapter adapter, TouchEvent[] events)
+  {
+    Subscriber subscriber = getSubscriber(adapter);
+    if (subscriber == null)
+      return;
+    synchronized (input)
+    {
+      if (subscriber.touches == 0 && inputOwner != null
+          && inputOwner != subscriber)
+        subscriber.discarding = true;
+      for (TouchEvent event : events)
+        if (event.type == TouchEvent.DOWN)
+          subscriber.touches++;
+        else if (event.type == TouchEvent.UP && subscriber.touches > 0)
+          subscriber.touches--;
+      boolean discard = subscriber.discarding;
+      if (subscriber.touches == 0)
+        subscriber.discarding = false;
+      if (discard)
+        return;
+      inputOwner = subscriber.touches > 0 ? subscriber : null;
+      inputSource = subscriber;
+      panel.processTouchEvents(events);
+    }
+  }
+
+  /**
+   * Passes a key event of a subscribed screen to the panel.
+   *
+   * @param adapter
+   *          The panel adapter serving the screen.
+   * @param event
+   *          The key event.
+   */
+  public void processKeyEvent(RmiPanelAdapter adapter, KeyEvent event)
+  {
+    Subscriber subscriber = getSubscriber(adapter);
+    if (subscriber == null)
+      return;
+    synchronized (input)
+    {
+      inputSource = subscriber;
+      panel.processKeyEvent(event);
+    }
+  }
+
+  // -- Implementation of the IScreen interface --
+
+  @Override
+  public void update(PanelData data, boolean incremental)
+  throws RemoteException
+  {
+    boolean keyframe = !incremental && !data.sparse;
+    Frame current = new Frame(data, incremental);
+    if (keyframe)
+      history.clear();
+    if (keyframe || !history.isEmpty())
+      history.add(current);
+    if (history.size() > MAX_HISTORY)
+      history.clear();
+    List<Frame> single = Collections.singletonList(current);
+    List<Frame> resync = null;
+
+    for (Subscriber subscriber : subscribers)
+    {
+      IScreen screen = subscriber.screen;
+      if (screen == null)
+        continue;
+      List<Frame> frames = single;
+      if (subscriber.keyframePending && !keyframe)
+      {
+        if (history.isEmpty())
+          continue; // Wait for the next full update
+        if (resync == null)
+          resync = new ArrayList<Frame>(history);
+        frames = resync;
+      }
+      if (screen instanceof StreamScreenProxy)
+        updateStreamScreen(subscriber, (StreamScreenProxy)screen, frames);
+      else
+        updateRmiScreen(subscriber, screen, frames);
+    }
+  }
+
+  @Override
+  public Area getArea() throws RemoteException
+  {
+    return getScreen(null).getArea();
+  }
+
+  @Override
+  public void setArea(Area area) throws RemoteException
+  {
+    for (Subscriber subscriber : subscribers)
+      if (subscriber.screen != null)
+        subscriber.screen.setArea(area);
+  }
+
+  @Override
+  public String getHostName() throws RemoteException
+  {
+    return getScreen(inputSource).getHostName();
+  }
+
+  @Override
+  public void setPanel(String className)
+  throws ClassNotFoundException, RemoteException
+  {
+    getScreen(inputSource).setPanel(className);
+  }
+
+  @Override
+  public IPanel getPanel() throws RemoteException
+  {
+    return getScreen(inputSource).getPanel();
+  }
+
+  @Override
+  public void userFeedback(UserFeedback.Type type) throws RemoteException
+  {
+    Subscriber subscriber = inputSource;
+    if (subscriber != null && subscriber.screen != null)
+      subscriber.screen.userFeedback(type);
+  }
+
+  @Override
+  public LoadStatistics getLoadStatistics() throws RemoteException
+  {
+    return getScreen(null).getLoadStatistics();
+  }
+
+  @Override
+  public void exit() throws RemoteException
+  {
+    getScreen(inputSource).exit();
+  }
+
+  @Override
+  public boolean isDisposed()
+  {
+    return subscribers.isEmpty();
+  }
+
+  @Override
+  public void setPanelId(int panelId) throws RemoteException
+  {
+    for (Subscriber subscriber : subscribers)
+      if (subscriber.screen != null)
+        subscriber.screen.setPanelId(panelId);
+  }
+
+  // -- Implementation --
+
+  private Subscriber getSubscriber(RmiPanelAdapter adapter)
+  {
+    for (Subscriber subscriber : subscribers)
+      if (subscriber.adapter == adapter)
+        return subscriber;
+    return null;
+  }
+
+  /**
+   * Returns the screen of a subscription or, if that has none, of the first
+   * subscription with a screen.
+   *
+   * @throws RemoteException
+   *           If no screen is subscribed.
+   */
+  private IScreen getScreen(Subscriber subscriber) throws RemoteException
+  {
+    if (subscriber != null && subscriber.screen != null)
+      return subscriber.screen;
+    for (Subscriber other : subscribers)
+      if (other.screen != null)
+        return other.screen;
+    throw new RemoteException("No screen mirroring " + className);
+  }
+
+  /**
+   * Sends updates to a screen connected through RMI on the subscription's
+   * serial queue. If the previous update is still in progress, the updates
+   * are missed.
+   */
+  private void updateRmiScreen(Subscriber subscriber, IScreen screen,
+      List<Frame> frames)
+  {
+    if (!subscriber.updating.compareAndSet(false, true))
+    {
+      subscriber.keyframePending = true;
+      return;
+    }
+    subscriber.keyframePending = false;
+    subscriber.updater.execute(() ->
+    {
+      try
+      {
+        for (Frame frame : frames)
+          screen.update(frame.data, frame.incremental);
+      }
+      catch (RemoteException e)
+      {
+        notUpdated(subscriber, e);
+      }
+      finally
+      {
+        subscriber.updating.set(false);
+      }
+    });
+  }
+
+  /**
+   * Queues updates for a screen connected through the stream transport. A
+   * resynchronization is only attempted if the send queue can take all
+   * updates.
+   */
+  private void updateStreamScreen(Subscriber subscriber,
+      StreamScreenProxy screen, List<Frame> frames)
+  {
+    if (frames.size() > 1 && !screen.canQueue(frames.size()))
+      return;
+    try
+    {
+      for (Frame frame : frames)
+        screen.update(frame.encode());
+      subscriber.keyframePending = false;
+    }
+    catch (RemoteException e)
+    {
+      notUpdated(subscriber, e);
+    }
+  }
+
+  /**
+   * Marks a subscription as missing an update.
+   */
+  private static void notUpdated(Subscriber subscriber, RemoteException e)
+  {
+    if (!subscriber.keyframePending)
+      Log.warn("Mirrored screen at " + subscriber.adapter.getPeerHostName()
+          + " not updated: " + e.getMessage());
+    subscriber.keyframePending = true;
+  }
+
+  private void stopIfIdle()
+  {
+    for (Subscriber subscriber : subscribers)
+      if (subscriber.started)
+        return;
+    if (panel.isRunning())
+      panel.stop();
+  }
+
+  private static StreamConnection.Message encode(PanelData data,
+      boolean incremental) throws RemoteException
+  {
+    try
+    {
+      return StreamConnection.encode(incremental
+          ? StreamConnection.INCREMENTAL_FRAME : StreamConnection.FRAME, data);
+    }
+    catch (IOException e)
+    {
+      throw new RemoteException("Cannot encode screen update", e);
+    }
+  }
+
+  // -- Nested classes --
+
+  /**
+   * An update received from the panel.
+   */
+  private static final class Frame
+  {
+    final PanelData data;
+    final boolean incremental;
+    private StreamConnection.Message message;
+
+    Frame(PanelData data, boolean incremental)
+    {
+      this.data = data;
+      this.incremental = incremental;
+    }
+
+    /**
+     * Returns the update encoded for the stream transport. The update is
+     * encoded once for all screens.
+     */
+    StreamConnection.Message encode() throws RemoteException
+    {
+      if (message == null)
+        message = PanelMirror.encode(data, incremental);
+      return message;
+    }
+  }
+
+  /**
+   * A screen subscribed to a mirror.
+   */
+  private static final class Subscriber
+  {
+    final RmiPanelAdapter adapter;
+    volatile IScreen screen;
+    volatile boolean keyframePending = true;
+    final Executor updater = DispatchExecutor.newSerialQueue();
+    final AtomicBoolean updating = new AtomicBoolean();
+    boolean started;
+    int touches;
+    boolean discarding;
+
+    Subscriber(RmiPanelAdapter adapter)
+    {
+      this.adapter = adapter;
+    }
+  }
+}
+
+// EOF
@@ -26,6 +26,17 @@ implements IPanel, IRmiPanelAdapterRemote
    */
   protected Panel panel;
 
+  /**
+   * The stream proxy of the peer screen, or <code>null</code> if screen updates are sent through
+   * RMI.
+   */
+  private StreamScreenProxy streamScreen;
+
+  /**
+   * The peer {@link #streamScreen} was created for.
+   */
+  private IRmiAdapterRemote streamPeer;
+
   // -- Constructors --
   
   /**
@@ -79,14 +90,66 @@ implements IPanel, IRmiPanelAdapterRemote
     return panel.getLoadStatistics();
   }
   
+  /**
+   * Returns the screen the wrapped panel is sending its updates to. This is the peer or, with the
+   * stream transport, a {@linkplain StreamScreenProxy stream proxy} of the peer.
+   */
+  protected IScreen getScreen()
+  {
+    if (streamScreen!=null) return streamScreen;
+    return (IScreen)getPeer();
+  }
+
+  /**
+   * Creates or discards the stream proxy of the peer screen when the peer has changed.
+   */
+  protected void updateStreamScreen()
+  {
+    IRmiAdapterRemote peer = getPeer();
+    if (!NetUtils.isStreamTransport() || peer==streamPeer)
+      return;
+    if (streamScreen!=null)
+    {
+      streamScreen.close();
+      streamScreen = null;
+    }
+    streamPeer = peer;
+    if (peer==null)
+      return;
+    try
+    {
+      int port = ((IRmiScreenAdapterRemote)peer).getStreamPort();
+      if (port>0)
+        streamScreen = new StreamScreenProxy((IScreen)peer,getPeerHostName(),port,
+            NetUtils.getSendQueueSize(),this);
+      else
+        Log.warn("Screen at "+getPeerHostName()+" accepts no stream connections, using RMI.");
+    }
+    catch (RemoteException e)
+    {
+      Log.err("Cannot get stream port of screen at "+getPeerHostName()+".",e);
+    }
+  }
+
+  // -- Operations --
+
+  @Override
+  public void shutDown()
+  {
+    if (streamScreen!=null)
+      streamScreen.close();
+    super.shutDown();
+  }
+
   // -- Implementation of abstract methods --
   
   @Override
   public void updatePeer()
   {
+    updateStreamScreen();
     try
     {
-      panel.setScreen((IScreen)getPeer());
+      panel.setScreen(getScreen());
     } catch (NullPointerException e)
     {
       Log.err("Cannot set screen.", e); 
@@ -118,10 +181,10 @@ implements IPanel, IRmiPanelAdapterRemote
   public void setPanel(String className) throws ClassNotFoundException
   {
     Log.info("Setting panel "+className+" ...");
-    panel = Panel.createPanel(className,(IScreen)getPeer());
+    panel = Panel.createPanel(className,getScreen());
     if (panel==null)
     {
-      IScreen src = (IScreen)getPeer();
+      IScreen src = getScreen();
       panel = Panel.createPanel(null,src);
       try
       {
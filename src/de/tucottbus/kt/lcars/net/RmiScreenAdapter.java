@@ -3,7 +3,11 @@ package de.tucottbus.kt.lcars.net;
 import java.awt.Dimension;
 import java.awt.Rectangle;
 import java.awt.geom.Area;
+import java.io.IOException;
+import java.net.InetAddress;
 import java.net.MalformedURLException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
 import java.rmi.RemoteException;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -44,6 +48,17 @@ public class RmiScreenAdapter extends RmiAdapter implements IScreen, IRmiScreenA
    * The {@linkplain Screen LCARS screen} wrapped by this network adapter.
    */
   private Screen screen;
+
+  /**
+   * The server accepting {@linkplain StreamConnection stream connections} from the panel, or
+   * <code>null</code> if screen updates are received through RMI only.
+   */
+  private StreamServer streamServer;
+
+  /**
+   * The current stream connection from the panel, can be <code>null</code>.
+   */
+  private volatile StreamConnection streamConnection;
   
   // -- Constructors --
 
@@ -65,6 +80,15 @@ public class RmiScreenAdapter extends RmiAdapter implements IScreen, IRmiScreenA
   {
     super(panelHostName);
     this.screen = screen;
+    if (NetUtils.isStreamTransport())
+      try
+      {
+        streamServer = new StreamServer(0,NetUtils.getSendQueueSize(),this::acceptStream);
+      }
+      catch (IOException e)
+      {
+        Log.err("Cannot start stream server, receiving screen updates through RMI.",e);
+      }
     try
     {
       screen.setPanel(Panel.createPanel(ClientPanel.class.getName(),screen));
@@ -75,6 +99,82 @@ public class RmiScreenAdapter extends RmiAdapter implements IScreen, IRmiScreenA
     }
   }
   
+  // -- Stream transport --
+
+  /**
+   * Accepts a stream connection from the panel. Connections from other hosts than the panel host
+   * are rejected. A previous connection is closed and its last message processed before the new
+   * connection delivers messages.
+   * 
+   * @param connection
+   *          The new connection.
+   */
+  private void acceptStream(StreamConnection connection)
+  {
+    if (!isPeerAddress(connection.getInetAddress()))
+    {
+      Log.warn("Stream connection from "+connection.getRemoteAddress()+" rejected, expected "
+          +getPeerHostName());
+      connection.close();
+      return;
+    }
+    StreamConnection previous = streamConnection;
+    streamConnection = connection;
+    if (previous!=null)
+    {
+      previous.close();
+      try
+      {
+        previous.join(1000);
+      }
+      catch (InterruptedException e)
+      {
+        // ignored
+      }
+    }
+    connection.start((type,message,size)->
+    {
+      if (streamConnection!=connection)
+        return; // Stale message of a replaced connection
+      switch (type)
+      {
+      case StreamConnection.FRAME:
+      case StreamConnection.INCREMENTAL_FRAME:
+        addMemStat(size);
+        screen.update((PanelData)message,type==StreamConnection.INCREMENTAL_FRAME);
+        break;
+      default:
+        Log.warn("Unexpected stream message of type "+type);
+      }
+    });
+  }
+
+  /**
+   * Determines if an address is one of the addresses of the panel host.
+   */
+  private boolean isPeerAddress(InetAddress address)
+  {
+    try
+    {
+      return Arrays.asList(InetAddress.getAllByName(getPeerHostName())).contains(address);
+    }
+    catch (UnknownHostException e)
+    {
+      return false;
+    }
+  }
+
+  @Override
+  public void shutDown()
+  {
+    if (streamServer!=null)
+      streamServer.close();
+    StreamConnection connection = streamConnection;
+    if (connection!=null)
+      connection.close();
+    super.shutDown();
+  }
+
   // -- Implementation of abstract methods --
   
   @Override
@@ -136,6 +236,22 @@ public class RmiScreenAdapter extends RmiAdapter implements IScreen, IRmiScreenA
     for (Integer mem : memStat) sum += mem;
     return sum/memStat.size();
   }
+
+  @Override
+  public int getStreamPort()
+  {
+    return streamServer!=null ? streamServer.getPort() : 0;
+  }
+
+  /**
+   * Adds the size of a screen update to the memory statistics.
+   */
+  private void addMemStat(int size)
+  {
+    if (memStat==null) memStat = new Vector<Integer>(11);
+    memStat.add(new Integer(size));
+    if (memStat.size()>10) memStat.remove(0);
+  }
   
   // -- Screen wrapper methods / Implementation of the IScreen interface --
 
@@ -179,16 +295,17 @@ public class RmiScreenAdapter extends RmiAdapter implements IScreen, IRmiScreenA
   @Override
   public IPanel getPanel()
   {
-    return (IPanel)getPeer();
+    IPanel panel = (IPanel)getPeer();
+    if (panel!=null && streamServer!=null)
+      return new StreamPanelProxy(panel,()->streamConnection);
+    return panel;
   }
 
   @Override
   public void update(PanelData data, boolean incremental)
   {
     // Do network load statistics 
-    if (memStat==null) memStat = new Vector<Integer>(11);
-    memStat.add(new Integer(ObjectSize.getSerializedSize(data)));
-    if (memStat.size()>10) memStat.remove(0);
+    addMemStat(ObjectSize.getSerializedSize(data));
 
     // Do screen update
     screen.update(data,incremental);
@@ -0,0 +1,555 @@
+package de.tucottbus.kt.lcars.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.tucottbus.kt.lcars.logging.Log;
+
+/**
+ * A persistent, bidirectional stream of messages over one TCP socket. This is
+ * the transport of the {@linkplain StreamScreenProxy stream screen proxy}, an
+ * alternative to sending every screen update as a synchronous RMI call.
+ *
+ * <p>Each message is a serialized object prefixed by its length and a type
+ * byte. Messages are not acknowledged: {@link #send(int, Object)} only puts
+ * the message into a bounded send queue and returns, a writer thread writes
+ * the queued messages to the socket. Received messages are passed to a
+ * {@linkplain Receiver receiver} on a reader thread in the order they were
+ * sent. Nagle's algorithm is disabled on the socket.</p>
+ */
+public final class StreamConnection
+{
+  /**
+   * Message type of a full screen update (a {@link
+   * de.tucottbus.kt.lcars.PanelData PanelData} object).
+   */
+  public static final int FRAME = 1;
+
+  /**
+   * Message type of an incremental screen update (a {@link
+   * de.tucottbus.kt.lcars.PanelData PanelData} object).
+   */
+  public static final int INCREMENTAL_FRAME = 2;
+
+  /**
+   * Message type of an array of {@linkplain de.tucottbus.kt.lcars.TouchEvent
+   * touch events}.
+   */
+  public static final int TOUCH_EVENTS = 3;
+
+  /**
+   * Message type of a {@link java.awt.event.KeyEvent KeyEvent}.
+   */
+  public static final int KEY_EVENT = 4;
+
+  /**
+   * The default capacity of the send queue.
+   */
+  public static final int DEFAULT_QUEUE_SIZE = 8;
+
+  /**
+   * The maximal length of a received message in bytes.
+   */
+  public static final int MAX_MESSAGE_SIZE = 64 << 20;
+
+  /**
+   * Length of the message header (length and type).
+   */
+  private static final int HEADER_SIZE = 5;
+
+  private final SocketChannel channel;
+  private final ArrayBlockingQueue<ByteBuffer> sendQueue;
+  private final AtomicLong sentMessages = new AtomicLong();
+  private final AtomicLong sentBytes = new AtomicLong();
+  private final AtomicLong rejectedMessages = new AtomicLong();
+  private volatile boolean open = true;
+  private Receiver receiver;
+  private Thread reader;
+  private Thread writer;
+
+  // -- Constructors --
+
+  /**
+   * Creates a stream connection on a connected socket channel. The connection
+   * does not transfer any messages before it is {@linkplain #start(Receiver)
+   * started}.
+   *
+   * @param channel
+   *          The socket channel.
+   * @param queueSize
+   *          The capacity of the send queue (number of messages).
+   * @throws IOException
+   *           If the channel cannot be configured.
+   */
+  public StreamConnection(SocketChannel channel, int queueSize)
+  throws IOException
+  {
+    if (queueSize < 1)
+      throw new IllegalArgumentException("queueSize");
+    channel.configureBlocking(true);
+    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    this.channel = channel;
+    this.sendQueue = new ArrayBlockingQueue<ByteBuffer>(queueSize);
+  }
+
+  /**
+   * Opens a stream connection to a {@link StreamServer}.
+   *
+   * @param hostName
+   *          The name of the host running the server.
+   * @param port
+   *          The port the server is listening at.
+   * @param queueSize
+   *          The capacity of the send queue (number of messages).
+   * @return The connection, not yet started.
+   * @throws IOException
+   *           If the connection cannot be established.
+   */
+  public static StreamConnection connect(String hostName, int port,
+      int queueSize) throws IOException
+  {
+    SocketChannel channel = SocketChannel.open();
+    try
+    {
+      channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+      channel.connect(new InetSocketAddress(hostName, port));
+      return new StreamConnection(channel, queueSize);
+    }
+    catch (IOException e)
+    {
+      channel.close();
+      throw e;
+    }
+  }
+
+  // -- Operations --
+
+  /**
+   * Starts the reader and writer threads.
+   *
+   * @param receiver
+   *          The receiver of incoming messages.
+   */
+  public synchronized void start(Receiver receiver)
+  {
+    if (this.receiver != null)
+      throw new IllegalStateException("Already started");
+    this.receiver = receiver;
+    String name = "StreamConnection " + getRemoteAddress();
+    reader = new Thread(this::read, name + " reader");
+    reader.setDaemon(true);
+    writer = new Thread(this::write, name + " writer");
+    writer.setDaemon(true);
+    reader.start();
+    writer.start();
+  }
+
+  /**
+   * Enqueues a message for sending. The method serializes the message and
+   * returns without waiting for it to be written.
+   *
+   * @param type
+   *          The message type, one of the constants of this class.
+   * @param message
+   *          The message.
+   * @return <code>true</code> if the message was enqueued, <code>false</code>
+   *         if the send queue is full and the message was discarded.
+   * @throws IOException
+   *           If the connection is closed or the message cannot be
+   *           serialized.
+   */
+  public boolean send(int type, Object message) throws IOException
+  {
+    if (!open)
+      throw new ClosedChannelException();
+    return send(encode(type, message));
+  }
+
+  /**
+   * Enqueues a message for sending. If the send queue is full, the method
+   * waits for free space.
+   *
+   * @param type
+   *          The message type, one of the constants of this class.
+   * @param message
+   *          The message.
+   * @param timeout
+   *          The maximal time to wait for free space in milliseconds.
+   * @return <code>true</code> if the message was enqueued, <code>false</code>
+   *         if the send queue stayed full or the waiting thread was
+   *         interrupted.
+   * @throws IOException
+   *           If the connection is closed or the message cannot be
+   *           serialized.
+   */
+  public boolean send(int type, Object message, long timeout)
+  throws IOException
+  {
+    if (!open)
+      throw new ClosedChannelException();
+    ByteBuffer bytes = encode(type, message).bytes;
+    try
+    {
+      if (sendQueue.offer(bytes, timeout, TimeUnit.MILLISECONDS))
+        return true;
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+    rejectedMessages.incrementAndGet();
+    return false;
+  }
+
+  /**
+   * Enqueues an {@linkplain #encode(int, Object) encoded} message for sending.
+   * The same encoded message can be sent over several connections.
+   *
+   * @param message
+   *          The encoded message.
+   * @return <code>true</code> if the message was enqueued, <code>false</code>
+   *         if the send queue is full and the message was discarded.
+   * @throws IOException
+   *           If the connection is closed.
+   */
+  public boolean send(Message message) throws IOException
+  {
+    if (!open)
+      throw new ClosedChannelException();
+    if (!sendQueue.offer(message.bytes.duplicate()))
+    {
+      rejectedMessages.incrementAndGet();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Serializes a message for {@linkplain #send(Message) sending}.
+   *
+   * @param type
+   *          The message type, one of the constants of this class.
+   * @param message
+   *          The message.
+   * @return The encoded message.
+   * @throws IOException
+   *           If the message cannot be serialized.
+   */
+  public static Message encode(int type, Object message) throws IOException
+  {
+    MessageBuffer buffer = new MessageBuffer();
+    try (ObjectOutputStream out = new ObjectOutputStream(buffer))
+    {
+      out.writeObject(message);
+    }
+    return new Message(buffer.toByteBuffer(type));
+  }
+
+  /**
+   * Closes the connection. Messages still in the send queue are discarded.
+   */
+  public void close()
+  {
+    if (!open)
+      return;
+    open = false;
+    try
+    {
+      channel.close();
+    }
+    catch (IOException e)
+    {
+      // ignored
+    }
+    sendQueue.clear();
+    Thread writer = this.writer;
+    if (writer != null)
+      writer.interrupt();
+  }
+
+  // -- Getters --
+
+  /**
+   * Determines if the connection is open.
+   */
+  public boolean isOpen()
+  {
+    return open;
+  }
+
+  /**
+   * Waits until the reader thread has terminated, i.e. until no more messages
+   * are passed to the receiver. Call {@link #close()} first.
+   *
+   * @param timeout
+   *          The maximal time to wait in milliseconds.
+   * @throws InterruptedException
+   *           If the waiting thread was interrupted.
+   */
+  public void join(long timeout) throws InterruptedException
+  {
+    Thread reader;
+    synchronized (this)
+    {
+      reader = this.reader;
+    }
+    if (reader != null && reader != Thread.currentThread())
+      reader.join(timeout);
+  }
+
+  /**
+   * Returns the IP address of the peer.
+   */
+  public InetAddress getInetAddress()
+  {
+    return channel.socket().getInetAddress();
+  }
+
+  /**
+   * Returns the address of the peer or <code>null</code> if not known.
+   */
+  public String getRemoteAddress()
+  {
+    try
+    {
+      return String.valueOf(channel.getRemoteAddress());
+    }
+    catch (IOException e)
+    {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the number of messages written to the socket.
+   */
+  public long getSentCount()
+  {
+    return sentMessages.get();
+  }
+
+  /**
+   * Returns the number of bytes written to the socket.
+   */
+  public long getSentBytes()
+  {
+    return sentBytes.get();
+  }
+
+  /**
+   * Returns the number of messages discarded because the send queue was full.
+   */
+  public long getRejectedCount()
+  {
+    return rejectedMessages.get();
+  }
+
+  /**
+   * Returns the number of messages the send queue can take without waiting.
+   */
+  public int getRemainingCapacity()
+  {
+    return sendQueue.remainingCapacity();
+  }
+
+  /**
+   * Returns the number of messages waiting in the send queue.
+   */
+  public int getQueueLength()
+  {
+    return sendQueue.size();
+  }
+
+  // -- Implementation --
+
+  /**
+   * Body of the writer thread. Writes all queued messages with one gathering
+   * write.
+   */
+  private void write()
+  {
+    ArrayList<ByteBuffer> batch = new ArrayList<ByteBuffer>();
+    try
+    {
+      while (open)
+      {
+        batch.add(sendQueue.take());
+        sendQueue.drainTo(batch);
+        ByteBuffer[] buffers = batch.toArray(new ByteBuffer[batch.size()]);
+        ByteBuffer last = buffers[buffers.length - 1];
+        long bytes = 0;
+        while (last.hasRemaining())
+          bytes += channel.write(buffers);
+        sentMessages.addAndGet(buffers.length);
+        sentBytes.addAndGet(bytes);
+        batch.clear();
+      }
+    }
+    catch (InterruptedException | ClosedChannelException e)
+    {
+      // Closed
+    }
+    catch (IOException e)
+    {
+      if (open)
+        Log.warn("Stream connection to " + getRemoteAddress() + " failed: "
+            + e.getMessage());
+    }
+    close();
+  }
+
+  /**
+   * Body of the reader thread.
+   */
+  private void read()
+  {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    try
+    {
+      while (open)
+      {
+        header.clear();
+        readFully(header);
+        int length = header.getInt(0);
+        int type = header.get(4);
+        if (length < 1 || length > MAX_MESSAGE_SIZE)
+          throw new IOException("Invalid message length " + length);
+        ByteBuffer payload = ByteBuffer.allocate(length - 1);
+        readFully(payload);
+        Object message;
+        try (ObjectInputStream in = new ObjectInputStream(
+            new ByteArrayInputStream(payload.array())))
+        {
+          message = in.readObject();
+        }
+        catch (ClassNotFoundException e)
+        {
+          Log.err("Cannot decode stream message of type " + type + ".", e);
+          continue;
+        }
+        try
+        {
+          receiver.receive(type, message, length + 4);
+        }
+        catch (RuntimeException e)
+        {
+          Log.err("Error processing stream message of type " + type + ".", e);
+        }
+      }
+    }
+    catch (EOFException | ClosedChannelException e)
+    {
+      // Closed
+    }
+    catch (IOException e)
+    {
+      if (open)
+        Log.warn("Stream connection to " + getRemoteAddress() + " failed: "
+            + e.getMessage());
+    }
+    close();
+    receiver.closed(this);
+  }
+
+  private void readFully(ByteBuffer buffer) throws IOException
+  {
+    while (buffer.hasRemaining())
+      if (channel.read(buffer) < 0)
+        throw new EOFException();
+  }
+
+  // -- Nested classes --
+
+  /**
+   * Receives the incoming messages of a stream connection.
+   */
+  public interface Receiver
+  {
+    /**
+     * Called on the reader thread for each incoming message.
+     *
+     * @param type
+     *          The message type.
+     * @param message
+     *          The message.
+     * @param size
+     *          The size of the message on the wire in bytes.
+     */
+    public void receive(int type, Object message, int size);
+
+    /**
+     * Called on the reader thread when the connection was closed.
+     *
+     * @param connection
+     *          The connection.
+     */
+    public default void closed(StreamConnection connection)
+    {
+    }
+  }
+
+  /**
+   * An encoded message including its header.
+   */
+  public static final class Message
+  {
+    private final ByteBuffer bytes;
+
+    Message(ByteBuffer bytes)
+    {
+      this.bytes = bytes;
+    }
+
+    /**
+     * Returns the message type.
+     */
+    public int getType()
+    {
+      return bytes.get(bytes.position() + 4);
+    }
+
+    /**
+     * Returns the size of the message on the wire in bytes.
+     */
+    public int getSize()
+    {
+      return bytes.remaining();
+    }
+  }
+
+  /**
+   * Collects a message with room for the header in front.
+   */
+  private static final class MessageBuffer extends ByteArrayOutputStream
+  {
+    MessageBuffer()
+    {
+      super(256);
+      count = HEADER_SIZE;
+    }
+
+    ByteBuffer toByteBuffer(int type)
+    {
+      ByteBuffer bytes = ByteBuffer.wrap(buf, 0, count);
+      bytes.putInt(0, count - 4);
+      bytes.put(4, (byte)type);
+      return bytes;
+    }
+  }
+}
+
+// EOF
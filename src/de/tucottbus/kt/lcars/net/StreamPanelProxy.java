@@ -0,0 +1,153 @@
+package de.tucottbus.kt.lcars.net;
+
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.function.Supplier;
+
+import de.tucottbus.kt.lcars.IPanel;
+import de.tucottbus.kt.lcars.TouchEvent;
+import de.tucottbus.kt.lcars.logging.Log;
+
+/**
+ * Screen side proxy of a remote {@linkplain IPanel panel} which sends touch
+ * and key events over a {@linkplain StreamConnection stream connection}
+ * instead of RMI. All other methods are forwarded to the RMI stub of the
+ * panel.
+ *
+ * <p>Input events take one ordered path: over the stream while the
+ * connection is open, through RMI otherwise. If the send queue stays full,
+ * the connection is closed and all input goes through RMI until the panel
+ * establishes a new connection.</p>
+ *
+ * <p>Proxies of the same panel stub are equal, so replacing a proxy does not
+ * restart the panel on the screen.</p>
+ */
+public class StreamPanelProxy implements IPanel
+{
+  /**
+   * Maximal time to wait for free space in the send queue in milliseconds.
+   */
+  private static final long SEND_TIMEOUT = 500;
+
+  private final IPanel panel;
+  private final Supplier<StreamConnection> connection;
+  private final Object input = new Object();
+
+  /**
+   * Creates a stream proxy of a remote panel.
+   *
+   * @param panel
+   *          The RMI stub of the panel.
+   * @param connection
+   *          Supplies the current stream connection to the panel, may supply
+   *          <code>null</code>.
+   */
+  public StreamPanelProxy(IPanel panel, Supplier<StreamConnection> connection)
+  {
+    this.panel = panel;
+    this.connection = connection;
+  }
+
+  /**
+   * Sends a message over the stream connection. Waits while the send queue
+   * is full and closes the connection if it stays full.
+   *
+   * @return <code>true</code> if the message was queued, <code>false</code> if
+   *         it must be sent through RMI.
+   */
+  private boolean send(int type, Object message)
+  {
+    StreamConnection connection = this.connection.get();
+    if (connection == null || !connection.isOpen())
+      return false;
+    try
+    {
+      if (connection.send(type, message, SEND_TIMEOUT))
+        return true;
+      Log.warn("Stream connection to panel congested, sending input through RMI");
+    }
+    catch (IOException e)
+    {
+      Log.warn("Stream connection to panel lost, sending input through RMI");
+    }
+    connection.close();
+    return false;
+  }
+
+  // -- Implementation of the IPanel interface --
+
+  @Override
+  public void processTouchEvents(TouchEvent[] events) throws RemoteException
+  {
+    synchronized (input)
+    {
+      if (!send(StreamConnection.TOUCH_EVENTS, events))
+        panel.processTouchEvents(events);
+    }
+  }
+
+  @Override
+  public void processKeyEvent(KeyEvent event) throws RemoteException
+  {
+    synchronized (input)
+    {
+      if (!send(StreamConnection.KEY_EVENT, event))
+        panel.processKeyEvent(event);
+    }
+  }
+
+  @Override
+  public void start() throws RemoteException
+  {
+    panel.start();
+  }
+
+  @Override
+  public void stop() throws RemoteException
+  {
+    panel.stop();
+  }
+
+  @Override
+  public boolean isRunning() throws RemoteException
+  {
+    return panel.isRunning();
+  }
+
+  @Override
+  public void panelSelectionDialog() throws RemoteException
+  {
+    panel.panelSelectionDialog();
+  }
+
+  @Override
+  public int serialNo() throws RemoteException
+  {
+    return panel.serialNo();
+  }
+
+  @Override
+  public String getElementInfo(int serialNo) throws RemoteException
+  {
+    return panel.getElementInfo(serialNo);
+  }
+
+  // -- Overrides --
+
+  @Override
+  public boolean equals(Object obj)
+  {
+    if (!(obj instanceof StreamPanelProxy))
+      return false;
+    return panel.equals(((StreamPanelProxy)obj).panel);
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return panel.hashCode();
+  }
+}
+
+// EOF
@@ -0,0 +1,300 @@
+package de.tucottbus.kt.lcars.net;
+
+import java.awt.event.KeyEvent;
+import java.awt.geom.Area;
+import java.io.IOException;
+import java.rmi.RemoteException;
+
+import de.tucottbus.kt.lcars.IPanel;
+import de.tucottbus.kt.lcars.IScreen;
+import de.tucottbus.kt.lcars.PanelData;
+import de.tucottbus.kt.lcars.TouchEvent;
+import de.tucottbus.kt.lcars.feedback.UserFeedback;
+import de.tucottbus.kt.lcars.logging.Log;
+import de.tucottbus.kt.lcars.util.LoadStatistics;
+
+/**
+ * Panel side proxy of a remote {@linkplain IScreen screen} which sends the
+ * screen updates over a {@linkplain StreamConnection stream connection}
+ * instead of RMI. All other methods are forwarded to the RMI stub of the
+ * screen. Touch and key events received over the stream are passed to the
+ * panel.
+ *
+ * <p>Screen updates are pipelined: {@link #update(PanelData, boolean)} returns
+ * as soon as the update is queued. If the send queue is full or the
+ * connection is lost, the update is discarded and a {@link RemoteException}
+ * is thrown, so the panel sends a full update next. A lost connection is
+ * reestablished on a later update. Updates queued on the lost connection may
+ * not have arrived, so a new connection accepts nothing but a full update
+ * first.</p>
+ */
+public class StreamScreenProxy implements IScreen
+{
+  /**
+   * Minimal time between two connection attempts in milliseconds.
+   */
+  private static final long RECONNECT_DELAY = 1000;
+
+  private final IScreen screen;
+  private final String hostName;
+  private final int port;
+  private final int queueSize;
+  private final IPanel panel;
+  private volatile StreamConnection connection;
+  private long connectTime;
+  private boolean closed;
+
+  /**
+   * <code>true</code> until a full update has been queued on the current
+   * connection.
+   */
+  private boolean keyframePending;
+
+  // -- Constructors --
+
+  /**
+   * Creates a stream proxy of a remote screen and connects to the screen's
+   * {@link StreamServer}.
+   *
+   * @param screen
+   *          The RMI stub of the screen.
+   * @param hostName
+   *          The name of the host serving the screen.
+   * @param port
+   *          The port of the screen's stream server.
+   * @param queueSize
+   *          The capacity of the send queue (number of updates).
+   * @param panel
+   *          The panel to pass received touch and key events to.
+   */
+  public StreamScreenProxy(IScreen screen, String hostName, int port,
+      int queueSize, IPanel panel)
+  {
+    this.screen = screen;
+    this.hostName = hostName;
+    this.port = port;
+    this.queueSize = queueSize;
+    this.panel = panel;
+    getConnection();
+  }
+
+  // -- Operations --
+
+  /**
+   * Closes the stream connection. Subsequent updates fail.
+   */
+  public synchronized void close()
+  {
+    closed = true;
+    if (connection != null)
+      connection.close();
+  }
+
+  /**
+   * Returns the current stream connection or <code>null</code> if not
+   * connected.
+   */
+  public StreamConnection getStreamConnection()
+  {
+    return connection;
+  }
+
+  /**
+   * Determines if a number of updates can be queued now.
+   *
+   * @param count
+   *          The number of updates.
+   */
+  public synchronized boolean canQueue(int count)
+  {
+    StreamConnection connection = getConnection();
+    return connection != null && connection.getRemainingCapacity() >= count;
+  }
+
+  /**
+   * Returns the open stream connection. Reconnects if the connection is
+   * lost, but not more often than every {@link #RECONNECT_DELAY}
+   * milliseconds.
+   *
+   * @return The connection or <code>null</code> if not connected.
+   */
+  private synchronized StreamConnection getConnection()
+  {
+    if (connection != null && connection.isOpen())
+      return connection;
+    long time = System.currentTimeMillis();
+    if (closed || time - connectTime < RECONNECT_DELAY)
+      return null;
+    connectTime = time;
+    try
+    {
+      connection = StreamConnection.connect(hostName, port, queueSize);
+      keyframePending = true;
+      connection.start(this::receive);
+      Log.info("Stream connection to " + hostName + ":" + port
+          + " established");
+      return connection;
+    }
+    catch (IOException e)
+    {
+      Log.warn("No stream connection to " + hostName + ":" + port + ": "
+          + e.getMessage());
+      connection = null;
+      return null;
+    }
+  }
+
+  /**
+   * Passes a message received from the screen to the panel.
+   */
+  private void receive(int type, Object message, int size)
+  {
+    try
+    {
+      switch (type)
+      {
+      case StreamConnection.TOUCH_EVENTS:
+        panel.processTouchEvents((TouchEvent[])message);
+        break;
+      case StreamConnection.KEY_EVENT:
+        panel.processKeyEvent((KeyEvent)message);
+        break;
+      default:
+        Log.warn("Unexpected stream message of type " + type);
+      }
+    }
+    catch (RemoteException e)
+    {
+      Log.err("Cannot pass input events to panel.", e);
+    }
+  }
+
+  // -- Implementation of the IScreen interface --
+
+  /**
+   * Sends an {@linkplain StreamConnection#encode(int, Object) encoded} screen
+   * update.
+   *
+   * @param frame
+   *          The update, a {@link PanelData} object encoded as {@link
+   *          StreamConnection#FRAME} or {@link
+   *          StreamConnection#INCREMENTAL_FRAME}.
+   * @throws RemoteException
+   *           If there is no connection, the send queue is full, or the
+   *           update is incremental and the connection is waiting for a full
+   *           update.
+   */
+  public synchronized void update(StreamConnection.Message frame)
+  throws RemoteException
+  {
+    StreamConnection connection = getConnection();
+    if (connection == null)
+      throw new RemoteException("No stream connection to " + hostName + ":"
+          + port);
+    boolean keyframe = frame.getType() == StreamConnection.FRAME;
+    if (keyframePending && !keyframe)
+      throw new RemoteException("Stream connection to " + hostName + ":"
+          + port + " waiting for a full update");
+    boolean queued;
+    try
+    {
+      queued = connection.send(frame);
+    }
+    catch (IOException e)
+    {
+      throw new RemoteException("Stream connection to " + hostName + ":"
+          + port + " lost", e);
+    }
+    if (!queued)
+    {
+      keyframePending = true;
+      throw new RemoteException("Send queue to " + hostName + ":" + port
+          + " full");
+    }
+    if (keyframe)
+      keyframePending = false;
+  }
+
+  @Override
+  public void update(PanelData data, boolean incremental)
+  throws RemoteException
+  {
+    if (getConnection() == null)
+      throw new RemoteException("No stream connection to " + hostName + ":"
+          + port);
+    StreamConnection.Message frame;
+    try
+    {
+      frame = StreamConnection.encode(incremental
+          ? StreamConnection.INCREMENTAL_FRAME : StreamConnection.FRAME, data);
+    }
+    catch (IOException e)
+    {
+      throw new RemoteException("Cannot encode screen update", e);
+    }
+    update(frame);
+  }
+
+  @Override
+  public Area getArea() throws RemoteException
+  {
+    return screen.getArea();
+  }
+
+  @Override
+  public void setArea(Area area) throws RemoteException
+  {
+    screen.setArea(area);
+  }
+
+  @Override
+  public String getHostName() throws RemoteException
+  {
+    return screen.getHostName();
+  }
+
+  @Override
+  public void setPanel(String className)
+  throws ClassNotFoundException, RemoteException
+  {
+    screen.setPanel(className);
+  }
+
+  @Override
+  public IPanel getPanel() throws RemoteException
+  {
+    return screen.getPanel();
+  }
+
+  @Override
+  public void userFeedback(UserFeedback.Type type) throws RemoteException
+  {
+    screen.userFeedback(type);
+  }
+
+  @Override
+  public LoadStatistics getLoadStatistics() throws RemoteException
+  {
+    return screen.getLoadStatistics();
+  }
+
+  @Override
+  public void exit() throws RemoteException
+  {
+    screen.exit();
+  }
+
+  @Override
+  public boolean isDisposed() throws RemoteException
+  {
+    return screen.isDisposed();
+  }
+
+  @Override
+  public void setPanelId(int panelId) throws RemoteException
+  {
+    screen.setPanelId(panelId);
+  }
+}
+
+// EOF
@@ -0,0 +1,105 @@
+package de.tucottbus.kt.lcars.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.function.Consumer;
+
+import de.tucottbus.kt.lcars.logging.Log;
+
+/**
+ * Accepts {@linkplain StreamConnection stream connections} on a TCP port.
+ */
+public final class StreamServer
+{
+  private final ServerSocketChannel channel;
+  private final int queueSize;
+  private final Consumer<StreamConnection> acceptor;
+  private final Thread thread;
+
+  /**
+   * Creates and starts a stream server.
+   *
+   * @param port
+   *          The port to listen at, 0 for an ephemeral port.
+   * @param queueSize
+   *          The send queue capacity of accepted connections.
+   * @param acceptor
+   *          Called on the server thread for every accepted connection. The
+   *          acceptor is responsible for {@linkplain
+   *          StreamConnection#start(StreamConnection.Receiver) starting} the
+   *          connection.
+   * @throws IOException
+   *           If the port cannot be bound.
+   */
+  public StreamServer(int port, int queueSize,
+      Consumer<StreamConnection> acceptor) throws IOException
+  {
+    this.channel = ServerSocketChannel.open();
+    this.channel.bind(new InetSocketAddress(port));
+    this.queueSize = queueSize;
+    this.acceptor = acceptor;
+    this.thread = new Thread(this::run, "StreamServer :" + getPort());
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * Returns the port this server is listening at.
+   */
+  public int getPort()
+  {
+    return channel.socket().getLocalPort();
+  }
+
+  /**
+   * Stops listening. Connections already accepted are not closed.
+   */
+  public void close()
+  {
+    try
+    {
+      channel.close();
+    }
+    catch (IOException e)
+    {
+      // ignored
+    }
+  }
+
+  private void run()
+  {
+    Log.info("Stream server listening at port " + getPort());
+    while (channel.isOpen())
+    {
+      try
+      {
+        SocketChannel socket = channel.accept();
+        StreamConnection connection;
+        try
+        {
+          connection = new StreamConnection(socket, queueSize);
+        }
+        catch (IOException e)
+        {
+          socket.close();
+          throw e;
+        }
+        Log.info("Stream connection from " + connection.getRemoteAddress());
+        acceptor.accept(connection);
+      }
+      catch (ClosedChannelException e)
+      {
+        break;
+      }
+      catch (IOException | RuntimeException e)
+      {
+        Log.err("Cannot accept stream connection.", e);
+      }
+    }
+  }
+}
+
+// EOF
@@ -0,0 +1,894 @@
+package de.tucottbus.kt.lcars.net;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.PathIterator;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import de.tucottbus.kt.lcars.PanelData;
+import de.tucottbus.kt.lcars.PanelState;
+import de.tucottbus.kt.lcars.elements.ElementData;
+import de.tucottbus.kt.lcars.elements.ElementState;
+import de.tucottbus.kt.lcars.geometry.AGeometry;
+import de.tucottbus.kt.lcars.geometry.GArea;
+import de.tucottbus.kt.lcars.geometry.GImage;
+import de.tucottbus.kt.lcars.geometry.GText;
+import de.tucottbus.kt.lcars.swt.ColorMeta;
+import de.tucottbus.kt.lcars.swt.FontMeta;
+import de.tucottbus.kt.lcars.swt.ImageMeta;
+
+/**
+ * A compact binary encoding of {@link PanelData} for the panel-to-screen
+ * traffic. If {@linkplain #setEnabled(boolean) enabled}, panel data are
+ * serialized as a {@link Packet} holding the encoded bytes instead of the
+ * default Java serialization of the object graph. The receiving side decodes
+ * packets regardless of its own setting.
+ *
+ * <p>The encoding</p>
+ * <ul>
+ *   <li>writes serial numbers, counts and integer coordinates as variable
+ *   length integers,</li>
+ *   <li>writes {@link GArea}, {@link GText} and {@link GImage} geometries
+ *   with type tags instead of class descriptors,</li>
+ *   <li>quantizes path coordinates to 1/{@value #PATH_SCALE} panel pixel and
+ *   writes them as differences to the previous coordinate,</li>
+ *   <li>writes every string, color, font and image descriptor only once per
+ *   message and refers to it by index afterwards,</li>
+ *   <li>falls back to Java serialization for other geometries and image
+ *   descriptors.</li>
+ * </ul>
+ */
+public final class WireCodec
+{
+  /**
+   * The format version, the first byte of every message.
+   */
+  private static final int VERSION = 1;
+
+  /**
+   * The resolution of path coordinates in steps per panel pixel.
+   */
+  public static final int PATH_SCALE = 16;
+
+  // Geometry type tags
+  private static final int TAG_OBJECT = 0;
+  private static final int TAG_AREA   = 1;
+  private static final int TAG_TEXT   = 2;
+  private static final int TAG_IMAGE  = 3;
+
+  // End of path marker
+  private static final int SEG_END    = 0xFF;
+
+  // Font type tags
+  private static final int FONT_IMPLICIT = 0;
+  private static final int FONT_EXPLICIT = 1;
+  private static final int FONT_OBJECT   = 2;
+
+  private static volatile boolean enabled;
+
+  private WireCodec()
+  {
+  }
+
+  /**
+   * Enables or disables the compact encoding for panel data sent by this
+   * process. Set by the <code>--compactwire</code> command line option.
+   */
+  public static void setEnabled(boolean enabled)
+  {
+    WireCodec.enabled = enabled;
+  }
+
+  /**
+   * Determines if the compact encoding is used for panel data sent by this
+   * process.
+   */
+  public static boolean isEnabled()
+  {
+    return enabled;
+  }
+
+  /**
+   * Encodes panel data.
+   *
+   * @param data
+   *          The panel data.
+   * @return The encoded bytes.
+   * @throws IOException
+   *           If an object cannot be serialized.
+   */
+  public static byte[] encode(PanelData data) throws IOException
+  {
+    Encoder out = new Encoder();
+    out.writeByte(VERSION);
+    out.writeVarLong(data.panelId);
+    out.writeBoolean(data.sparse);
+    out.writePanelState(data.panelState);
+    ElementData[] els = data.elementData;
+    out.writeVarInt(els != null ? els.length + 1 : 0);
+    if (els != null)
+      for (ElementData ed : els)
+        out.writeElementData(ed);
+    if (data.sparse)
+    {
+      out.writeSerials(data.removed);
+      out.writeSerials(data.appended);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Decodes panel data.
+   *
+   * @param bytes
+   *          The encoded bytes.
+   * @return The panel data.
+   * @throws IOException
+   *           If the bytes are no valid encoding.
+   */
+  public static PanelData decode(byte[] bytes) throws IOException
+  {
+    Decoder in = new Decoder(bytes);
+    int version = in.readByte();
+    if (version != VERSION)
+      throw new StreamCorruptedException("Unknown wire format version " + version);
+    long panelId = in.readVarLong();
+    boolean sparse = in.readBoolean();
+    PanelState state = in.readPanelState();
+    int n = in.readVarInt();
+    ElementData[] els = null;
+    if (n > 0)
+    {
+      els = new ElementData[n - 1];
+      for (int i = 0; i < els.length; i++)
+        els[i] = in.readElementData();
+    }
+    long[] removed = null;
+    long[] appended = null;
+    if (sparse)
+    {
+      removed = in.readSerials();
+      appended = in.readSerials();
+    }
+    return new PanelData(panelId, state, els, sparse, removed, appended);
+  }
+
+  // -- Nested classes --
+
+  /**
+   * The serialized form of {@link PanelData} if the compact encoding is
+   * enabled, see {@link PanelData}<code>.writeReplace()</code>.
+   */
+  public static final class Packet implements Serializable
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] bytes;
+
+    /**
+     * Creates a packet.
+     *
+     * @param data
+     *          The panel data to encode.
+     * @throws ObjectStreamException
+     *           If the panel data cannot be encoded.
+     */
+    public Packet(PanelData data) throws ObjectStreamException
+    {
+      try
+      {
+        this.bytes = encode(data);
+      }
+      catch (IOException e)
+      {
+        InvalidObjectException e2 = new InvalidObjectException(
+            "Cannot encode panel data: " + e.getMessage());
+        e2.initCause(e);
+        throw e2;
+      }
+    }
+
+    /**
+     * Returns the size of the encoded panel data in bytes.
+     */
+    public int size()
+    {
+      return bytes.length;
+    }
+
+    private Object readResolve() throws ObjectStreamException
+    {
+      try
+      {
+        return decode(bytes);
+      }
+      catch (IOException | RuntimeException e)
+      {
+        InvalidObjectException e2 = new InvalidObjectException(
+            "Cannot decode panel data: " + e.getMessage());
+        e2.initCause(e);
+        throw e2;
+      }
+    }
+  }
+
+  /**
+   * Writes the compact encoding.
+   */
+  private static final class Encoder
+  {
+    private byte[] buf = new byte[1024];
+    private int pos;
+    private final HashMap<String, Integer> strings = new HashMap<String, Integer>();
+    private final HashMap<Long, Integer> colors = new HashMap<Long, Integer>();
+    private final HashMap<FontMeta, Integer> fonts = new HashMap<FontMeta, Integer>();
+    private final HashMap<Object, Integer> objects = new HashMap<Object, Integer>();
+    private final float[] coords = new float[6];
+
+    byte[] toByteArray()
+    {
+      return Arrays.copyOf(buf, pos);
+    }
+
+    private void ensure(int n)
+    {
+      if (pos + n > buf.length)
+        buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+    }
+
+    void writeByte(int b)
+    {
+      ensure(1);
+      buf[pos++] = (byte)b;
+    }
+
+    void writeBoolean(boolean b)
+    {
+      writeByte(b ? 1 : 0);
+    }
+
+    void writeBytes(byte[] b)
+    {
+      writeVarInt(b.length);
+      ensure(b.length);
+      System.arraycopy(b, 0, buf, pos, b.length);
+      pos += b.length;
+    }
+
+    void writeInt(int v)
+    {
+      ensure(4);
+      buf[pos++] = (byte)(v >>> 24);
+      buf[pos++] = (byte)(v >>> 16);
+      buf[pos++] = (byte)(v >>> 8);
+      buf[pos++] = (byte)v;
+    }
+
+    void writeFloat(float v)
+    {
+      writeInt(Float.floatToIntBits(v));
+    }
+
+    void writeVarLong(long v)
+    {
+      ensure(10);
+      while ((v & ~0x7FL) != 0)
+      {
+        buf[pos++] = (byte)((v & 0x7F) | 0x80);
+        v >>>= 7;
+      }
+      buf[pos++] = (byte)v;
+    }
+
+    void writeVarInt(int v)
+    {
+      writeVarLong(v & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Writes a signed integer in zig-zag encoding, small negative values take
+     * one byte as well.
+     */
+    void writeSignedVarInt(int v)
+    {
+      writeVarInt((v << 1) ^ (v >> 31));
+    }
+
+    void writeSerials(long[] serials)
+    {
+      writeVarInt(serials != null ? serials.length + 1 : 0);
+      if (serials != null)
+        for (long serialNo : serials)
+          writeVarLong(serialNo);
+    }
+
+    void writeRect(Rectangle r)
+    {
+      writeBoolean(r != null);
+      if (r == null)
+        return;
+      writeSignedVarInt(r.x);
+      writeSignedVarInt(r.y);
+      writeSignedVarInt(r.width);
+      writeSignedVarInt(r.height);
+    }
+
+    /**
+     * Writes a string. 0 encodes <code>null</code>, 1 a new string and
+     * <i>n</i>&gt;1 the (<i>n</i>-2)-th string of this message.
+     */
+    void writeString(String s)
+    {
+      if (s == null)
+      {
+        writeVarInt(0);
+        return;
+      }
+      Integer index = strings.get(s);
+      if (index != null)
+      {
+        writeVarInt(index + 2);
+        return;
+      }
+      strings.put(s, strings.size());
+      writeVarInt(1);
+      writeBytes(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    void writeColor(ColorMeta c)
+    {
+      if (c == null)
+      {
+        writeVarInt(0);
+        return;
+      }
+      Long key = (c.getValue() & 0xFFFFFFFFL) | (c.HasAlpha ? 1L << 32 : 0);
+      Integer index = colors.get(key);
+      if (index != null)
+      {
+        writeVarInt(index + 2);
+        return;
+      }
+      colors.put(key, colors.size());
+      writeVarInt(1);
+      writeInt(c.getValue());
+      writeBoolean(c.HasAlpha);
+    }
+
+    void writeFont(FontMeta f) throws IOException
+    {
+      if (f == null)
+      {
+        writeVarInt(0);
+        return;
+      }
+      Integer index = fonts.get(f);
+      if (index != null)
+      {
+        writeVarInt(index + 2);
+        return;
+      }
+      fonts.put(f, fonts.size());
+      writeVarInt(1);
+      if (f instanceof FontMeta.Implicit)
+      {
+        writeByte(FONT_IMPLICIT);
+        writeVarInt(((FontMeta.Implicit)f).style);
+      }
+      else if (f instanceof FontMeta.Explicit)
+      {
+        FontMeta.Explicit e = (FontMeta.Explicit)f;
+        writeByte(FONT_EXPLICIT);
+        writeString(e.name);
+        writeVarInt(e.height);
+        writeVarInt(e.style);
+      }
+      else
+      {
+        writeByte(FONT_OBJECT);
+        writeObject(f);
+      }
+    }
+
+    /**
+     * Writes an object by Java serialization, equal objects are serialized
+     * only once per message.
+     */
+    void writeObject(Object obj) throws IOException
+    {
+      if (obj == null)
+      {
+        writeVarInt(0);
+        return;
+      }
+      Integer index = objects.get(obj);
+      if (index != null)
+      {
+        writeVarInt(index + 2);
+        return;
+      }
+      objects.put(obj, objects.size());
+      writeVarInt(1);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream oos = new ObjectOutputStream(bytes))
+      {
+        oos.writeObject(obj);
+      }
+      writeBytes(bytes.toByteArray());
+    }
+
+    void writePanelState(PanelState s) throws IOException
+    {
+      writeBoolean(s != null);
+      if (s == null)
+        return;
+      writeSignedVarInt(s.width);
+      writeSignedVarInt(s.height);
+      writeVarInt(s.colorScheme);
+      writeVarInt(s.blink);
+      writeByte((s.modal ? 1 : 0) | (s.silent ? 2 : 0) | (s.locked ? 4 : 0));
+      writeFloat(s.alpha);
+      writeObject(s.bgImage);
+    }
+
+    void writeElementData(ElementData ed) throws IOException
+    {
+      ElementState state = ed.getState();
+      List<AGeometry> geos = ed.getGeometries();
+      boolean translated = ed.getDx() != 0 || ed.getDy() != 0;
+      writeVarLong(ed.serialNo);
+      writeByte((state != null ? 1 : 0) | (geos != null ? 2 : 0)
+          | (translated ? 4 : 0));
+      if (state != null)
+      {
+        // A delta state only carries the changed fields
+        int mask = state.isDelta() ? state.getChanged() : ElementState.FLAG_MASK;
+        writeVarInt(state.getChanged());
+        writeBoolean(state.isDelta());
+        if ((mask & ElementState.BOUNDS) != 0)
+          writeRect(state.getBounds());
+        if ((mask & ElementState.COLOR) != 0)
+          writeColor(state.getColor());
+        if ((mask & ElementState.ALPHA) != 0)
+          writeFloat(state.getAlpha());
+        if ((mask & ElementState.STYLE) != 0)
+          writeVarInt(state.getStyle());
+        if ((mask & (ElementState.VISIBLE | ElementState.HIGHLIGHT)) != 0)
+          writeByte((state.isVisible() ? 1 : 0) | (state.isHighlighted() ? 2 : 0));
+        if ((mask & ElementState.TOUCH) != 0)
+          writeVarInt(state.getTouch());
+      }
+      if (geos != null)
+      {
+        writeVarInt(geos.size());
+        for (AGeometry geo : geos)
+          writeGeometry(geo);
+      }
+      if (translated)
+      {
+        writeSignedVarInt(ed.getDx());
+        writeSignedVarInt(ed.getDy());
+      }
+    }
+
+    void writeGeometry(AGeometry geo) throws IOException
+    {
+      Class<?> clazz = geo.getClass();
+      if (clazz == GArea.class)
+      {
+        GArea area = (GArea)geo;
+        PathIterator it = area.getShape().getPathIterator(null);
+        writeByte(TAG_AREA);
+        writeByte((area.isForeground() ? 1 : 0) | (area.isOutline() ? 2 : 0)
+            | (it.getWindingRule() == PathIterator.WIND_NON_ZERO ? 4 : 0));
+        writePath(it);
+      }
+      else if (clazz == GText.class)
+      {
+        GText text = (GText)geo;
+        writeByte(TAG_TEXT);
+        writeBoolean(text.isForeground());
+        writeString(text.getText());
+        writeFont(text.getFontMeta());
+        writeRect(text.getBounds());
+        writeSignedVarInt(text.getDescent());
+        writeSignedVarInt(text.getIndent());
+      }
+      else if (clazz == GImage.class)
+      {
+        GImage image = (GImage)geo;
+        Point p = image.getPos();
+        Dimension d = image.getSize();
+        writeByte(TAG_IMAGE);
+        writeObject(image.meta);
+        writeSignedVarInt(p.x);
+        writeSignedVarInt(p.y);
+        writeBoolean(d != null);
+        if (d != null)
+        {
+          writeSignedVarInt(d.width);
+          writeSignedVarInt(d.height);
+        }
+      }
+      else
+      {
+        writeByte(TAG_OBJECT);
+        writeObject(geo);
+      }
+    }
+
+    /**
+     * Writes the segments of a path. Each segment type is followed by the
+     * quantized coordinates, each as the difference to the previous x- or
+     * y-coordinate. The path ends with {@link #SEG_END}.
+     */
+    void writePath(PathIterator it)
+    {
+      int qx = 0;
+      int qy = 0;
+      for (; !it.isDone(); it.next())
+      {
+        int type = it.currentSegment(coords);
+        writeByte(type);
+        int n = coordCount(type);
+        for (int i = 0; i < n; i += 2)
+        {
+          int x = Math.round(coords[i] * PATH_SCALE);
+          int y = Math.round(coords[i + 1] * PATH_SCALE);
+          writeSignedVarInt(x - qx);
+          writeSignedVarInt(y - qy);
+          qx = x;
+          qy = y;
+        }
+      }
+      writeByte(SEG_END);
+    }
+  }
+
+  /**
+   * Reads the compact encoding.
+   */
+  private static final class Decoder
+  {
+    private final byte[] buf;
+    private int pos;
+    private final ArrayList<String> strings = new ArrayList<String>();
+    private final ArrayList<ColorMeta> colors = new ArrayList<ColorMeta>();
+    private final ArrayList<FontMeta> fonts = new ArrayList<FontMeta>();
+    private final ArrayList<Object> objects = new ArrayList<Object>();
+
+    Decoder(byte[] buf)
+    {
+      this.buf = buf;
+    }
+
+    int readByte() throws IOException
+    {
+      if (pos >= buf.length)
+        throw new StreamCorruptedException("Unexpected end of data");
+      return buf[pos++] & 0xFF;
+    }
+
+    boolean readBoolean() throws IOException
+    {
+      return readByte() != 0;
+    }
+
+    byte[] readBytes() throws IOException
+    {
+      int n = readVarInt();
+      if (n < 0 || pos + n > buf.length)
+        throw new StreamCorruptedException("Illegal length " + n);
+      byte[] b = Arrays.copyOfRange(buf, pos, pos + n);
+      pos += n;
+      return b;
+    }
+
+    int readInt() throws IOException
+    {
+      return (readByte() << 24) | (readByte() << 16) | (readByte() << 8)
+          | readByte();
+    }
+
+    float readFloat() throws IOException
+    {
+      return Float.intBitsToFloat(readInt());
+    }
+
+    long readVarLong() throws IOException
+    {
+      long v = 0;
+      for (int shift = 0; shift < 64; shift += 7)
+      {
+        int b = readByte();
+        v |= (long)(b & 0x7F) << shift;
+        if ((b & 0x80) == 0)
+          return v;
+      }
+      throw new StreamCorruptedException("Malformed variable length integer");
+    }
+
+    int readVarInt() throws IOException
+    {
+      return (int)readVarLong();
+    }
+
+    int readSignedVarInt() throws IOException
+    {
+      int v = readVarInt();
+      return (v >>> 1) ^ -(v & 1);
+    }
+
+    long[] readSerials() throws IOException
+    {
+      int n = readVarInt();
+      if (n == 0)
+        return null;
+      long[] serials = new long[n - 1];
+      for (int i = 0; i < serials.length; i++)
+        serials[i] = readVarLong();
+      return serials;
+    }
+
+    Rectangle readRect() throws IOException
+    {
+      if (!readBoolean())
+        return null;
+      return new Rectangle(readSignedVarInt(), readSignedVarInt(),
+          readSignedVarInt(), readSignedVarInt());
+    }
+
+    /**
+     * Reads the index of an interned value, see
+     * {@link Encoder#writeString(String)}.
+     *
+     * @return -2 for <code>null</code>, -1 for a new value or the index of a
+     *         value read before
+     */
+    int readRef(int size) throws IOException
+    {
+      int index = readVarInt() - 2;
+      if (index >= size)
+        throw new StreamCorruptedException("Illegal reference " + index);
+      return index;
+    }
+
+    String readString() throws IOException
+    {
+      int index = readRef(strings.size());
+      if (index >= 0)
+        return strings.get(index);
+      if (index == -2)
+        return null;
+      String s = new String(readBytes(), StandardCharsets.UTF_8);
+      strings.add(s);
+      return s;
+    }
+
+    ColorMeta readColor() throws IOException
+    {
+      int index = readRef(colors.size());
+      if (index >= 0)
+        return colors.get(index);
+      if (index == -2)
+        return null;
+      ColorMeta c = new ColorMeta(readInt(), readBoolean());
+      colors.add(c);
+      return c;
+    }
+
+    FontMeta readFont() throws IOException
+    {
+      int index = readRef(fonts.size());
+      if (index >= 0)
+        return fonts.get(index);
+      if (index == -2)
+        return null;
+      FontMeta f;
+      int type = readByte();
+      switch (type)
+      {
+      case FONT_IMPLICIT:
+        f = new FontMeta.Implicit(readVarInt());
+        break;
+      case FONT_EXPLICIT:
+        f = new FontMeta.Explicit(readString(), readVarInt(), readVarInt());
+        break;
+      case FONT_OBJECT:
+        f = (FontMeta)readObject();
+        break;
+      default:
+        throw new StreamCorruptedException("Unknown font type " + type);
+      }
+      fonts.add(f);
+      return f;
+    }
+
+    Object readObject() throws IOException
+    {
+      int index = readRef(objects.size());
+      if (index >= 0)
+        return objects.get(index);
+      if (index == -2)
+        return null;
+      try (ObjectInputStream ois = new ObjectInputStream(
+          new ByteArrayInputStream(readBytes())))
+      {
+        Object obj = ois.readObject();
+        objects.add(obj);
+        return obj;
+      }
+      catch (ClassNotFoundException e)
+      {
+        throw new IOException(e);
+      }
+    }
+
+    PanelState readPanelState() throws IOException
+    {
+      if (!readBoolean())
+        return null;
+      PanelState s = new PanelState(new Dimension(readSignedVarInt(),
+          readSignedVarInt()));
+      s.colorScheme = readVarInt();
+      s.blink = readVarInt();
+      int flags = readByte();
+      s.modal = (flags & 1) != 0;
+      s.silent = (flags & 2) != 0;
+      s.locked = (flags & 4) != 0;
+      s.alpha = readFloat();
+      s.bgImage = (ImageMeta)readObject();
+      return s;
+    }
+
+    ElementData readElementData() throws IOException
+    {
+      long serialNo = readVarLong();
+      int flags = readByte();
+      ElementState state = null;
+      ArrayList<AGeometry> geos = null;
+      if ((flags & 1) != 0)
+      {
+        int changed = readVarInt();
+        boolean delta = readBoolean();
+        int mask = delta ? changed : ElementState.FLAG_MASK;
+        Rectangle bounds = null;
+        ColorMeta color = null;
+        float alpha = 0;
+        int style = 0;
+        int bits = 0;
+        int touch = 0;
+        if ((mask & ElementState.BOUNDS) != 0)
+          bounds = readRect();
+        if ((mask & ElementState.COLOR) != 0)
+          color = readColor();
+        if ((mask & ElementState.ALPHA) != 0)
+          alpha = readFloat();
+        if ((mask & ElementState.STYLE) != 0)
+          style = readVarInt();
+        if ((mask & (ElementState.VISIBLE | ElementState.HIGHLIGHT)) != 0)
+          bits = readByte();
+        if ((mask & ElementState.TOUCH) != 0)
+          touch = readVarInt();
+        state = new ElementState(changed, delta, bounds, color, alpha, style,
+            (bits & 1) != 0, (bits & 2) != 0, touch);
+      }
+      if ((flags & 2) != 0)
+      {
+        int n = readVarInt();
+        geos = new ArrayList<AGeometry>(n);
+        for (int i = 0; i < n; i++)
+          geos.add(readGeometry());
+      }
+      int dx = 0;
+      int dy = 0;
+      if ((flags & 4) != 0)
+      {
+        dx = readSignedVarInt();
+        dy = readSignedVarInt();
+      }
+      return new ElementData(serialNo, state, geos, dx, dy);
+    }
+
+    AGeometry readGeometry() throws IOException
+    {
+      int tag = readByte();
+      switch (tag)
+      {
+      case TAG_AREA:
+      {
+        int flags = readByte();
+        GArea area = new GArea(readPath((flags & 4) != 0
+            ? PathIterator.WIND_NON_ZERO : PathIterator.WIND_EVEN_ODD),
+            (flags & 1) != 0);
+        area.setOutline((flags & 2) != 0);
+        return area;
+      }
+      case TAG_TEXT:
+      {
+        boolean foreground = readBoolean();
+        String text = readString();
+        FontMeta font = readFont();
+        GText gtext = new GText(text, readRect(), font, foreground);
+        gtext.setDescent(readSignedVarInt());
+        gtext.setIndent(readSignedVarInt());
+        return gtext;
+      }
+      case TAG_IMAGE:
+      {
+        ImageMeta meta = (ImageMeta)readObject();
+        Point p = new Point(readSignedVarInt(), readSignedVarInt());
+        Dimension d = readBoolean()
+            ? new Dimension(readSignedVarInt(), readSignedVarInt()) : null;
+        return new GImage(meta, p, d, null);
+      }
+      case TAG_OBJECT:
+        return (AGeometry)readObject();
+      default:
+        throw new StreamCorruptedException("Unknown geometry type " + tag);
+      }
+    }
+
+    GeneralPath readPath(int windingRule) throws IOException
+    {
+      GeneralPath path = new GeneralPath(windingRule);
+      float[] c = new float[6];
+      int qx = 0;
+      int qy = 0;
+      for (int type = readByte(); type != SEG_END; type = readByte())
+      {
+        int m = coordCount(type);
+        for (int j = 0; j < m; j += 2)
+        {
+          qx += readSignedVarInt();
+          qy += readSignedVarInt();
+          c[j] = (float)qx / PATH_SCALE;
+          c[j + 1] = (float)qy / PATH_SCALE;
+        }
+        switch (type)
+        {
+        case PathIterator.SEG_MOVETO : path.moveTo(c[0], c[1]); break;
+        case PathIterator.SEG_LINETO : path.lineTo(c[0], c[1]); break;
+        case PathIterator.SEG_QUADTO : path.quadTo(c[0], c[1], c[2], c[3]); break;
+        case PathIterator.SEG_CUBICTO: path.curveTo(c[0], c[1], c[2], c[3], c[4], c[5]); break;
+        case PathIterator.SEG_CLOSE  : path.closePath(); break;
+        default:
+          throw new StreamCorruptedException("Unknown path segment type " + type);
+        }
+      }
+      return path;
+    }
+  }
+
+  /**
+   * Returns the number of coordinates of a path segment.
+   */
+  private static int coordCount(int type)
+  {
+    switch (type)
+    {
+    case PathIterator.SEG_MOVETO:
+    case PathIterator.SEG_LINETO : return 2;
+    case PathIterator.SEG_QUADTO : return 4;
+    case PathIterator.SEG_CUBICTO: return 6;
+    default                      : return 0;
+    }
+  }
+}
+
+// EOF
@@ -88,6 +88,18 @@ public abstract class FontMeta implements Serializable
       return LCARS.getFontMeta(style).getFont();
     }
 
+    @Override
+    public int hashCode()
+    {
+      return style;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      return obj instanceof Implicit && ((Implicit)obj).style == style;
+    }
+
     public String toString() 
     {
       return FontMeta.class.getSimpleName() + "." + Implicit.class.getSimpleName() + " style=" + Integer.toHexString(style);
@@ -163,6 +175,22 @@ public abstract class FontMeta implements Serializable
     {
       return SWTResourceManager.getFont(name, pxToPt(height), style);
     }
+
+    @Override
+    public int hashCode()
+    {
+      return (name.hashCode() * 31 + height) * 31 + style;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      if (!(obj instanceof Explicit))
+        return false;
+      Explicit other = (Explicit)obj;
+      return name.equals(other.name) && height == other.height
+          && style == other.style;
+    }
     
     @Override
     public String toString() 
@@ -0,0 +1,310 @@
+package de.tucottbus.kt.lcars.swt;
+
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.eclipse.swt.graphics.Device;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Path;
+import org.eclipse.swt.graphics.Transform;
+
+/**
+ * Screen-side cache of SWT {@link Path}s. Paths are keyed by their segment
+ * data relative to an origin, so unchanged shapes arriving in new geometry
+ * objects and identical shapes at different positions (e.g. the keys of a
+ * keyboard) share one SWT path.
+ *
+ * <p>The cache owns the paths. It keeps at most {@link #MAX_ENTRIES} of them
+ * and disposes the least recently used path when a new one exceeds this
+ * limit, so native path handles are released deterministically and never
+ * by finalizers. Geometries may keep the entry they acquired, but must
+ * {@linkplain #acquire(Shape, int, int) acquire} it again once it is
+ * {@linkplain Entry#isDisposed() disposed}. All methods must be invoked on
+ * the display thread.</p>
+ */
+public class PathCache
+{
+  /**
+   * Maximal number of cached paths.
+   */
+  public static final int MAX_ENTRIES = 4096;
+
+  private static PathCache instance;
+
+  private final Device device;
+  private final LinkedHashMap<Key, Entry> entries
+    = new LinkedHashMap<Key, Entry>(256, 0.75f, true);
+  private Transform saved;
+  private Transform translated;
+  private long hits;
+  private long misses;
+
+  /**
+   * Returns the path cache of a device.
+   *
+   * @param device
+   *          The device.
+   */
+  public static synchronized PathCache getInstance(Device device)
+  {
+    if (instance == null || instance.device != device)
+      instance = new PathCache(device);
+    return instance;
+  }
+
+  private PathCache(Device device)
+  {
+    this.device = device;
+  }
+
+  /**
+   * Returns a path for a shape. The path is relative to the origin
+   * (<code>x</code>, <code>y</code>). If the cache is full, the least recently
+   * used path is disposed. Must be invoked on the display thread.
+   *
+   * @param shape
+   *          The shape.
+   * @param x
+   *          The x-coordinate of the origin.
+   * @param y
+   *          The y-coordinate of the origin.
+   * @return The cache entry, valid until it is {@linkplain Entry#isDisposed()
+   *         disposed}.
+   */
+  public Entry acquire(Shape shape, int x, int y)
+  {
+    Key key = new Key(shape, x, y);
+    Entry entry = entries.get(key);
+    if (entry != null)
+    {
+      hits++;
+      return entry;
+    }
+    misses++;
+    evict(MAX_ENTRIES - 1);
+    entry = new Entry(key.toPath(device));
+    entries.put(key, entry);
+    return entry;
+  }
+
+  /**
+   * Fills or draws a cached path. Must be invoked on the display thread.
+   *
+   * @param gc
+   *          The graphics context.
+   * @param entry
+   *          The cache entry.
+   * @param x
+   *          The x-coordinate to paint the origin of the path at.
+   * @param y
+   *          The y-coordinate to paint the origin of the path at.
+   * @param outline
+   *          <code>true</code> to draw the outline, <code>false</code> to fill
+   *          the path.
+   */
+  public void paint(GC gc, Entry entry, int x, int y, boolean outline)
+  {
+    if (x != 0 || y != 0)
+    {
+      if (saved == null)
+      {
+        saved = new Transform(device);
+        translated = new Transform(device);
+      }
+      gc.getTransform(saved);
+      gc.getTransform(translated);
+      translated.translate(x, y);
+      gc.setTransform(translated);
+    }
+    if (outline)
+      gc.drawPath(entry.path);
+    else
+      gc.fillPath(entry.path);
+    if (x != 0 || y != 0)
+      gc.setTransform(saved);
+  }
+
+  /**
+   * Disposes the least recently used paths until at most a number of paths is
+   * left. Must be invoked on the display thread.
+   *
+   * @param size
+   *          The number of paths to keep.
+   */
+  public void evict(int size)
+  {
+    for (Iterator<Entry> it = entries.values().iterator();
+        entries.size() > size && it.hasNext();)
+    {
+      it.next().dispose();
+      it.remove();
+    }
+  }
+
+  /**
+   * Disposes all cached paths. Must be invoked on the display thread.
+   */
+  public void dispose()
+  {
+    evict(0);
+    if (saved != null)
+    {
+      saved.dispose();
+      translated.dispose();
+      saved = null;
+      translated = null;
+    }
+  }
+
+  /**
+   * Returns the number of cached paths.
+   */
+  public int size()
+  {
+    return entries.size();
+  }
+
+  /**
+   * Returns the number of acquisitions served from the cache.
+   */
+  public long getHits()
+  {
+    return hits;
+  }
+
+  /**
+   * Returns the number of acquisitions which created a new path.
+   */
+  public long getMisses()
+  {
+    return misses;
+  }
+
+  // -- Nested classes --
+
+  /**
+   * A cached path.
+   */
+  public static final class Entry
+  {
+    private final Path path;
+
+    Entry(Path path)
+    {
+      this.path = path;
+    }
+
+    /**
+     * Determines if the path of this entry has been disposed by the cache.
+     * Must be invoked on the display thread.
+     */
+    public boolean isDisposed()
+    {
+      return path.isDisposed();
+    }
+
+    void dispose()
+    {
+      path.dispose();
+    }
+  }
+
+  /**
+   * The segment data of a shape relative to an origin.
+   */
+  static final class Key
+  {
+    private final byte[] types;
+    private final float[] coords;
+    private final int hash;
+
+    Key(Shape shape, int x, int y)
+    {
+      byte[] types = new byte[16];
+      float[] coords = new float[64];
+      int nt = 0;
+      int nc = 0;
+      float[] seg = new float[6];
+      for (PathIterator pit = shape.getPathIterator(null); !pit.isDone(); pit.next())
+      {
+        int type = pit.currentSegment(seg);
+        int n;
+        switch (type)
+        {
+        case PathIterator.SEG_MOVETO:
+        case PathIterator.SEG_LINETO: n = 2; break;
+        case PathIterator.SEG_QUADTO: n = 4; break;
+        case PathIterator.SEG_CUBICTO: n = 6; break;
+        default: n = 0;
+        }
+        if (nt == types.length)
+          types = Arrays.copyOf(types, 2 * nt);
+        if (nc + n > coords.length)
+          coords = Arrays.copyOf(coords, 2 * coords.length + n);
+        types[nt++] = (byte) type;
+        for (int i = 0; i < n; i += 2)
+        {
+          coords[nc++] = seg[i] - x;
+          coords[nc++] = seg[i + 1] - y;
+        }
+      }
+      this.types = Arrays.copyOf(types, nt);
+      this.coords = Arrays.copyOf(coords, nc);
+      this.hash = 31 * Arrays.hashCode(this.types) + Arrays.hashCode(this.coords);
+    }
+
+    Path toPath(Device device)
+    {
+      Path path = new Path(device);
+      int c = 0;
+      for (byte type : types)
+        switch (type)
+        {
+        case PathIterator.SEG_MOVETO:
+          path.moveTo(coords[c], coords[c + 1]);
+          c += 2;
+          break;
+        case PathIterator.SEG_LINETO:
+          path.lineTo(coords[c], coords[c + 1]);
+          c += 2;
+          break;
+        case PathIterator.SEG_QUADTO:
+          path.quadTo(coords[c], coords[c + 1], coords[c + 2], coords[c + 3]);
+          c += 4;
+          break;
+        case PathIterator.SEG_CUBICTO:
+          path.cubicTo(coords[c], coords[c + 1], coords[c + 2], coords[c + 3],
+              coords[c + 4], coords[c + 5]);
+          c += 6;
+          break;
+        case PathIterator.SEG_CLOSE:
+          path.close();
+          break;
+        }
+      return path;
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      if (this == obj)
+        return true;
+      if (!(obj instanceof Key))
+        return false;
+      Key other = (Key) obj;
+      return hash == other.hash && Arrays.equals(types, other.types)
+          && Arrays.equals(coords, other.coords);
+    }
+  }
+}
+
+// EOF
@@ -0,0 +1,363 @@
+package de.tucottbus.kt.lcars.swt;
+
+import java.awt.Rectangle;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.TextLayout;
+
+/**
+ * Cached metrics of a (multi-line) text as measured by an SWT
+ * {@link TextLayout} without wrap width.
+ *
+ * <p>Metrics are kept in a bounded LRU cache keyed by font, text and
+ * alignment. Single-line texts consisting of digits and common punctuation
+ * only (clocks, numbers, units) are measured from a per-font table of glyph
+ * advances, so they do not need a layout of their own.</p>
+ *
+ * <p>The class is thread-safe. Texts are measured outside the cache lock, so
+ * several threads can measure at a time. Native text layouts are never used
+ * by two threads at a time.</p>
+ */
+public final class TextMetrics
+{
+  /**
+   * Maximal number of cached text metrics.
+   */
+  public static final int CACHE_SIZE = 1024;
+
+  /**
+   * Characters measured from the glyph advance table. Glyphs of digits and
+   * these punctuation marks are not kerned in LCARS fonts.
+   */
+  public static final String TABLE_CHARS = "0123456789 .,:;-+/%()";
+
+  /**
+   * Number of repetitions of a character when measuring its advance.
+   */
+  private static final int ADVANCE_SAMPLES = 16;
+
+  private static final LinkedHashMap<Key,TextMetrics> cache
+    = new LinkedHashMap<Key,TextMetrics>(256,0.75f,true)
+  {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key,TextMetrics> eldest)
+    {
+      return size() > CACHE_SIZE;
+    }
+  };
+
+  private static final ConcurrentHashMap<FontMeta,FontTable> fontTables
+    = new ConcurrentHashMap<FontMeta,FontTable>();
+
+  private static final AtomicLong hits = new AtomicLong();
+  private static final AtomicLong misses = new AtomicLong();
+  private static final AtomicLong layouts = new AtomicLong();
+
+  /**
+   * Bounds of the whole text.
+   */
+  public final int x, y, width, height;
+
+  /**
+   * Leading of the first line.
+   */
+  public final int leading;
+
+  /**
+   * Descent of the text layout.
+   */
+  public final int descent;
+
+  /**
+   * Bounds of the lines: x, y, width and height of each line.
+   */
+  private final int[] lines;
+
+  private TextMetrics(int x, int y, int width, int height, int leading,
+      int descent, int[] lines)
+  {
+    this.x = x;
+    this.y = y;
+    this.width = width;
+    this.height = height;
+    this.leading = leading;
+    this.descent = descent;
+    this.lines = lines;
+  }
+
+  /**
+   * Returns the metrics of a text.
+   *
+   * @param fontMeta
+   *          The font.
+   * @param text
+   *          The text, must not be <code>null</code> or empty.
+   * @param alignment
+   *          The alignment of the lines, {@link SWT#LEFT}, {@link SWT#CENTER}
+   *          or {@link SWT#RIGHT}.
+   * @return The text metrics.
+   */
+  public static TextMetrics get(FontMeta fontMeta, String text, int alignment)
+  {
+    // Get the font before locking, it may need the display thread
+    Font font = fontMeta.getFont();
+    Key key = new Key(fontMeta,text,alignment);
+    TextMetrics metrics;
+    synchronized (cache)
+    {
+      metrics = cache.get(key);
+    }
+    if (metrics!=null)
+    {
+      hits.incrementAndGet();
+      return metrics;
+    }
+    misses.incrementAndGet();
+
+    // Measure without holding the lock
+    if (isTabulated(text))
+      metrics = getFontTable(fontMeta,font).measure(text);
+    else
+      metrics = measure(font,text,alignment);
+    synchronized (cache)
+    {
+      TextMetrics other = cache.putIfAbsent(key,metrics);
+      return other!=null ? other : metrics;
+    }
+  }
+
+  /**
+   * Returns the bounding rectangle of a text, like
+   * {@link TextLayout#getBounds()}.
+   *
+   * @param fontMeta
+   *          The font.
+   * @param text
+   *          The text, must not be <code>null</code> or empty.
+   */
+  public static Rectangle getBounds(FontMeta fontMeta, String text)
+  {
+    return get(fontMeta,text,SWT.LEFT).getBounds();
+  }
+
+  /**
+   * Returns the advance of a glyph from the glyph advance table.
+   *
+   * @param fontMeta
+   *          The font.
+   * @param c
+   *          The character.
+   * @return The advance in LCARS panel pixels or -1 if the character is not
+   *         {@linkplain #isTabulated(String) tabulated}.
+   */
+  public static float getAdvance(FontMeta fontMeta, char c)
+  {
+    int i = TABLE_CHARS.indexOf(c);
+    if (i<0)
+      return -1;
+    return getFontTable(fontMeta,fontMeta.getFont()).getAdvance(i);
+  }
+
+  /**
+   * Returns the bounding rectangle of the text.
+   */
+  public Rectangle getBounds()
+  {
+    return new Rectangle(x,y,width,height);
+  }
+
+  /**
+   * Returns the number of lines.
+   */
+  public int getLineCount()
+  {
+    return lines.length/4;
+  }
+
+  /**
+   * Returns the bounds of a line relative to the text.
+   *
+   * @param i
+   *          The line index.
+   */
+  public Rectangle getLineBounds(int i)
+  {
+    return new Rectangle(lines[4*i],lines[4*i+1],lines[4*i+2],lines[4*i+3]);
+  }
+
+  // -- Statistics --
+
+  /**
+   * Returns the number of metrics served from the cache.
+   */
+  public static long getHits()
+  {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of metrics not found in the cache.
+   */
+  public static long getMisses()
+  {
+    return misses.get();
+  }
+
+  /**
+   * Returns the number of native text layouts created for measuring.
+   */
+  public static long getLayoutCount()
+  {
+    return layouts.get();
+  }
+
+  // -- Implementation --
+
+  /**
+   * Determines if a text can be measured from the glyph advance table, i.e.
+   * if it consists of digits and common punctuation marks only.
+   *
+   * @param text
+   *          The text.
+   */
+  public static boolean isTabulated(String text)
+  {
+    for (int i=0; i<text.length(); i++)
+      if (TABLE_CHARS.indexOf(text.charAt(i))<0)
+        return false;
+    return true;
+  }
+
+  /**
+   * Returns the glyph advance table of a font. The table is created once per
+   * font, only threads asking for the same font wait for it.
+   */
+  private static FontTable getFontTable(FontMeta fontMeta, Font font)
+  {
+    FontTable table = fontTables.get(fontMeta);
+    if (table!=null)
+      return table;
+    return fontTables.computeIfAbsent(fontMeta,(fm)->new FontTable(font));
+  }
+
+  /**
+   * Measures a text with a native text layout of its own.
+   */
+  private static TextMetrics measure(Font font, String text, int alignment)
+  {
+    layouts.incrementAndGet();
+    TextLayout tl = new TextLayout(font.getDevice());
+    try
+    {
+      tl.setFont(font);
+      tl.setText(text);
+      org.eclipse.swt.graphics.Rectangle b = tl.getBounds();
+      tl.setAlignment(alignment);
+      int n = tl.getLineCount();
+      int[] lines = new int[4*n];
+      for (int i=0; i<n; i++)
+      {
+        org.eclipse.swt.graphics.Rectangle l = tl.getLineBounds(i);
+        lines[4*i  ] = l.x;
+        lines[4*i+1] = l.y;
+        lines[4*i+2] = l.width;
+        lines[4*i+3] = l.height;
+      }
+      return new TextMetrics(b.x,b.y,b.width,b.height,
+          tl.getLineMetrics(0).getLeading(),tl.getDescent(),lines);
+    }
+    finally
+    {
+      tl.dispose();
+    }
+  }
+
+  // -- Nested classes --
+
+  /**
+   * Key of the metrics cache.
+   */
+  private static final class Key
+  {
+    private final FontMeta fontMeta;
+    private final String text;
+    private final int alignment;
+
+    Key(FontMeta fontMeta, String text, int alignment)
+    {
+      this.fontMeta = fontMeta;
+      this.text = text;
+      this.alignment = alignment;
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return (fontMeta.hashCode()*31+text.hashCode())*31+alignment;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      if (!(obj instanceof Key))
+        return false;
+      Key other = (Key)obj;
+      return alignment==other.alignment && text.equals(other.text)
+          && fontMeta.equals(other.fontMeta);
+    }
+  }
+
+  /**
+   * Glyph advances and line metrics of a font. Immutable once created.
+   */
+  private static final class FontTable
+  {
+    private final float[] advances = new float[TABLE_CHARS.length()];
+    private final TextMetrics line;
+
+    /**
+     * Creates the table and measures all glyph advances.
+     */
+    FontTable(Font font)
+    {
+      this.line = measure(font,"0",SWT.LEFT);
+      StringBuilder s = new StringBuilder(ADVANCE_SAMPLES);
+      for (int i=0; i<advances.length; i++)
+      {
+        s.setLength(0);
+        for (int j=0; j<ADVANCE_SAMPLES; j++)
+          s.append(TABLE_CHARS.charAt(i));
+        advances[i] = (float)TextMetrics.measure(font,s.toString(),SWT.LEFT)
+            .width/ADVANCE_SAMPLES;
+      }
+    }
+
+    /**
+     * Measures a single-line text.
+     */
+    TextMetrics measure(String text)
+    {
+      float w = 0;
+      for (int i=0; i<text.length(); i++)
+        w += getAdvance(TABLE_CHARS.indexOf(text.charAt(i)));
+      int width = Math.round(w);
+      Rectangle l = line.getLineBounds(0);
+      return new TextMetrics(line.x,line.y,width,line.height,line.leading,
+          line.descent,new int[] { l.x, l.y, width, l.height });
+    }
+
+    float getAdvance(int i)
+    {
+      return advances[i];
+    }
+  }
+}
+
+// EOF
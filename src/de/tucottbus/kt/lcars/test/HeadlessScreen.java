@@ -0,0 +1,193 @@
+package de.tucottbus.kt.lcars.test;
+
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.rmi.RemoteException;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Transform;
+import org.eclipse.swt.widgets.Display;
+
+import de.tucottbus.kt.lcars.IPanel;
+import de.tucottbus.kt.lcars.IScreen;
+import de.tucottbus.kt.lcars.Panel;
+import de.tucottbus.kt.lcars.PanelData;
+import de.tucottbus.kt.lcars.feedback.UserFeedback;
+import de.tucottbus.kt.lcars.geometry.rendering.FrameRenderer;
+import de.tucottbus.kt.lcars.logging.Log;
+import de.tucottbus.kt.lcars.net.NetUtils;
+import de.tucottbus.kt.lcars.util.LoadStatistics;
+
+/**
+ * A screen rendering to an offscreen image instead of a shell. The screen has
+ * no timer of its own, the owner calls {@link #paint()} on the display thread
+ * to render pending updates.
+ *
+ * <p>As the screen is not a {@link de.tucottbus.kt.lcars.Screen Screen}, panels
+ * send it incremental updates like they do to remote screens.</p>
+ */
+public class HeadlessScreen implements IScreen
+{
+  private final Display display;
+  private final Image image;
+  private final GC gc;
+  private final Transform transform;
+  private final FrameRenderer renderer;
+  private final LoadStatistics loadStat = new LoadStatistics(25);
+  private final int width;
+  private final int height;
+  private Panel panel;
+  private int panelId;
+  private volatile boolean invalid;
+  private boolean disposed;
+
+  /**
+   * Creates a new headless screen. Must be called on the display thread.
+   *
+   * @param display
+   *          The SWT display.
+   * @param width
+   *          The width of the offscreen image in pixels.
+   * @param height
+   *          The height of the offscreen image in pixels.
+   */
+  public HeadlessScreen(Display display, int width, int height)
+  {
+    this.display = display;
+    this.width = width;
+    this.height = height;
+    image = new Image(display, width, height);
+    gc = new GC(image);
+    gc.setAntialias(SWT.ON);
+    gc.setTextAntialias(SWT.ON);
+    transform = new Transform(display);
+    renderer = new FrameRenderer(display);
+  }
+
+  /**
+   * Returns the renderer of this screen.
+   */
+  public FrameRenderer getRenderer()
+  {
+    return renderer;
+  }
+
+  /**
+   * Renders the pending update (if any) to the offscreen image. Must be called
+   * on the display thread.
+   *
+   * @return The time in nanoseconds spent painting or -1 if there was nothing
+   *         to paint.
+   */
+  public long paint()
+  {
+    if (disposed || !invalid || !renderer.hasFrame())
+      return -1;
+    invalid = false;
+    long time = System.nanoTime();
+    renderer.updateTransform(transform, width, height);
+    renderer.paint(gc, transform, width, height,
+        display.getSystemColor(SWT.COLOR_BLACK), false);
+    return System.nanoTime() - time;
+  }
+
+  // -- Implementation of the IScreen interface --
+
+  @Override
+  public Area getArea()
+  {
+    return new Area(new Rectangle(0, 0, width, height));
+  }
+
+  @Override
+  public void setArea(Area area)
+  {
+    // The size of the offscreen image is fixed
+  }
+
+  @Override
+  public String getHostName()
+  {
+    return NetUtils.getHostName();
+  }
+
+  @Override
+  public void setPanel(String className) throws ClassNotFoundException
+  {
+    if (panel != null)
+      panel.stop();
+    renderer.clear();
+    panel = Panel.createPanel(className, this);
+    if (panel == null)
+      return;
+    try
+    {
+      panelId = panel.serialNo();
+    }
+    catch (RemoteException e)
+    {
+      Log.err("Cannot get serial number of panel.", e);
+    }
+  }
+
+  @Override
+  public IPanel getPanel()
+  {
+    return panel;
+  }
+
+  @Override
+  public void update(PanelData data, boolean incremental)
+  {
+    if (panel != null && data.panelId != panelId)
+      return;
+    renderer.applyUpdate(data, incremental);
+    invalid = true;
+  }
+
+  @Override
+  public void userFeedback(UserFeedback.Type type)
+  {
+    // No feedback
+  }
+
+  @Override
+  public LoadStatistics getLoadStatistics()
+  {
+    return loadStat;
+  }
+
+  @Override
+  public void exit()
+  {
+    if (panel != null)
+    {
+      panel.stop();
+      panel = null;
+    }
+    if (disposed)
+      return;
+    disposed = true;
+    renderer.dispose();
+    transform.dispose();
+    gc.dispose();
+    image.dispose();
+  }
+
+  @Override
+  public boolean isDisposed()
+  {
+    return disposed;
+  }
+
+  @Override
+  @Deprecated
+  public void setPanelId(int panelId) throws RemoteException
+  {
+    this.panelId = panelId;
+  }
+}
+
+// EOF
@@ -0,0 +1,160 @@
+package de.tucottbus.kt.lcars.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.swt.widgets.Display;
+
+import de.tucottbus.kt.lcars.LCARS;
+import de.tucottbus.kt.lcars.Panel;
+import de.tucottbus.kt.lcars.geometry.rendering.GlyphAtlas;
+import de.tucottbus.kt.lcars.util.FrameTimes;
+
+/**
+ * Headless scenario render benchmark. Runs real panels on a
+ * {@link HeadlessScreen} for a number of seconds each and prints percentiles
+ * of the frame times of the panel's screen update and of painting.
+ *
+ * <h3>Usage</h3>
+ * <p><code>xvfb-run java -cp ... de.tucottbus.kt.lcars.test.RenderBenchmark
+ * [--seconds=n] [--size=wxh] [--selective] [--rastercache] [--glyphatlas]
+ * [panel class names]</code></p>
+ * <p>The benchmark requires an X server but no physical display, so it can be
+ * run under Xvfb. Without panel class names the showcase and test panels and
+ * the server panel are measured.</p>
+ */
+public class RenderBenchmark
+{
+  private static final String[] DEFAULT_PANELS =
+  {
+    "de.tucottbus.kt.lcars.util.ShowcasePanel",
+    "de.tucottbus.kt.lcars.util.TestPanel",
+    "de.tucottbus.kt.lcars.swt.TestPanel",
+    "de.tucottbus.kt.lcars.net.panels.ServerPanel"
+  };
+
+  /**
+   * Interval of the paint loop in milliseconds, like the screen timer.
+   */
+  private static final int PAINT_INTERVAL = 40;
+
+  /**
+   * Runs one panel on a headless screen.
+   *
+   * @param display
+   *          The SWT display.
+   * @param className
+   *          The panel class name.
+   * @param millis
+   *          The duration of the run in milliseconds.
+   * @param screen
+   *          The screen to run the panel on.
+   * @param update
+   *          Receives the update times.
+   * @param paint
+   *          Receives the paint times.
+   */
+  protected static void run(Display display, String className, long millis,
+      HeadlessScreen screen, FrameTimes update, FrameTimes paint)
+      throws ClassNotFoundException
+  {
+    screen.setPanel(className);
+    Panel panel = (Panel)screen.getPanel();
+    if (panel == null)
+      throw new ClassNotFoundException(className);
+    panel.setUpdateProbe(update::add);
+
+    long end = System.currentTimeMillis() + millis;
+    long next = System.currentTimeMillis();
+    while (System.currentTimeMillis() < end)
+    {
+      while (display.readAndDispatch());
+      long time = screen.paint();
+      if (time >= 0)
+        paint.add(time);
+      next += PAINT_INTERVAL;
+      long sleep = next - System.currentTimeMillis();
+      if (sleep > 0)
+        try
+        {
+          Thread.sleep(sleep);
+        }
+        catch (InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      else
+        next = System.currentTimeMillis();
+    }
+    panel.setUpdateProbe(null);
+    panel.stop();
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args
+   *          Command line options, see class documentation.
+   */
+  public static void main(String[] args)
+  {
+    int seconds = 10;
+    int width = 1920;
+    int height = 1080;
+    boolean selective = false;
+    boolean rasterCache = false;
+    List<String> panels = new ArrayList<String>();
+    for (String arg : args)
+      if (arg.startsWith("--seconds="))
+        seconds = Integer.parseInt(arg.substring(10));
+      else if (arg.startsWith("--size="))
+      {
+        String[] size = arg.substring(7).split("x");
+        width = Integer.parseInt(size[0]);
+        height = Integer.parseInt(size[1]);
+      }
+      else if (arg.equals("--selective"))
+        selective = true;
+      else if (arg.equals("--rastercache"))
+        rasterCache = true;
+      else if (arg.equals("--glyphatlas"))
+        GlyphAtlas.setEnabled(true);
+      else
+        panels.add(arg);
+    if (panels.isEmpty())
+      panels.addAll(Arrays.asList(DEFAULT_PANELS));
+
+    Display display = LCARS.getDisplay();
+    System.out.println(String.format("Render benchmark: %d s per panel, %dx%d, selective=%b, rastercache=%b, glyphatlas=%b",
+        seconds, width, height, selective, rasterCache, GlyphAtlas.isEnabled()));
+    for (String className : panels)
+    {
+      HeadlessScreen screen = new HeadlessScreen(display, width, height);
+      screen.getRenderer().setSelectiveRenderingHint(selective);
+      screen.getRenderer().setRasterCacheHint(rasterCache);
+      FrameTimes update = new FrameTimes();
+      FrameTimes paint = new FrameTimes();
+      try
+      {
+        run(display, className, seconds*1000L, screen, update, paint);
+        System.out.println(className);
+        System.out.println("  updateScreen: "+update);
+        System.out.println("  paintControl: "+paint);
+      }
+      catch (Exception e)
+      {
+        System.out.println(className+": FAILED ("+e+")");
+      }
+      finally
+      {
+        screen.exit();
+      }
+    }
+    display.dispose();
+    System.exit(0);
+  }
+}
+
+// EOF
@@ -0,0 +1,235 @@
+package de.tucottbus.kt.lcars.util;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.swt.widgets.Display;
+
+import de.tucottbus.kt.lcars.logging.Log;
+
+/**
+ * The process-wide executor for dispatching events and running deferred
+ * actions. The executor reuses a pool of named daemon threads instead of
+ * starting a thread per task.
+ *
+ * <p>Tasks which must be run in order (e.g. the events of one GUI element) are
+ * submitted through a {@linkplain #newSerialQueue() serial queue}. Tasks of
+ * one serial queue are run one after the other in submission order, tasks of
+ * different queues run in parallel.</p>
+ *
+ * <p>The pool is bounded. It starts up to {@link #MAX_POOL_SIZE} threads,
+ * as event listeners may block (e.g. while waiting for a user's answer). Idle
+ * threads are terminated after 30 seconds. If all threads are busy, up to
+ * {@link #QUEUE_SIZE} tasks wait in a queue. If the queue is full as well, a
+ * task submitted by an ordinary thread is run on that thread, which slows
+ * down the submitter. A task submitted by an SWT display thread is
+ * discarded and an error is logged, as the display thread must neither run
+ * listeners nor block.</p>
+ */
+public final class DispatchExecutor
+{
+  /**
+   * The maximal number of dispatch threads.
+   */
+  public static final int MAX_POOL_SIZE = 64;
+
+  /**
+   * The maximal number of tasks waiting for a dispatch thread.
+   */
+  public static final int QUEUE_SIZE = 1024;
+
+  private static final ThreadPoolExecutor executor;
+  private static volatile boolean saturated;
+
+  static
+  {
+    AtomicInteger threadCount = new AtomicInteger();
+    ThreadFactory factory = (runnable) ->
+    {
+      Thread thread = new Thread(runnable,
+          "LCARS.dispatch-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+    executor = new ThreadPoolExecutor(MAX_POOL_SIZE, MAX_POOL_SIZE, 30,
+        TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(QUEUE_SIZE), factory,
+        DispatchExecutor::rejected);
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  private DispatchExecutor()
+  {
+  }
+
+  /**
+   * Runs a task on a dispatch thread.
+   *
+   * @param task
+   *          The task.
+   */
+  public static void execute(Runnable task)
+  {
+    try
+    {
+      executor.execute(() -> runSafely(task));
+    }
+    catch (RejectedExecutionException e)
+    {
+      // Logged by rejected
+    }
+  }
+
+  /**
+   * Runs a task on a dispatch thread after a delay. The delay is timed by the
+   * {@link FrameClock}, no thread is blocked while waiting.
+   *
+   * @param task
+   *          The task.
+   * @param delay
+   *          The delay in milliseconds.
+   */
+  public static void execute(Runnable task, long delay)
+  {
+    if (delay <= 0)
+      execute(task);
+    else
+      FrameClock.scheduleOnce(() -> execute(task), delay);
+  }
+
+  /**
+   * Creates a new serial queue.
+   */
+  public static Executor newSerialQueue()
+  {
+    return new SerialQueue();
+  }
+
+  /**
+   * Returns the current number of dispatch threads.
+   */
+  public static int getPoolSize()
+  {
+    return executor.getPoolSize();
+  }
+
+  /**
+   * Returns the number of tasks completed.
+   */
+  public static long getCompletedTaskCount()
+  {
+    return executor.getCompletedTaskCount();
+  }
+
+  // -- Implementation --
+
+  /**
+   * Handles a task which neither found a free thread nor room in the queue.
+   * Logs a warning once until the queue has drained.
+   *
+   * @throws RejectedExecutionException
+   *           If the task was submitted on an SWT display thread.
+   */
+  private static void rejected(Runnable task, ThreadPoolExecutor executor)
+  {
+    if (!saturated)
+    {
+      saturated = true;
+      Log.warn("All " + MAX_POOL_SIZE + " dispatch threads busy and "
+          + QUEUE_SIZE + " tasks queued, event listeners may be blocked.");
+      FrameClock.scheduleOnce(DispatchExecutor::checkDrained, 1000);
+    }
+    if (executor.isShutdown())
+      throw new RejectedExecutionException();
+    if (Display.getCurrent() != null)
+    {
+      Log.err("Dispatched task discarded on display thread.");
+      throw new RejectedExecutionException();
+    }
+    task.run();
+  }
+
+  /**
+   * Resets the saturation warning once the queue has drained.
+   */
+  private static void checkDrained()
+  {
+    if (executor.getQueue().isEmpty())
+      saturated = false;
+    else
+      FrameClock.scheduleOnce(DispatchExecutor::checkDrained, 1000);
+  }
+
+  private static void runSafely(Runnable task)
+  {
+    try
+    {
+      task.run();
+    }
+    catch (Exception e)
+    {
+      Log.err("Error in dispatched task.", e);
+    }
+  }
+
+  // -- Nested classes --
+
+  /**
+   * Runs tasks one after the other on the dispatch threads.
+   */
+  private static final class SerialQueue implements Executor, Runnable
+  {
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<Runnable>();
+    private boolean running;
+
+    @Override
+    public void execute(Runnable task)
+    {
+      synchronized (tasks)
+      {
+        tasks.add(task);
+        if (running)
+          return;
+        running = true;
+      }
+      try
+      {
+        executor.execute(this);
+      }
+      catch (RejectedExecutionException e)
+      {
+        synchronized (tasks)
+        {
+          tasks.remove(task);
+          running = false;
+        }
+      }
+    }
+
+    @Override
+    public void run()
+    {
+      while (true)
+      {
+        Runnable task;
+        synchronized (tasks)
+        {
+          task = tasks.poll();
+          if (task == null)
+          {
+            running = false;
+            return;
+          }
+        }
+        runSafely(task);
+      }
+    }
+  }
+}
+
+// EOF
@@ -0,0 +1,181 @@
+package de.tucottbus.kt.lcars.util;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.tucottbus.kt.lcars.logging.Log;
+
+/**
+ * The process-wide frame clock. Panels, element contributors and other
+ * periodically animated objects register their ticks here instead of starting
+ * timer threads of their own.
+ *
+ * <ul>
+ * <li>All ticks are executed by one small pool of daemon threads, so the number
+ * of timer threads does not grow with the number of panels.</li>
+ * <li>Ticks are phase-locked to a common epoch: all registrations with the
+ * same period tick at the same instants and do not drift against each
+ * other.</li>
+ * <li>A tick which starts one or more periods late is counted as an overrun.
+ * Missed ticks are dropped instead of being executed in a burst.</li>
+ * <li>Ticks must be short. Registrations running user code or remote calls
+ * (like the panel timer) hand the work over to a {@linkplain
+ * DispatchExecutor#newSerialQueue() serial queue} of their own.</li>
+ * </ul>
+ */
+public final class FrameClock
+{
+  /**
+   * The number of clock threads.
+   */
+  public static final int POOL_SIZE = Math.max(2,
+      Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+  /**
+   * The common epoch of all ticks.
+   */
+  private static final long EPOCH = System.nanoTime();
+
+  private static final ScheduledThreadPoolExecutor executor;
+
+  static
+  {
+    AtomicInteger threadCount = new AtomicInteger();
+    ThreadFactory factory = (runnable) ->
+    {
+      Thread thread = new Thread(runnable,
+          "FrameClock-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+    executor = new ScheduledThreadPoolExecutor(POOL_SIZE, factory);
+    executor.setRemoveOnCancelPolicy(true);
+  }
+
+  private FrameClock()
+  {
+  }
+
+  /**
+   * Registers a periodic tick.
+   *
+   * @param tick
+   *          The task to run on every tick.
+   * @param period
+   *          The period in milliseconds.
+   * @param name
+   *          A name for log messages.
+   * @return The registration, to be {@linkplain Registration#cancel()
+   *         cancelled} when the ticks are no longer needed.
+   */
+  public static Registration schedule(Runnable tick, long period, String name)
+  {
+    if (period <= 0)
+      throw new IllegalArgumentException("period");
+    return new Registration(tick, TimeUnit.MILLISECONDS.toNanos(period), name);
+  }
+
+  /**
+   * Runs a task once on the clock threads.
+   *
+   * @param task
+   *          The task.
+   * @param delay
+   *          The delay in milliseconds.
+   * @return A future to cancel the task.
+   */
+  public static ScheduledFuture<?> scheduleOnce(Runnable task, long delay)
+  {
+    return executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+  }
+
+  // -- Nested classes --
+
+  /**
+   * A periodic tick registered with the frame clock.
+   */
+  public static final class Registration implements Runnable
+  {
+    private final Runnable tick;
+    private final long period;
+    private final String name;
+    private final ScheduledFuture<?> future;
+    private long next;
+    private volatile long ticks;
+    private volatile long overruns;
+
+    Registration(Runnable tick, long period, String name)
+    {
+      this.tick = tick;
+      this.period = period;
+      this.name = name;
+      long now = System.nanoTime();
+      long delay = period - (now - EPOCH) % period;
+      this.next = now + delay;
+      this.future = executor.scheduleAtFixedRate(this, delay, period,
+          TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Cancels the ticks. A tick currently running is completed.
+     */
+    public void cancel()
+    {
+      future.cancel(false);
+    }
+
+    /**
+     * Determines if this registration was cancelled.
+     */
+    public boolean isCancelled()
+    {
+      return future.isCancelled();
+    }
+
+    /**
+     * Returns the number of ticks executed.
+     */
+    public long getTicks()
+    {
+      return ticks;
+    }
+
+    /**
+     * Returns the number of ticks dropped because a previous tick or other
+     * registrations occupied the clock threads for too long.
+     */
+    public long getOverruns()
+    {
+      return overruns;
+    }
+
+    @Override
+    public void run()
+    {
+      long now = System.nanoTime();
+      if (now < next - period / 2)
+        return; // Catching up after an overrun, this tick was dropped
+      if (now - next >= period)
+      {
+        long missed = (now - next) / period;
+        overruns += missed;
+        next += missed * period;
+      }
+      next += period;
+      ticks++;
+      try
+      {
+        tick.run();
+      }
+      catch (Exception e)
+      {
+        Log.err("Error in frame clock tick " + name + ".", e);
+      }
+    }
+  }
+}
+
+// EOF
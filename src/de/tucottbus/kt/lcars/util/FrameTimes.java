@@ -0,0 +1,129 @@
+package de.tucottbus.kt.lcars.util;
+
+import java.util.Arrays;
+
+/**
+ * Records durations (e.g. frame times) in nanoseconds and computes their
+ * percentiles. Unlike {@link LoadStatistics} the individual samples are kept,
+ * either all of them or a fixed number of the most recent ones.
+ *
+ * <p>The methods are synchronized, samples can be added from any thread.</p>
+ */
+public class FrameTimes
+{
+  private long[] samples;
+  private int count;
+  private int next;
+  private final int capacity;
+
+  /**
+   * Creates a recorder keeping all samples.
+   */
+  public FrameTimes()
+  {
+    this(0);
+  }
+
+  /**
+   * Creates a recorder keeping the most recent samples only.
+   *
+   * @param capacity
+   *          The maximal number of samples kept, 0 for unlimited.
+   */
+  public FrameTimes(int capacity)
+  {
+    this.capacity = capacity;
+    samples = new long[capacity>0 ? capacity : 256];
+  }
+
+  /**
+   * Adds a sample.
+   *
+   * @param nanos
+   *          The duration in nanoseconds.
+   */
+  public synchronized void add(long nanos)
+  {
+    if (capacity > 0 && count == capacity)
+    {
+      samples[next] = nanos;
+      next = (next + 1) % capacity;
+      return;
+    }
+    if (count == samples.length)
+      samples = Arrays.copyOf(samples, 2 * count);
+    samples[count++] = nanos;
+  }
+
+  /**
+   * Removes all samples.
+   */
+  public synchronized void reset()
+  {
+    count = 0;
+    next = 0;
+  }
+
+  /**
+   * Returns the number of samples.
+   */
+  public synchronized int getCount()
+  {
+    return count;
+  }
+
+  /**
+   * Returns a percentile of the samples (nearest rank method).
+   *
+   * @param p
+   *          The percentile, 0...100.
+   * @return The percentile in nanoseconds, 0 if there are no samples.
+   */
+  public synchronized long getPercentile(double p)
+  {
+    if (count == 0)
+      return 0;
+    long[] sorted = Arrays.copyOf(samples, count);
+    Arrays.sort(sorted);
+    int rank = (int) Math.ceil(p / 100 * count);
+    return sorted[Math.max(0, Math.min(count - 1, rank - 1))];
+  }
+
+  /**
+   * Returns the largest sample in nanoseconds, 0 if there are no samples.
+   */
+  public synchronized long getMax()
+  {
+    long max = 0;
+    for (int i = 0; i < count; i++)
+      max = Math.max(max, samples[i]);
+    return max;
+  }
+
+  /**
+   * Returns the mean of the samples in nanoseconds, 0 if there are no
+   * samples.
+   */
+  public synchronized long getMean()
+  {
+    if (count == 0)
+      return 0;
+    long sum = 0;
+    for (int i = 0; i < count; i++)
+      sum += samples[i];
+    return sum / count;
+  }
+
+  /**
+   * Returns a one-line summary in milliseconds: count, p50, p95, p99 and max.
+   */
+  @Override
+  public synchronized String toString()
+  {
+    return String.format("n=%d p50=%.2f p95=%.2f p99=%.2f max=%.2f ms", count,
+        getPercentile(50) / 1E6, getPercentile(95) / 1E6,
+        getPercentile(99) / 1E6, getMax() / 1E6);
+  }
+}
+
+// EOF
@@ -0,0 +1,263 @@
+package de.tucottbus.kt.lcars.util;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from primitive <code>long</code> keys to
+ * objects. Intended for lookups by serial number which are repeated for every
+ * frame: keys are not boxed, no entry objects are created and
+ * {@link #clear()} runs in constant time, so a map which is reused across
+ * frames does not allocate once it has grown to its working size.
+ *
+ * <p>Slots are stamped with a generation counter; a slot is occupied if its
+ * stamp equals the current generation. Clearing the map just increments the
+ * generation. Collisions are resolved by linear probing and removal shifts
+ * subsequent entries back, so there are no tombstones.</p>
+ *
+ * <p><b>Not thread-safe</b>.</p>
+ *
+ * @param <V>
+ *          The value type.
+ */
+public class LongObjectMap<V>
+{
+  private long[] keys;
+  private Object[] values;
+  private int[] stamps;
+  private int generation = 1;
+  private int mask;
+  private int size;
+
+  /**
+   * Creates a new map.
+   *
+   * @param expectedSize
+   *          The expected number of entries.
+   */
+  public LongObjectMap(int expectedSize)
+  {
+    allocate(capacityFor(expectedSize));
+  }
+
+  /**
+   * Creates a new map with a default initial capacity.
+   */
+  public LongObjectMap()
+  {
+    this(16);
+  }
+
+  /**
+   * Returns the number of entries.
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Determines if this map is empty.
+   */
+  public boolean isEmpty()
+  {
+    return size == 0;
+  }
+
+  /**
+   * Returns the value mapped to a key or <code>null</code> if there is none.
+   */
+  @SuppressWarnings("unchecked")
+  public V get(long key)
+  {
+    int i = find(key);
+    return i < 0 ? null : (V) values[i];
+  }
+
+  /**
+   * Determines if this map contains a key.
+   */
+  public boolean containsKey(long key)
+  {
+    return find(key) >= 0;
+  }
+
+  /**
+   * Maps a key to a value.
+   *
+   * @return The previous value or <code>null</code> if there was none.
+   */
+  @SuppressWarnings("unchecked")
+  public V put(long key, V value)
+  {
+    int i = slot(key);
+    while (stamps[i] == generation)
+    {
+      if (keys[i] == key)
+      {
+        V prev = (V) values[i];
+        values[i] = value;
+        return prev;
+      }
+      i = (i + 1) & mask;
+    }
+    keys[i] = key;
+    values[i] = value;
+    stamps[i] = generation;
+    if (++size > (mask + 1) * 3 / 4)
+      rehash((mask + 1) * 2);
+    return null;
+  }
+
+  /**
+   * Removes a key.
+   *
+   * @return The value mapped to the key or <code>null</code> if there was
+   *         none.
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(long key)
+  {
+    int i = find(key);
+    if (i < 0)
+      return null;
+    V prev = (V) values[i];
+    values[i] = null;
+    stamps[i] = 0;
+    size--;
+
+    // Shift back entries which probed past the freed slot
+    for (int j = (i + 1) & mask; stamps[j] == generation; j = (j + 1) & mask)
+    {
+      int home = slot(keys[j]);
+      if (((j - home) & mask) >= ((j - i) & mask))
+      {
+        keys[i] = keys[j];
+        values[i] = values[j];
+        stamps[i] = generation;
+        values[j] = null;
+        stamps[j] = 0;
+        i = j;
+      }
+    }
+    return prev;
+  }
+
+  /**
+   * Removes all entries. The capacity is retained. Values of removed entries
+   * stay referenced until their slots are reused or the map is
+   * {@linkplain #trim() trimmed}.
+   */
+  public void clear()
+  {
+    size = 0;
+    if (++generation == Integer.MAX_VALUE)
+    {
+      Arrays.fill(stamps, 0);
+      Arrays.fill(values, null);
+      generation = 1;
+    }
+  }
+
+  /**
+   * Removes all entries and releases the references to their values.
+   */
+  public void trim()
+  {
+    clear();
+    Arrays.fill(values, null);
+  }
+
+  // -- Iteration --
+
+  /**
+   * Returns the first occupied slot at or after a slot index. Iterate over
+   * the entries of the map like this:
+   *
+   * <pre>
+   * for (int i = map.nextSlot(0); i &gt;= 0; i = map.nextSlot(i + 1))
+   *   process(map.keyAt(i), map.valueAt(i));
+   * </pre>
+   *
+   * The map must not be modified during the iteration.
+   *
+   * @param from
+   *          The slot index to start at.
+   * @return The slot index or -1 if there are no more entries.
+   */
+  public int nextSlot(int from)
+  {
+    for (int i = from; i <= mask; i++)
+      if (stamps[i] == generation)
+        return i;
+    return -1;
+  }
+
+  /**
+   * Returns the key stored in a slot.
+   */
+  public long keyAt(int slot)
+  {
+    return keys[slot];
+  }
+
+  /**
+   * Returns the value stored in a slot.
+   */
+  @SuppressWarnings("unchecked")
+  public V valueAt(int slot)
+  {
+    return (V) values[slot];
+  }
+
+  // -- Private methods --
+
+  private static int capacityFor(int expectedSize)
+  {
+    int n = Math.max(expectedSize, 4) * 4 / 3 + 1;
+    return Integer.highestOneBit(n - 1) << 1;
+  }
+
+  private void allocate(int capacity)
+  {
+    keys = new long[capacity];
+    values = new Object[capacity];
+    stamps = new int[capacity];
+    mask = capacity - 1;
+  }
+
+  private int slot(long key)
+  {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+
+  private int find(long key)
+  {
+    for (int i = slot(key); stamps[i] == generation; i = (i + 1) & mask)
+      if (keys[i] == key)
+        return i;
+    return -1;
+  }
+
+  private void rehash(int capacity)
+  {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    int[] oldStamps = stamps;
+    int oldGeneration = generation;
+    allocate(capacity);
+    generation = 1;
+    for (int i = 0; i < oldKeys.length; i++)
+      if (oldStamps[i] == oldGeneration)
+      {
+        int j = slot(oldKeys[i]);
+        while (stamps[j] == generation)
+          j = (j + 1) & mask;
+        keys[j] = oldKeys[i];
+        values[j] = oldValues[i];
+        stamps[j] = generation;
+      }
+  }
+}
+
+// EOF